@@ -1,7 +1,8 @@
 package cosc202.andie;
 
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import javax.swing.JOptionPane;
 
@@ -17,6 +18,13 @@ import javax.swing.JOptionPane;
  * can be used to reduce image noise and detail, resulting in a smoother appearance.
  * </p>
  * 
+ * <p>
+ * The sums of each block are read from the image's {@link SummedAreaTable}, so each
+ * block costs the same however large it is. When the filter is applied to an
+ * {@link EditableImage}, the tables are kept for the image, so trying out several
+ * block sizes (applying, undoing and applying again) only sums the image once.
+ * </p>
+ * 
  * Example usage:
  * <pre>
  * {@code
@@ -32,7 +40,7 @@ import javax.swing.JOptionPane;
  * allowing it to be used in a sequence of image operations.
  * 
  * @see java.awt.image.BufferedImage
- * @see java.awt.Graphics
+ * @see SummedAreaTable
  * @see cosc202.andie.ImageOperation
  * @see java.io.Serializable
  * 
@@ -62,7 +70,7 @@ public class BlockAveragingFilter implements ImageOperation, java.io.Serializabl
      * <p>
      * This method processes the input image by dividing it into blocks of specified dimensions
      * and replacing each block with the average color of the pixels within that block. The resulting
-     * image is returned as a new BufferedImage.
+     * image is returned as a new ARGB BufferedImage.
      * </p>
      * 
      * @param input The input BufferedImage to which the block averaging filter is applied.
@@ -78,80 +86,47 @@ public class BlockAveragingFilter implements ImageOperation, java.io.Serializabl
                     JOptionPane.ERROR_MESSAGE);
             return null;
         }
-        // Ensure the input image is of a type that supports direct color manipulation including alpha
-        if (input.getType() != BufferedImage.TYPE_INT_ARGB) {
-            BufferedImage convertedImage = new BufferedImage(input.getWidth(), input.getHeight(),
-                    BufferedImage.TYPE_INT_ARGB);
-            Graphics g = convertedImage.getGraphics();
-            g.drawImage(input, 0, 0, null);
-            g.dispose();
-            input = convertedImage;
-        }
-
         int width = input.getWidth();
         int height = input.getHeight();
-        BufferedImage output = new BufferedImage(width, height, input.getType());
-
-        for (int y = 0; y < height; y += blockHeight) {
-            for (int x = 0; x < width; x += blockWidth) {
-                int[] rgb = averageBlock(input, x, y, blockWidth, blockHeight);
-                fillBlock(output, x, y, blockWidth, blockHeight, rgb);
-            }
-        }
-
-        return output;
-    }
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] data = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
 
-    /**
-     * Calculates the average color of a rectangular block starting at (startX, startY), including the alpha channel.
-     * 
-     * @param image The input BufferedImage.
-     * @param startX The starting X coordinate of the block.
-     * @param startY The starting Y coordinate of the block.
-     * @param blockWidth The width of the block.
-     * @param blockHeight The height of the block.
-     * @return An array containing the average ARGB values [alpha, red, green, blue] of the block.
-     */
-    private int[] averageBlock(BufferedImage image, int startX, int startY, int blockWidth, int blockHeight) {
-        long sumA = 0, sumR = 0, sumG = 0, sumB = 0;
-        int count = 0;
+        // Every block's sums are read from the summed-area tables, which are only built once per image
+        SummedAreaTable sums = SummedAreaTable.of(input);
 
-        int endX = Math.min(startX + blockWidth, image.getWidth());
-        int endY = Math.min(startY + blockHeight, image.getHeight());
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(height);
 
-        for (int y = startY; y < endY; y++) {
-            for (int x = startX; x < endX; x++) {
-                int argb = image.getRGB(x, y);
-                sumA += (argb >> 24) & 0xFF;
-                sumR += (argb >> 16) & 0xFF;
-                sumG += (argb >> 8) & 0xFF;
-                sumB += argb & 0xFF;
-                count++;
+        // Each row of blocks only writes its own pixels, so the rows of blocks can be filled in parallel
+        int blockRows = (height + blockHeight - 1) / blockHeight;
+        TileScheduler.forEach(blockRows, (start, end) -> {
+            for (int y = start * blockHeight; y < Math.min(end * blockHeight, height); y += blockHeight) {
+                int rows = Math.min(blockHeight, height - y);
+                for (int x = 0; x < width; x += blockWidth) {
+                    int columns = Math.min(blockWidth, width - x);
+                    fillBlock(data, width, x, y, columns, rows, sums.mean(x, y, columns, rows));
+                }
+                progress.advance(rows);
             }
-        }
+        });
 
-        if (count == 0) {
-            return new int[] { 0, 0, 0, 0 }; // Return transparent color if no pixels are averaged
-        }
-        return new int[] { (int) (sumA / count), (int) (sumR / count), (int) (sumG / count), (int) (sumB / count) };
+        return output;
     }
 
     /**
      * Fills a rectangular block with the averaged color, including alpha.
      * 
-     * @param image The output BufferedImage to be filled.
+     * @param data The pixels of the output image.
+     * @param width The width of the output image.
      * @param startX The starting X coordinate of the block.
      * @param startY The starting Y coordinate of the block.
-     * @param blockWidth The width of the block.
-     * @param blockHeight The height of the block.
-     * @param argb An array containing the average ARGB values [alpha, red, green, blue] to fill the block.
+     * @param blockWidth The width of the block, inside the image.
+     * @param blockHeight The height of the block, inside the image.
+     * @param argb The average color of the block, as packed ARGB.
      */
-    private void fillBlock(BufferedImage image, int startX, int startY, int blockWidth, int blockHeight, int[] argb) {
-        int avgColor = (argb[0] << 24) | (argb[1] << 16) | (argb[2] << 8) | argb[3];
-        for (int y = 0; y < blockHeight && startY + y < image.getHeight(); y++) {
-            for (int x = 0; x < blockWidth && startX + x < image.getWidth(); x++) {
-                image.setRGB(startX + x, startY + y, avgColor);
-            }
+    private void fillBlock(int[] data, int width, int startX, int startY, int blockWidth, int blockHeight, int argb) {
+        for (int y = startY; y < startY + blockHeight; y++) {
+            Arrays.fill(data, y * width + startX, y * width + startX + blockWidth, argb);
         }
     }
 }
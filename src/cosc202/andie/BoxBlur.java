@@ -0,0 +1,236 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>
+ * Averages the square neighbourhood of every pixel with running sums, at a
+ * cost that doesn't depend on the radius.
+ * </p>
+ *
+ * <p>
+ * Each band of rows keeps the sum of each channel down every column of the
+ * window around its current row. Moving down a row adds the row entering the
+ * window and takes away the one leaving it. Along each row the sum of the
+ * column sums across the window slides the same way. So every pixel costs a
+ * couple of additions and subtractions per channel however large the window
+ * is, where the separable convolution in {@link Convo2} costs 2r+1
+ * multiply-adds.
+ * </p>
+ *
+ * <p>
+ * The sums are exact integers, so each mean is the sum divided by the number
+ * of pixels in the window, rounded down, which is what the convolution's
+ * float sums are truncated to apart from their rounding errors. Edge pixels
+ * are repeated past the edges of the image, as the convolution does.
+ * </p>
+ *
+ * @version 1.0
+ * @see MeanFilter
+ */
+final class BoxBlur {
+
+    private BoxBlur() {
+    }
+
+    /**
+     * <p>
+     * Blur an image.
+     * </p>
+     *
+     * @param input  The image to blur.
+     * @param output The image to write the result to, the same size.
+     * @param radius How far the pixels averaged into each pixel can be from it.
+     * @return The output image.
+     */
+    static BufferedImage filter(BufferedImage input, BufferedImage output, int radius) {
+        ImagePixels source = ImagePixels.of(input);
+        ImagePixels destination = ImagePixels.forWriting(output);
+        int width = source.width;
+        int height = source.height;
+        int size = 2 * radius + 1;
+        // (sum + 0.5) / area is never within rounding error of a whole number, so it truncates exactly
+        double inverse = 1.0 / ((double) size * size);
+
+        // the padded column for each x + radius, and past it on the right for the sliding window
+        int[] columns = new int[width + 2 * radius + 1];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Math.min(Math.max(i - radius, 0), width - 1);
+        }
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(height);
+        TileScheduler.forEach(height, (start, end) -> {
+            // the sum of each channel down each column of the window, as 4 ints (a, r, g, b) per column
+            int[] sums = new int[width * 4];
+            for (int ky = start - radius; ky <= start + radius; ky++) {
+                add(source, clamp(ky, height), sums, 1);
+            }
+
+            for (int y = start; y < end; y++) {
+                long alpha = 0, red = 0, green = 0, blue = 0;
+                for (int i = 0; i < size; i++) {
+                    int c = columns[i] * 4;
+                    alpha += sums[c];
+                    red += sums[c + 1];
+                    green += sums[c + 2];
+                    blue += sums[c + 3];
+                }
+
+                int out = destination.offset + y * destination.stride;
+                for (int x = 0; x < width; x++) {
+                    int a = source.hasAlpha ? (int) ((alpha + 0.5) * inverse) : 255;
+                    int argb = a << 24 | (int) ((red + 0.5) * inverse) << 16
+                            | (int) ((green + 0.5) * inverse) << 8 | (int) ((blue + 0.5) * inverse);
+                    destination.data[out + x] = destination.store(argb);
+
+                    // slide the window one column right
+                    int entering = columns[x + size] * 4;
+                    int leaving = columns[x] * 4;
+                    alpha += sums[entering] - sums[leaving];
+                    red += sums[entering + 1] - sums[leaving + 1];
+                    green += sums[entering + 2] - sums[leaving + 2];
+                    blue += sums[entering + 3] - sums[leaving + 3];
+                }
+
+                // slide the window one row down
+                if (y + 1 < end) {
+                    add(source, clamp(y + radius + 1, height), sums, 1);
+                    add(source, clamp(y - radius, height), sums, -1);
+                }
+                progress.advance(1);
+            }
+        });
+        destination.commit();
+        return output;
+    }
+
+    /**
+     * <p>
+     * Blur the planes of an image, the same way as {@link filter(BufferedImage, BufferedImage, int)}
+     * blurs packed pixels.
+     * </p>
+     *
+     * @param input  The planes to blur.
+     * @param radius How far the pixels averaged into each pixel can be from it.
+     * @return The planes of the result, of the same type.
+     */
+    static PlanarImage filter(PlanarImage input, int radius) {
+        PlanarImage output = PlanarImage.create(input.width, input.height, input.type);
+        int width = input.width;
+        int height = input.height;
+        int size = 2 * radius + 1;
+        double inverse = 1.0 / ((double) size * size);
+        int first = input.hasAlpha() ? ColourLut.ALPHA : ColourLut.RED;
+
+        int[] columns = new int[width + 2 * radius + 1];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Math.min(Math.max(i - radius, 0), width - 1);
+        }
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(height);
+        TileScheduler.forEach(height, (start, end) -> {
+            // the sum of each plane down each column of the window, one array per plane
+            int[][] sums = new int[4][];
+            for (int c = first; c < 4; c++) {
+                sums[c] = new int[width];
+                for (int ky = start - radius; ky <= start + radius; ky++) {
+                    add(input.plane(c), clamp(ky, height) * width, sums[c], 1);
+                }
+            }
+
+            // an opaque image's alpha is summed from a column of zeros and never written
+            int[] alphaSums = first == ColourLut.ALPHA ? sums[ColourLut.ALPHA] : new int[width];
+            int[] redSums = sums[ColourLut.RED], greenSums = sums[ColourLut.GREEN], blueSums = sums[ColourLut.BLUE];
+            byte[] alpha = output.plane(ColourLut.ALPHA), red = output.plane(ColourLut.RED);
+            byte[] green = output.plane(ColourLut.GREEN), blue = output.plane(ColourLut.BLUE);
+
+            for (int y = start; y < end; y++) {
+                // the channels slide along the row together, as their sums don't depend on each other
+                long alphaSum = 0, redSum = 0, greenSum = 0, blueSum = 0;
+                for (int i = 0; i < size; i++) {
+                    alphaSum += alphaSums[columns[i]];
+                    redSum += redSums[columns[i]];
+                    greenSum += greenSums[columns[i]];
+                    blueSum += blueSums[columns[i]];
+                }
+                int out = y * width;
+                for (int x = 0; x < width; x++) {
+                    if (alpha != null) {
+                        alpha[out + x] = (byte) (int) ((alphaSum + 0.5) * inverse);
+                    }
+                    red[out + x] = (byte) (int) ((redSum + 0.5) * inverse);
+                    green[out + x] = (byte) (int) ((greenSum + 0.5) * inverse);
+                    blue[out + x] = (byte) (int) ((blueSum + 0.5) * inverse);
+
+                    int entering = columns[x + size];
+                    int leaving = columns[x];
+                    alphaSum += alphaSums[entering] - alphaSums[leaving];
+                    redSum += redSums[entering] - redSums[leaving];
+                    greenSum += greenSums[entering] - greenSums[leaving];
+                    blueSum += blueSums[entering] - blueSums[leaving];
+                }
+
+                if (y + 1 < end) {
+                    for (int c = first; c < 4; c++) {
+                        add(input.plane(c), clamp(y + radius + 1, height) * width, sums[c], 1);
+                        add(input.plane(c), clamp(y - radius, height) * width, sums[c], -1);
+                    }
+                }
+                progress.advance(1);
+            }
+        });
+        return output;
+    }
+
+    /**
+     * <p>
+     * Add a row of a plane to the column sums, or take it away.
+     * </p>
+     *
+     * @param plane The plane.
+     * @param in    The index of the start of the row in the plane.
+     * @param sums  The column sums.
+     * @param sign  1 to add the row, -1 to take it away.
+     */
+    private static void add(byte[] plane, int in, int[] sums, int sign) {
+        for (int x = 0; x < sums.length; x++) {
+            sums[x] += sign * (plane[in + x] & 0xFF);
+        }
+    }
+
+    /**
+     * <p>
+     * Add a row of the image to the column sums, or take it away.
+     * </p>
+     *
+     * @param source The pixels of the input image.
+     * @param y      The row.
+     * @param sums   The column sums, as 4 ints (a, r, g, b) per column.
+     * @param sign   1 to add the row, -1 to take it away.
+     */
+    private static void add(ImagePixels source, int y, int[] sums, int sign) {
+        int in = source.offset + y * source.stride;
+        for (int x = 0; x < source.width; x++) {
+            int argb = source.data[in + x];
+            sums[4 * x] += sign * (argb >>> 24);
+            sums[4 * x + 1] += sign * ((argb >> 16) & 0xFF);
+            sums[4 * x + 2] += sign * ((argb >> 8) & 0xFF);
+            sums[4 * x + 3] += sign * (argb & 0xFF);
+        }
+    }
+
+    /**
+     * <p>
+     * Clamp a row to the image, repeating the edge rows past its edges.
+     * </p>
+     *
+     * @param y      The row, which may be past the top or bottom.
+     * @param height The height of the image.
+     * @return The row to read.
+     */
+    private static int clamp(int y, int height) {
+        return Math.min(Math.max(y, 0), height - 1);
+    }
+}
@@ -23,7 +23,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
  */
 
-public class BrightnessAndContrast implements ImageOperation, java.io.Serializable {
+public class BrightnessAndContrast implements PointOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 3540266587402948384L;
 
     private double brightness;
     private double contrast;
@@ -51,34 +53,18 @@ public class BrightnessAndContrast implements ImageOperation, java.io.Serializab
     public BufferedImage apply(BufferedImage input) {
         BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
                 input.isAlphaPremultiplied(), null);
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                output.setRGB(x, y, getARGB(x, y, input));
-            }
-        }
-        return output;
+        return getLut().apply(input, output);
     }
 
-    // Calculates the ARGB value for the pixel at position (x, y) in the input image
-    private int getARGB(int x, int y, BufferedImage input) {
-        int argb = input.getRGB(x, y);
-
-        int a = (argb & 0xFF000000) >> 24;
-        int r = (argb & 0x00FF0000) >> 16;
-        int g = (argb & 0x0000FF00) >> 8;
-        int b = (argb & 0x000000FF);
-
-        int red = calculateColour(r);
-        int green = calculateColour(g);
-        int blue = calculateColour(b);
-
-        red = cast(red);
-        blue = cast(blue);
-        green = cast(green);
-
-        // Assign the new values onto the pixel
-        argb = (a << 24) | (red << 16) | (green << 8) | blue;
-        return argb;
+    /**
+     * Gets the lookup table for the brightness and contrast adjustment, which
+     * adjusts each of the red, green and blue values and leaves alpha unchanged.
+     * 
+     * @return the lookup table for the adjustment
+     */
+    public ColourLut getLut() {
+        // each possible colour value is only calculated once, rather than once per pixel
+        return ColourLut.identity().mapColour(x -> cast(calculateColour(x)));
     }
 
     // calculates the colour based on previous colour value and the new contrast and
@@ -127,7 +127,7 @@ public class ColourActions {
          * @param e The event triggering this callback.
          */
         public void actionPerformed(ActionEvent e) {
-            target.getImage().apply(new ConvertToGrey());
+            applyToSelection(new ConvertToGrey());
             target.repaint();
             target.getParent().revalidate();
         }
@@ -153,7 +153,7 @@ public class ColourActions {
         * @param e The event triggering this callback.
         */
         public void actionPerformed(ActionEvent e) {
-            target.getImage().apply(new ImageInversion());
+            applyToSelection(new ImageInversion());
             target.repaint();
             target.getParent().revalidate();
         }
@@ -228,7 +228,7 @@ public class ColourActions {
 
         // Applies the Brightness/Contrast Filter
         private void applyBrightnessContrast(int brightness, int contrast) {
-            target.getImage().apply(new BrightnessAndContrast(brightness, contrast));
+            applyToSelection(new BrightnessAndContrast(brightness, contrast));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -297,7 +297,7 @@ public class ColourActions {
             ColourChannelCycling colourCyclingOperation = new ColourChannelCycling(selectedOptionIndex);
 
             // Applies the ColourChannelCycling operation to the given image
-            target.getImage().apply(colourCyclingOperation);
+            applyToSelection(colourCyclingOperation);
             target.repaint();
             target.getParent().revalidate();
 
@@ -11,7 +11,9 @@ import java.awt.image.BufferedImage;
  * @author Angus Tucker
  * @version 1.0
  */
-public class ColourChannelCycling implements ImageOperation, java.io.Serializable {
+public class ColourChannelCycling implements PointOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 6616672909393229927L;
 
     private int argbReOrderOption;
 
@@ -25,6 +27,32 @@ public class ColourChannelCycling implements ImageOperation, java.io.Serializabl
         this.argbReOrderOption = argbReOrderOption;
     }
 
+    /**
+     * Gets the lookup table for the reordering option, which takes each of the
+     * red, green and blue channels from another of them and leaves alpha
+     * unchanged.
+     * 
+     * @return The lookup table for the color channel cycling.
+     */
+    public ColourLut getLut() {
+        // based on the specific option chosen by the user, each case performs a
+        // different Colour Channel re-ordering
+        switch (argbReOrderOption) {
+            case 1:
+                return ColourLut.permutation(ColourLut.ALPHA, ColourLut.RED, ColourLut.BLUE, ColourLut.GREEN);
+            case 2:
+                return ColourLut.permutation(ColourLut.ALPHA, ColourLut.BLUE, ColourLut.RED, ColourLut.GREEN);
+            case 3:
+                return ColourLut.permutation(ColourLut.ALPHA, ColourLut.GREEN, ColourLut.BLUE, ColourLut.RED);
+            case 4:
+                return ColourLut.permutation(ColourLut.ALPHA, ColourLut.GREEN, ColourLut.RED, ColourLut.BLUE);
+            case 5:
+                return ColourLut.permutation(ColourLut.ALPHA, ColourLut.BLUE, ColourLut.GREEN, ColourLut.RED);
+            default:
+                return ColourLut.identity();
+        }
+    }
+
     /**
      * Applies color channel cycling to the input image based on the specified
      * reordering option.
@@ -34,46 +62,8 @@ public class ColourChannelCycling implements ImageOperation, java.io.Serializabl
      * @return The resulting BufferedImage after applying the color channel cycling.
      */
     public BufferedImage apply(BufferedImage input) {
-
         BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
                 input.isAlphaPremultiplied(), null);
-
-        // for loops to iterate through each pixel in the input image
-        for (int y = 0; y < input.getHeight(); y++) {
-            for (int x = 0; x < input.getWidth(); x++) {
-                int argb = input.getRGB(x, y);
-                int a = (argb >> 24) & 0xFF;
-                int r = (argb >> 16) & 0xFF;
-                int g = (argb >> 8) & 0xFF;
-                int b = argb & 0xFF;
-
-                // based on the specific option chosen by the user, each case performs a
-                // different Colour Channel re-ordering
-                switch (argbReOrderOption) {
-                    case 0:
-
-                        break;
-                    case 1:
-                        argb = (a << 24) | (r << 16) | (b << 8) | g;
-                        break;
-                    case 2:
-                        argb = (a << 24) | (b << 16) | (r << 8) | g;
-                        break;
-                    case 3:
-                        argb = (a << 24) | (g << 16) | (b << 8) | r;
-                        break;
-                    case 4:
-                        argb = (a << 24) | (g << 16) | (r << 8) | b;
-                        break;
-                    case 5:
-                        argb = (a << 24) | (b << 16) | (g << 8) | r;
-                        break;
-                }
-
-                output.setRGB(x, y, argb);
-            }
-        }
-        return output;
-
+        return getLut().apply(input, output);
     }
 }
@@ -0,0 +1,301 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * <p>
+ * A point operation expressed as lookup tables, one per channel.
+ * </p>
+ *
+ * <p>
+ * Each channel of the output (alpha, red, green and blue) is found by taking one
+ * channel of the input, its source, and looking its value up in a 256-entry
+ * table. Tables express per-channel adjustments such as brightness, contrast and
+ * inversion, and sources express permutations of the channels such as colour
+ * channel cycling. Applying a lookup table to a pixel is then four table
+ * lookups, with no arithmetic or colour conversion, in one loop over the packed
+ * pixels.
+ * </p>
+ *
+ * <p>
+ * Lookup tables are immutable; {@link map} and {@link mapColour} return new
+ * ones. Two lookup tables applied one after the other can be combined into one
+ * with {@link then}, so a permutation of the channels can be followed by
+ * adjustments to them.
+ * </p>
+ *
+ * @version 1.0
+ * @see PointOperation
+ */
+final class ColourLut {
+
+    /** The alpha channel. */
+    static final int ALPHA = 0;
+    /** The red channel. */
+    static final int RED = 1;
+    /** The green channel. */
+    static final int GREEN = 2;
+    /** The blue channel. */
+    static final int BLUE = 3;
+
+    /** The lookup table that leaves every pixel unchanged. */
+    private static final ColourLut IDENTITY;
+
+    static {
+        int[][] tables = new int[4][256];
+        for (int c = 0; c < 4; c++) {
+            for (int v = 0; v < 256; v++) {
+                tables[c][v] = v;
+            }
+        }
+        IDENTITY = new ColourLut(new int[] { ALPHA, RED, GREEN, BLUE }, tables);
+    }
+
+    /** The input channel each output channel is looked up from. */
+    private final int[] sources;
+
+    /** The table for each output channel, indexed by the value of its source channel. */
+    private final int[][] tables;
+
+    private ColourLut(int[] sources, int[][] tables) {
+        this.sources = sources;
+        this.tables = tables;
+    }
+
+    /**
+     * <p>
+     * Get the lookup table that leaves every pixel unchanged.
+     * </p>
+     *
+     * @return The identity lookup table.
+     */
+    static ColourLut identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * <p>
+     * Get a lookup table that also applies a function to one channel.
+     * </p>
+     *
+     * <p>
+     * The function is given the channel's current value and its result is
+     * clamped to the 0 to 255 range.
+     * </p>
+     *
+     * @param channel  The channel to adjust: {@link ALPHA}, {@link RED}, {@link GREEN} or {@link BLUE}.
+     * @param function The adjustment, from the channel's value to its new value.
+     * @return The new lookup table.
+     */
+    ColourLut map(int channel, IntUnaryOperator function) {
+        int[][] mapped = tables.clone();
+        mapped[channel] = new int[256];
+        for (int v = 0; v < 256; v++) {
+            mapped[channel][v] = Math.min(Math.max(function.applyAsInt(tables[channel][v]), 0), 255);
+        }
+        return new ColourLut(sources, mapped);
+    }
+
+    /**
+     * <p>
+     * Get a lookup table that applies a function to the red, green and blue
+     * channels.
+     * </p>
+     *
+     * @param function The adjustment, from a channel's value to its new value.
+     * @return The new lookup table.
+     * @see map(int, IntUnaryOperator)
+     */
+    ColourLut mapColour(IntUnaryOperator function) {
+        return map(RED, function).map(GREEN, function).map(BLUE, function);
+    }
+
+    /**
+     * <p>
+     * Get a lookup table that rearranges the channels.
+     * </p>
+     *
+     * <p>
+     * Each argument is the input channel the output channel is copied from, so
+     * {@code permutation(ALPHA, BLUE, GREEN, RED)} swaps red and blue.
+     * </p>
+     *
+     * @param alpha The channel alpha is copied from.
+     * @param red   The channel red is copied from.
+     * @param green The channel green is copied from.
+     * @param blue  The channel blue is copied from.
+     * @return The lookup table.
+     */
+    static ColourLut permutation(int alpha, int red, int green, int blue) {
+        return new ColourLut(new int[] { alpha, red, green, blue }, IDENTITY.tables);
+    }
+
+    /**
+     * <p>
+     * Combine this lookup table with another applied after it.
+     * </p>
+     *
+     * @param next The lookup table applied to the result of this one.
+     * @return A lookup table with the same effect as applying this one and then {@code next}.
+     */
+    ColourLut then(ColourLut next) {
+        int[] combinedSources = new int[4];
+        int[][] combinedTables = new int[4][256];
+        for (int c = 0; c < 4; c++) {
+            int middle = next.sources[c];
+            combinedSources[c] = sources[middle];
+            for (int v = 0; v < 256; v++) {
+                combinedTables[c][v] = next.tables[c][tables[middle][v]];
+            }
+        }
+        return new ColourLut(combinedSources, combinedTables);
+    }
+
+    /**
+     * <p>
+     * Apply the lookup table to one pixel.
+     * </p>
+     *
+     * @param argb The pixel, as packed ARGB.
+     * @return The new pixel, as packed ARGB.
+     */
+    int apply(int argb) {
+        int result = 0;
+        for (int c = 0; c < 4; c++) {
+            result |= tables[c][(argb >>> (24 - 8 * sources[c])) & 0xFF] << (24 - 8 * c);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Apply the lookup table to every pixel of an image.
+     * </p>
+     *
+     * <p>
+     * The output may be the input itself, to apply the lookup table in place, or
+     * another image of the same size. Images without an alpha channel are read
+     * as opaque. Each row is looked up with {@link SimdKernels}, a vector of
+     * pixels at a time, when it is available.
+     * </p>
+     *
+     * @param input  The image to read.
+     * @param output The image to write.
+     * @return The output image.
+     */
+    BufferedImage apply(BufferedImage input, BufferedImage output) {
+        ImagePixels source = ImagePixels.of(input);
+        // in place, each pixel is read just before it is overwritten
+        ImagePixels destination = output == input ? source : ImagePixels.forWriting(output);
+
+        // each table, shifted to its place in the packed pixel
+        int[] alpha = shifted(ALPHA), red = shifted(RED), green = shifted(GREEN), blue = shifted(BLUE);
+        int alphaShift = 24 - 8 * sources[ALPHA], redShift = 24 - 8 * sources[RED];
+        int greenShift = 24 - 8 * sources[GREEN], blueShift = 24 - 8 * sources[BLUE];
+        int opaque = source.hasAlpha ? 0 : 0xFF000000;
+        int width = source.width;
+        SimdKernels simd = SimdKernels.INSTANCE;
+        int[][] tables = { alpha, red, green, blue };
+        int[] shifts = { alphaShift, redShift, greenShift, blueShift };
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(source.height);
+        TileScheduler.forEach(source.height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int in = source.offset + y * source.stride;
+                int out = destination.offset + y * destination.stride;
+                if (simd != null) {
+                    simd.lookup(source.data, in, destination.data, out, width, opaque, tables, shifts,
+                            destination.store(-1));
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        int argb = source.data[in + x] | opaque;
+                        destination.data[out + x] = destination.store(alpha[(argb >>> alphaShift) & 0xFF]
+                                | red[(argb >>> redShift) & 0xFF]
+                                | green[(argb >>> greenShift) & 0xFF]
+                                | blue[(argb >>> blueShift) & 0xFF]);
+                    }
+                }
+                progress.advance(1);
+            }
+        });
+        destination.commit();
+        return output;
+    }
+
+    /**
+     * <p>
+     * Apply the lookup table to the planes of an image.
+     * </p>
+     *
+     * <p>
+     * Output channels that are just copied from the same input channel share
+     * its plane, and an output channel looked up from the alpha of an opaque
+     * image is filled with what 255 looks up to.
+     * </p>
+     *
+     * @param input The planes to read.
+     * @param type  The type of image the result stands for: TYPE_INT_ARGB, or
+     *              TYPE_INT_RGB to leave out the alpha.
+     * @return The planes of the result.
+     */
+    PlanarImage apply(PlanarImage input, int type) {
+        int width = input.width;
+        int count = width * input.height;
+        byte[][] planes = new byte[4][];
+        byte[][] sourcePlanes = new byte[4][];
+        byte[][] lookups = new byte[4][];
+        for (int c = PlanarImage.hasAlpha(type) ? ALPHA : RED; c < 4; c++) {
+            byte[] source = input.plane(sources[c]);
+            if (source == null) {
+                planes[c] = new byte[count];
+                Arrays.fill(planes[c], (byte) tables[c][255]);
+            } else if (sources[c] == c && Arrays.equals(tables[c], IDENTITY.tables[c])) {
+                planes[c] = source;
+            } else {
+                planes[c] = new byte[count];
+                sourcePlanes[c] = source;
+                lookups[c] = new byte[256];
+                for (int v = 0; v < 256; v++) {
+                    lookups[c][v] = (byte) tables[c][v];
+                }
+            }
+        }
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(input.height);
+        TileScheduler.forEach(input.height, (start, end) -> {
+            for (int c = 0; c < 4; c++) {
+                byte[] source = sourcePlanes[c];
+                if (source == null) {
+                    continue;
+                }
+                byte[] plane = planes[c];
+                byte[] lookup = lookups[c];
+                for (int i = start * width; i < end * width; i++) {
+                    plane[i] = lookup[source[i] & 0xFF];
+                }
+            }
+            progress.advance(end - start);
+        });
+        return PlanarImage.of(width, input.height, type, planes);
+    }
+
+    /**
+     * <p>
+     * Get the table for an output channel, with each entry shifted into place.
+     * </p>
+     *
+     * @param channel The output channel.
+     * @return The shifted table.
+     */
+    private int[] shifted(int channel) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = tables[channel][v] << (24 - 8 * channel);
+        }
+        return table;
+    }
+}
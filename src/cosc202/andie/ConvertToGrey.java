@@ -21,7 +21,10 @@ import java.awt.image.*;
  * @author Steven Mills
  * @version 1.0
  */
-public class ConvertToGrey implements ImageOperation, java.io.Serializable {
+public class ConvertToGrey implements PixelOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = -6551968746842527704L;
+
     // Create a new CovertToGrey operation.
     ConvertToGrey() {
     }
@@ -45,23 +48,33 @@ public class ConvertToGrey implements ImageOperation, java.io.Serializable {
 
         for (int y = 0; y < input.getHeight(); ++y) {
             for (int x = 0; x < input.getWidth(); ++x) {
-                int argb = input.getRGB(x, y);
-                /** >> sets shifted-in bits to match the sign (high order) bit
-                * >>> sets shifted-in bits to zero always
-                */
-                int a = (argb & 0xFF000000) >>> 24;
-                int r = (argb & 0x00FF0000) >> 16;
-                int g = (argb & 0x0000FF00) >> 8;
-                int b = (argb & 0x000000FF);
-
-                int grey = (int) Math.round(0.3 * r + 0.6 * g + 0.1 * b);
-
-                argb = (a << 24) | (grey << 16) | (grey << 8) | grey;
-                input.setRGB(x, y, argb);
+                input.setRGB(x, y, filterPixel(input.getRGB(x, y)));
             }
         }
 
         return input;
     }
 
+    /**
+     * <p>
+     * Convert one pixel to greyscale, keeping its alpha value.
+     * </p>
+     * 
+     * @param argb The pixel, as packed ARGB.
+     * @return The grey pixel, as packed ARGB.
+     */
+    public int filterPixel(int argb) {
+        /** >> sets shifted-in bits to match the sign (high order) bit
+        * >>> sets shifted-in bits to zero always
+        */
+        int a = (argb & 0xFF000000) >>> 24;
+        int r = (argb & 0x00FF0000) >> 16;
+        int g = (argb & 0x0000FF00) >> 8;
+        int b = (argb & 0x000000FF);
+
+        int grey = (int) Math.round(0.3 * r + 0.6 * g + 0.1 * b);
+
+        return (a << 24) | (grey << 16) | (grey << 8) | grey;
+    }
+
 }
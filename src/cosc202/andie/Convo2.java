@@ -1,9 +1,6 @@
 package cosc202.andie;
 
-import java.awt.*;
 import java.awt.image.*;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * <p>
@@ -14,6 +11,43 @@ import java.util.List;
  * This class allows filtering of BufferedImage objects by applying convolution operations.
  * </p>
  * 
+ * <p>
+ * A separable kernel (one that is the product of a horizontal and a vertical 1-D kernel, like a
+ * gaussian or mean kernel) can be given as its two 1-D kernels instead. It is then applied as a
+ * horizontal pass followed by a vertical pass, which costs O(r) per pixel rather than O(r^2).
+ * The result and the edge padding are the same as convolving with the full kernel.
+ * </p>
+ * 
+ * <p>
+ * Small kernels whose weights are all whole numbers of halves, quarters and so on (like the
+ * Sobel, emboss and Laplacian kernels) are applied with integer arithmetic. The weights are
+ * scaled up to integers by a power of two, and two channels are packed into each int, alpha and
+ * green in one and red and blue in the other, 16 bits apart, so each kernel tap costs two integer
+ * multiply-adds instead of four float ones. Positive and negative weights are summed separately
+ * so that neither sum can borrow from the channel above it. The float sums for such kernels are
+ * exact, so the result is identical.
+ * </p>
+ * 
+ * <p>
+ * Either way only the kernel's non-zero taps are visited. Their positions and weights are listed
+ * once when the Convo2 is made, so a kernel like an emboss kernel, with two non-zero taps out of
+ * nine, costs two reads per pixel rather than nine.
+ * </p>
+ * 
+ * <p>
+ * Large kernels are convolved in the frequency domain instead, with {@link FourierConvolution},
+ * when its estimated cost per pixel is lower than that of the direct (or separable) convolution.
+ * On a large image that is from about a 5x5 kernel with every tap non-zero (or 23x23 with
+ * {@link SimdKernels}), but only from a radius of about 40 for a separable one. The result can
+ * differ from the direct one by a level where a sum falls right on a whole number, since the sums
+ * are rounded differently.
+ * </p>
+ * 
+ * <p>
+ * On Java 17 and later, the interiors of the full and integer kernels are done many pixels at a
+ * time by {@link SimdKernels}, with the same result.
+ * </p>
+ * 
  * @author Hadrien Tang
  * 
  * */
@@ -23,13 +57,82 @@ public class Convo2 {
     private final Kernel kernel;
     private boolean offset;
 
-    //these are for testing purposes. that way i can test only one channel to make sure the convolution works 
-    public List<Integer> redValuesBefore = new ArrayList<>();
-    public List<Integer> redValuesAfter = new ArrayList<>();
+    //the 1-D kernels of a separable kernel, or null if the kernel isn't separable
+    private final float[] horizontal;
+    private final float[] vertical;
+
+    //the non-zero taps of the kernel, in the order they appear in it: the row and column of each
+    //within the kernel, and its weight
+    private final int[] tapRows;
+    private final int[] tapColumns;
+    private final float[] tapWeights;
+
+    //the taps scaled up to integers by 2^shift and split into those with positive and negative
+    //weights, or null if the kernel can't be applied with integer arithmetic
+    private final int[] positiveRows;
+    private final int[] positiveColumns;
+    private final int[] positiveWeights;
+    private final int[] negativeRows;
+    private final int[] negativeColumns;
+    private final int[] negativeWeights;
+    private final int shift;
+
+    //the largest scaled integer kernel: the sum of its weights' magnitudes, times 255, must fit in 16 bits
+    private static final int MAX_INTEGER_WEIGHT = 257;
+    private static final int MAX_SHIFT = 8;
+
+    //how many times cheaper each tap of the full and integer kernels is with SimdKernels (measured on a
+    //12MP image: about 23 times with 8 pixels to a vector, and 30 with 16), which moves the point where
+    //the frequency domain takes over from about 5x5 to about 23x23
+    private static final double SIMD_SPEEDUP = 20;
+
+    //for testing purposes, told about every pixel read and written once the convolution is done
+    private ConvolutionProbe probe;
+
+    //how the image is padded past its edges
+    private EdgeMode edgeMode = EdgeMode.CLAMP;
+
+    /**
+    * The ways the image can be padded where the kernel goes past its edges.
+    */
+    public enum EdgeMode {
+        /** Repeat the nearest edge pixel. */
+        CLAMP,
+        /** Mirror the image about its edge pixels, so the pixel one past the edge is the one just inside it. */
+        REFLECT,
+        /** Wrap around to the opposite edge, as if the image were tiled. */
+        WRAP;
+
+        /**
+        * Find the pixel of the image that stands in for a row or column that may be past its edges.
+        *
+        * @param i The row or column, which may be negative or past the end.
+        * @param n The height or width of the image.
+        * @return The row or column from 0 to n - 1 to read instead.
+        */
+        int index(int i, int n) {
+            if (i >= 0 && i < n) {
+                return i;
+            }
+            switch (this) {
+                case REFLECT:
+                    if (n == 1) {
+                        return 0;
+                    }
+                    int period = 2 * (n - 1);
+                    i = Math.floorMod(i, period);
+                    return i < n ? i : period - i;
+                case WRAP:
+                    return Math.floorMod(i, n);
+                default:
+                    return Math.min(Math.max(i, 0), n - 1);
+            }
+        }
+    }
 
     //one constructor that is just the kernel, and one with the offset choice
     public Convo2(Kernel kernel) {
-        this.kernel = kernel;
+        this(kernel, false);
     }
 
     /**
@@ -39,8 +142,152 @@ public class Convo2 {
     * @param offset Whether to apply an offset.
     */
     public Convo2(Kernel kernel, boolean offset) {
+        this(kernel, offset, true);
+    }
+
+    /**
+    * Constructor for Convo2 with a kernel and the offset choice that can keep the kernel out of
+    * integer arithmetic, so that the two ways of convolving it can be compared.
+    *
+    * @param kernel  The convolution kernel to be used.
+    * @param offset  Whether to apply an offset.
+    * @param integer Whether a kernel of small whole numbers of halves, quarters and so on may be
+    *                applied with integer arithmetic, rather than always with floats.
+    */
+    Convo2(Kernel kernel, boolean offset, boolean integer) {
         this.kernel = kernel;
         this.offset = offset;
+        this.horizontal = null;
+        this.vertical = null;
+
+        //list the non-zero taps
+        float[] data = kernel.getKernelData(null);
+        int width = kernel.getWidth();
+        int taps = 0, positives = 0, negatives = 0;
+        for (float value : data) {
+            if (value != 0) {
+                taps++;
+            }
+        }
+        this.tapRows = new int[taps];
+        this.tapColumns = new int[taps];
+        this.tapWeights = new float[taps];
+        taps = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != 0) {
+                tapRows[taps] = i / width;
+                tapColumns[taps] = i % width;
+                tapWeights[taps++] = data[i];
+                if (data[i] > 0) {
+                    positives++;
+                } else {
+                    negatives++;
+                }
+            }
+        }
+
+        //find the smallest power of two that scales every weight to a small integer
+        int found = -1;
+        for (int s = 0; s <= MAX_SHIFT && found < 0; s++) {
+            long total = 0;
+            boolean whole = true;
+            for (float value : tapWeights) {
+                float scaled = value * (1 << s);
+                whole &= scaled == Math.rint(scaled);
+                total += Math.abs((long) scaled);
+            }
+            if (whole && total <= MAX_INTEGER_WEIGHT) {
+                found = s;
+            }
+        }
+        this.shift = integer ? found : -1;
+        if (shift < 0) {
+            this.positiveRows = null;
+            this.positiveColumns = null;
+            this.positiveWeights = null;
+            this.negativeRows = null;
+            this.negativeColumns = null;
+            this.negativeWeights = null;
+            return;
+        }
+        this.positiveRows = new int[positives];
+        this.positiveColumns = new int[positives];
+        this.positiveWeights = new int[positives];
+        this.negativeRows = new int[negatives];
+        this.negativeColumns = new int[negatives];
+        this.negativeWeights = new int[negatives];
+        positives = 0;
+        negatives = 0;
+        for (int i = 0; i < taps; i++) {
+            int weight = (int) (tapWeights[i] * (1 << shift));
+            if (weight > 0) {
+                positiveRows[positives] = tapRows[i];
+                positiveColumns[positives] = tapColumns[i];
+                positiveWeights[positives++] = weight;
+            } else {
+                negativeRows[negatives] = tapRows[i];
+                negativeColumns[negatives] = tapColumns[i];
+                negativeWeights[negatives++] = -weight;
+            }
+        }
+    }
+
+    /**
+    * Constructor for Convo2 with a separable kernel, given as the horizontal and vertical 1-D
+    * kernels whose product is the full kernel. Both must have the same odd length.
+    *
+    * @param horizontal The kernel applied along each row.
+    * @param vertical   The kernel applied along each column.
+    * @param offset     Whether to apply an offset.
+    */
+    public Convo2(float[] horizontal, float[] vertical, boolean offset) {
+        if (horizontal.length != vertical.length || horizontal.length % 2 == 0) {
+            throw new IllegalArgumentException("Separable kernels must have the same odd length");
+        }
+        this.horizontal = horizontal.clone();
+        this.vertical = vertical.clone();
+        this.offset = offset;
+        this.tapRows = null;
+        this.tapColumns = null;
+        this.tapWeights = null;
+        this.positiveRows = null;
+        this.positiveColumns = null;
+        this.positiveWeights = null;
+        this.negativeRows = null;
+        this.negativeColumns = null;
+        this.negativeWeights = null;
+        this.shift = -1;
+
+        //the full kernel, which is what the probe reports against
+        int size = horizontal.length;
+        float[] data = new float[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                data[y * size + x] = vertical[y] * horizontal[x];
+            }
+        }
+        this.kernel = new Kernel(size, size, data);
+    }
+
+    /**
+    * Attach a probe that is told about the pixels read and written by each call to
+    * {@link filter}. The probe is only called after the convolution has finished,
+    * so it doesn't slow down the convolution itself.
+    *
+    * @param probe The probe to attach, or null to detach it.
+    */
+    public void setProbe(ConvolutionProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+    * Choose how the image is padded where the kernel goes past its edges. The default is
+    * {@link EdgeMode#CLAMP}, which repeats the nearest edge pixel.
+    *
+    * @param edgeMode How to pad the image.
+    */
+    public void setEdgeMode(EdgeMode edgeMode) {
+        this.edgeMode = edgeMode;
     }
 
     /**
@@ -52,20 +299,14 @@ public class Convo2 {
     */
     public BufferedImage filter(BufferedImage input, BufferedImage output) {
         //if destination is null then create one that is exactly the same
-        int middlevalue = 128;
-
         if (output == null) {
             output = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
         } else if (input == output) {
             throw new IllegalArgumentException("Source and destination images must be different");
         }
 
-        // Retrieve the kernel data
-        float[] kernelData = kernel.getKernelData(null);
-
         // Extract kernel dimensions and padding
-        int kernelWidth = kernel.getWidth();
-        int r = kernelWidth / 2;
+        int r = kernel.getWidth() / 2;
 
         //check if the input has an alpha channel
         ColorModel colorModel = input.getColorModel();
@@ -75,105 +316,433 @@ public class Convo2 {
         int height = input.getHeight();
         int width = input.getWidth();
 
-        // Iterate over each pixel in the source image
-        for (int y = 0; y < input.getHeight(); y++) {
-            for (int x = 0; x < input.getWidth(); x++) {
-                // Initialize sums for each color channel
-                float sumRed = 0;
-                float sumGreen = 0;
-                float sumBlue = 0;
-                float sumAlpha = 0;
+        // Read and write the packed pixels directly rather than through getRGB/setRGB
+        ImagePixels source = ImagePixels.of(input);
+        ImagePixels destination = ImagePixels.forWriting(output);
 
-                //initialize the color channels
-                int alpha = 0, red = 0, green = 0, blue = 0;
+        //the padding stuff, make sure that the kernel doesn't go over the edge basically.
+        //columns[x + r] is the padded column for x, so that the loops over the border don't have to
+        //work it out. The full kernels read pixels at least r from the left and right edges directly
+        int[] columns = new int[width + 2 * r];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = edgeMode.index(i - r, width);
+        }
 
-                // Iterate over each pixel in the kernel
-                for (int ky = -r; ky <= r; ky++) {
-                    for (int kx = -r; kx <= r; kx++) {
-
-                        //the padding stuff, make sure that the kernel doesn't go over the edge basically
-                        int pixelX = Math.min(Math.max(x + kx, 0), input.getWidth() - 1);
-                        int pixelY = Math.min(Math.max(y + ky, 0), input.getHeight() - 1);
-
-                        //get the color int from the pixel in the image
-                        int argb = input.getRGB(pixelX, pixelY);
-
-                        //seperate into each color channel
-
-                        if (Alphachannel) {
-                            alpha = (argb >> 24) & 0xFF;
-                        }
-                        red = (argb >> 16) & 0xFF;
-                        green = (argb >> 8) & 0xFF;
-                        blue = argb & 0xFF;
-
-                        //add the red values to the list for testing purposes
-                        redValuesBefore.add(red);
-
-                        //this code does not work for some reason
-                        /* 
-                        alpha = (argb & 0xFF000000) >>> 24;
-                        red = (argb & 0x00FF0000) >>> 16;
-                        green = (argb & 0x0000FF00) >>> 8;
-                        blue = (argb & 0x000000FF);
-                        */
-
-                        // Retrieve the kernel value at the current position
-                        float kernelValue = kernelData[(ky + r) * kernelWidth + (kx + r)];
-
-                        // Accumulate the weighted color values
-                        if (Alphachannel) {
-                            sumAlpha += kernelValue * alpha;
-                        }
-                        sumRed += kernelValue * red;
-                        sumGreen += kernelValue * green;
-                        sumBlue += kernelValue * blue;
+        //large kernels are cheaper to convolve in the frequency domain, once the image is big enough
+        //for the transforms to pay for themselves
+        int size = kernel.getWidth();
+        int tile = FourierConvolution.chooseTile(size, width, height);
+        if (FourierConvolution.cost(size, tile, width, height) < directCost()) {
+            new FourierConvolution(kernel.getKernelData(null), size, tile).filter(source, destination, edgeMode,
+                    Alphachannel, (sumAlpha, sumRed, sumGreen, sumBlue) ->
+                            toARGB(sumAlpha, sumRed, sumGreen, sumBlue, Alphachannel));
+        } else {
+            OperationProgress progress = OperationProgress.current();
+            progress.begin(height);
+
+            //each band of rows only reads from the input, so the bands can be filled in parallel
+            TileScheduler.forEach(height, (start, end) -> {
+                if (horizontal != null) {
+                    filterSeparable(source, destination, columns, Alphachannel, progress, start, end);
+                } else if (positiveWeights != null) {
+                    filterInteger(source, destination, columns, Alphachannel, progress, start, end);
+                } else {
+                    filterFull(source, destination, columns, Alphachannel, progress, start, end);
+                }
+            });
+        }
+
+        // Write back to the destination if it couldn't be accessed directly
+        destination.commit();
+
+        //replay the convolution for the probe, outside the loop above so that it costs nothing when there isn't one
+        if (probe != null) {
+            report(source, destination, columns);
+        }
+
+        // Return the resulting image
+        return output;
+    }
+
+    /**
+    * Estimates the cost of convolving each pixel directly, in taps of the full float kernel.
+    *
+    * @return The cost per pixel.
+    */
+    private double directCost() {
+        if (horizontal != null) {
+            //both passes together, where a tap reads floats that are already unpacked, cost about
+            //0.4 of a full tap each (measured on a 12MP image)
+            return 0.8 * horizontal.length;
+        }
+        //the interiors of the other two are done a vector of pixels at a time when the Vector API is there
+        double speedup = SimdKernels.INSTANCE != null ? SIMD_SPEEDUP : 1;
+        if (positiveWeights != null) {
+            //two channels per multiply-add
+            return (positiveWeights.length + negativeWeights.length) * 2 / 3.0 / speedup;
+        }
+        return tapWeights.length / speedup;
+    }
+
+    /**
+    * Applies the full kernel to a band of rows.
+    *
+    * <p>
+    * Each row is done in three parts: the left and right borders, where the kernel goes past the
+    * edge and the padded columns are looked up, and the interior between them, where the taps are
+    * read at fixed offsets from the pixel with no lookups at all.
+    * </p>
+    *
+    * @param source       The pixels of the input image.
+    * @param destination  The pixels of the output image.
+    * @param columns      The padded column for each x + r.
+    * @param Alphachannel Whether the input has an alpha channel to convolve.
+    * @param progress     The progress of the operation, advanced once per row.
+    * @param start        The first row to fill.
+    * @param end          One past the last row to fill.
+    */
+    private void filterFull(ImagePixels source, ImagePixels destination, int[] columns, boolean Alphachannel,
+            OperationProgress progress, int start, int end) {
+        int kernelWidth = kernel.getWidth();
+        int r = kernelWidth / 2;
+        int width = source.width;
+        int[] src = source.data;
+        int[] dst = destination.data;
+        int[] rows = new int[kernelWidth];
+        int[] taps = new int[tapWeights.length];
+        int left = Math.min(r, width);
+        int right = Math.max(left, width - r);
+        SimdKernels simd = SimdKernels.INSTANCE;
+
+        for (int y = start; y < end; y++) {
+            padRows(source, y, rows);
+            //the index of each tap for the pixel at x = 0, were it in the interior
+            for (int i = 0; i < taps.length; i++) {
+                taps[i] = rows[tapRows[i]] + tapColumns[i] - r;
+            }
+            int outRow = destination.offset + y * destination.stride;
+
+            for (int x = 0; x < left; x++) {
+                dst[outRow + x] = destination.store(convolveBorder(src, rows, columns, x, Alphachannel));
+            }
+            if (simd != null) {
+                simd.convolve(src, taps, tapWeights, dst, outRow, left, right, offset ? 128 : 0, Alphachannel,
+                        destination.store(-1));
+            } else {
+                for (int x = left; x < right; x++) {
+                    float sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+                    for (int i = 0; i < taps.length; i++) {
+                        int argb = src[taps[i] + x];
+                        float kernelValue = tapWeights[i];
+                        sumAlpha += kernelValue * ((argb >> 24) & 0xFF);
+                        sumRed += kernelValue * ((argb >> 16) & 0xFF);
+                        sumGreen += kernelValue * ((argb >> 8) & 0xFF);
+                        sumBlue += kernelValue * (argb & 0xFF);
                     }
+                    dst[outRow + x] = destination.store(
+                            toARGB(sumAlpha, sumRed, sumGreen, sumBlue, Alphachannel));
                 }
+            }
+            for (int x = right; x < width; x++) {
+                dst[outRow + x] = destination.store(convolveBorder(src, rows, columns, x, Alphachannel));
+            }
+            progress.advance(1);
+        }
+    }
 
-                // bound the numbers to the 0,255 range and apply offset if specified
-                if (offset) {
-                    sumRed += middlevalue;
-                    sumGreen += middlevalue;
-                    sumBlue += middlevalue;
+    /**
+    * Applies the full kernel to one pixel near the left or right edge.
+    *
+    * @param src          The pixels of the input image.
+    * @param rows         The start of each padded row the kernel covers.
+    * @param columns      The padded column for each x + r.
+    * @param x            The column of the pixel.
+    * @param Alphachannel Whether the input has an alpha channel to convolve.
+    * @return The new colour of the pixel.
+    */
+    private int convolveBorder(int[] src, int[] rows, int[] columns, int x, boolean Alphachannel) {
+        float sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+        // Iterate over each non-zero tap of the kernel; the zero ones would add nothing
+        for (int i = 0; i < tapWeights.length; i++) {
+            int argb = src[rows[tapRows[i]] + columns[x + tapColumns[i]]];
+            float kernelValue = tapWeights[i];
+            sumAlpha += kernelValue * ((argb >> 24) & 0xFF);
+            sumRed += kernelValue * ((argb >> 16) & 0xFF);
+            sumGreen += kernelValue * ((argb >> 8) & 0xFF);
+            sumBlue += kernelValue * (argb & 0xFF);
+        }
+        return toARGB(sumAlpha, sumRed, sumGreen, sumBlue, Alphachannel);
+    }
 
+    /**
+    * Applies a kernel of scaled integer weights to a band of rows, two channels at a time, in the
+    * same three parts as {@link filterFull}.
+    *
+    * @param source       The pixels of the input image.
+    * @param destination  The pixels of the output image.
+    * @param columns      The padded column for each x + r.
+    * @param Alphachannel Whether the input has an alpha channel to convolve.
+    * @param progress     The progress of the operation, advanced once per row.
+    * @param start        The first row to fill.
+    * @param end          One past the last row to fill.
+    */
+    private void filterInteger(ImagePixels source, ImagePixels destination, int[] columns, boolean Alphachannel,
+            OperationProgress progress, int start, int end) {
+        int kernelWidth = kernel.getWidth();
+        int r = kernelWidth / 2;
+        int width = source.width;
+        int[] src = source.data;
+        int[] dst = destination.data;
+        int[] rows = new int[kernelWidth];
+        int[] positiveTaps = new int[positiveWeights.length];
+        int[] negativeTaps = new int[negativeWeights.length];
+        int left = Math.min(r, width);
+        int right = Math.max(left, width - r);
+        SimdKernels simd = SimdKernels.INSTANCE;
+
+        for (int y = start; y < end; y++) {
+            padRows(source, y, rows);
+            //the index of each tap for the pixel at x = 0, were it in the interior
+            for (int i = 0; i < positiveTaps.length; i++) {
+                positiveTaps[i] = rows[positiveRows[i]] + positiveColumns[i] - r;
+            }
+            for (int i = 0; i < negativeTaps.length; i++) {
+                negativeTaps[i] = rows[negativeRows[i]] + negativeColumns[i] - r;
+            }
+            int outRow = destination.offset + y * destination.stride;
+
+            for (int x = 0; x < left; x++) {
+                dst[outRow + x] = destination.store(convolveIntegerBorder(src, rows, columns, x, Alphachannel));
+            }
+            if (simd != null) {
+                simd.convolveInteger(src, positiveTaps, positiveWeights, negativeTaps, negativeWeights, dst, outRow,
+                        left, right, offset ? 128 << shift : 0, shift, Alphachannel, destination.store(-1));
+            } else {
+                for (int x = left; x < right; x++) {
+                    //alpha and green, and red and blue, each in the high and low 16 bits of an int
+                    int positiveAG = 0, positiveRB = 0;
+                    for (int i = 0; i < positiveTaps.length; i++) {
+                        int argb = src[positiveTaps[i] + x];
+                        positiveAG += positiveWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+                        positiveRB += positiveWeights[i] * (argb & 0x00FF00FF);
+                    }
+                    int negativeAG = 0, negativeRB = 0;
+                    for (int i = 0; i < negativeTaps.length; i++) {
+                        int argb = src[negativeTaps[i] + x];
+                        negativeAG += negativeWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+                        negativeRB += negativeWeights[i] * (argb & 0x00FF00FF);
+                    }
+                    dst[outRow + x] = destination.store(
+                            toARGB(positiveAG, positiveRB, negativeAG, negativeRB, Alphachannel));
                 }
+            }
+            for (int x = right; x < width; x++) {
+                dst[outRow + x] = destination.store(convolveIntegerBorder(src, rows, columns, x, Alphachannel));
+            }
+            progress.advance(1);
+        }
+    }
 
-                //clamp the values to the 0,255 range
-                sumRed = Math.min(Math.max(sumRed, 0), 255);
-                sumGreen = Math.min(Math.max(sumGreen, 0), 255);
-                sumBlue = Math.min(Math.max(sumBlue, 0), 255);
+    /**
+    * Applies a kernel of scaled integer weights to one pixel near the left or right edge.
+    *
+    * @param src          The pixels of the input image.
+    * @param rows         The start of each padded row the kernel covers.
+    * @param columns      The padded column for each x + r.
+    * @param x            The column of the pixel.
+    * @param Alphachannel Whether the input has an alpha channel to convolve.
+    * @return The new colour of the pixel.
+    */
+    private int convolveIntegerBorder(int[] src, int[] rows, int[] columns, int x, boolean Alphachannel) {
+        int positiveAG = 0, positiveRB = 0;
+        for (int i = 0; i < positiveWeights.length; i++) {
+            int argb = src[rows[positiveRows[i]] + columns[x + positiveColumns[i]]];
+            positiveAG += positiveWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+            positiveRB += positiveWeights[i] * (argb & 0x00FF00FF);
+        }
+        int negativeAG = 0, negativeRB = 0;
+        for (int i = 0; i < negativeWeights.length; i++) {
+            int argb = src[rows[negativeRows[i]] + columns[x + negativeColumns[i]]];
+            negativeAG += negativeWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+            negativeRB += negativeWeights[i] * (argb & 0x00FF00FF);
+        }
+        return toARGB(positiveAG, positiveRB, negativeAG, negativeRB, Alphachannel);
+    }
 
-                //turn the floats into ints so that they can be put back together
-                int endr = (int) (sumRed);
-                int endg = (int) (sumGreen);
-                int endb = (int) (sumBlue);
+    /**
+    * Turns the packed sums of the positive and negative taps of a scaled integer kernel into a
+    * colour.
+    *
+    * @param positiveAG   The alpha and green sums of the positive taps.
+    * @param positiveRB   The red and blue sums of the positive taps.
+    * @param negativeAG   The alpha and green sums of the negative taps.
+    * @param negativeRB   The red and blue sums of the negative taps.
+    * @param Alphachannel Whether the input has an alpha channel.
+    * @return The colour as packed ARGB.
+    */
+    private int toARGB(int positiveAG, int positiveRB, int negativeAG, int negativeRB, boolean Alphachannel) {
+        //the offset, scaled like the weights
+        int middlevalue = offset ? 128 << shift : 0;
+        int endr = toChannel((positiveRB >>> 16) - (negativeRB >>> 16) + middlevalue);
+        int endg = toChannel((positiveAG & 0xFFFF) - (negativeAG & 0xFFFF) + middlevalue);
+        int endb = toChannel((positiveRB & 0xFFFF) - (negativeRB & 0xFFFF) + middlevalue);
+        int enda = Alphachannel ? toChannel((positiveAG >>> 16) - (negativeAG >>> 16) + middlevalue) : 255;
+        return (enda << 24) | (endr << 16) | (endg << 8) | endb;
+    }
 
-                int resultARGB;
+    /**
+    * Turns a scaled integer sum for one channel into the channel's value, the same way as the float
+    * convolution does: clamp to the 0,255 range and truncate.
+    *
+    * @param sum The sum, with the offset added, scaled by 2^shift.
+    * @return The channel value.
+    */
+    private int toChannel(int sum) {
+        return sum <= 0 ? 0 : Math.min(sum >> shift, 255);
+    }
 
-                if (Alphachannel) {
+    /**
+    * Finds the start of each row the kernel covers for an output row, padded past the top and
+    * bottom edges.
+    *
+    * @param source The pixels of the input image.
+    * @param y      The output row.
+    * @param rows   Filled with the index in the input of the start of each row.
+    */
+    private void padRows(ImagePixels source, int y, int[] rows) {
+        int r = rows.length / 2;
+        for (int ky = -r; ky <= r; ky++) {
+            int pixelY = edgeMode.index(y + ky, source.height);
+            rows[ky + r] = source.offset + pixelY * source.stride;
+        }
+    }
 
-                    if (offset)
-                        sumAlpha += middlevalue;
+    /**
+    * Applies a separable kernel as a horizontal pass followed by a vertical pass.
+    *
+    * <p>
+    * The horizontal pass is only kept for the 2r+1 rows the vertical pass needs at a time, in a
+    * ring of rows, so the extra memory doesn't grow with the height of the image. The ring is
+    * indexed by the row the vertical pass asks for, which may be past the top or bottom edge, and
+    * holds the horizontal pass of whichever row stands in for it. That pads the edges in the
+    * vertical pass just like the columns are padded in the horizontal pass, the same as the full
+    * kernel does. The horizontal pass reads every column through the padded column table rather
+    * than splitting off the interior, since with one row per tap that measured no faster.
+    * </p>
+    *
+    * @param source       The pixels of the input image.
+    * @param destination  The pixels of the output image.
+    * @param columns      The padded column for each x + r.
+    * @param Alphachannel Whether the input has an alpha channel to convolve.
+    * @param progress     The progress of the operation, advanced once per row.
+    * @param start        The first row to fill.
+    * @param end          One past the last row to fill.
+    */
+    private void filterSeparable(ImagePixels source, ImagePixels destination, int[] columns, boolean Alphachannel,
+            OperationProgress progress, int start, int end) {
+        int width = source.width;
+        int height = source.height;
+        int size = horizontal.length;
+        int r = size / 2;
+        int[] src = source.data;
+        int[] dst = destination.data;
+
+        //the horizontal pass for the last `size` rows, as 4 floats (a, r, g, b) per pixel.
+        //row y is kept at ring[y mod size]. Each band has its own ring, so the rows either side of
+        //a band are filtered by both bands next to it
+        float[][] ring = new float[size][width * 4];
+        //the rows of the ring under the vertical kernel for the current output row
+        float[][] taps = new float[size][];
+        int filtered = start - r;
+
+        for (int y = start; y < end; y++) {
+            //the horizontal pass for every row up to the bottom of the kernel
+            for (; filtered <= y + r; filtered++) {
+                float[] row = ring[Math.floorMod(filtered, size)];
+                int in = source.offset + edgeMode.index(filtered, height) * source.stride;
+                for (int x = 0; x < width; x++) {
+                    float sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+                    for (int kx = 0; kx < size; kx++) {
+                        int argb = src[in + columns[x + kx]];
+                        float kernelValue = horizontal[kx];
+                        sumAlpha += kernelValue * ((argb >> 24) & 0xFF);
+                        sumRed += kernelValue * ((argb >> 16) & 0xFF);
+                        sumGreen += kernelValue * ((argb >> 8) & 0xFF);
+                        sumBlue += kernelValue * (argb & 0xFF);
+                    }
+                    row[4 * x] = sumAlpha;
+                    row[4 * x + 1] = sumRed;
+                    row[4 * x + 2] = sumGreen;
+                    row[4 * x + 3] = sumBlue;
+                }
+            }
 
-                    sumAlpha = Math.min(Math.max(sumAlpha, 0), 255);
-                    int enda = (int) (sumAlpha);
-                    resultARGB = (enda << 24) | (endr << 16) | (endg << 8) | endb;
-                } else {
-                    //put the colors back into one
-                    resultARGB = (255 << 24) | (endr << 16) | (endg << 8) | endb;
+            //the vertical pass over the padded rows
+            for (int ky = 0; ky < size; ky++) {
+                taps[ky] = ring[Math.floorMod(y + ky - r, size)];
+            }
+            int out = destination.offset + y * destination.stride;
+            for (int x = 0; x < width; x++) {
+                float sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+                for (int ky = 0; ky < size; ky++) {
+                    float[] row = taps[ky];
+                    float kernelValue = vertical[ky];
+                    sumAlpha += kernelValue * row[4 * x];
+                    sumRed += kernelValue * row[4 * x + 1];
+                    sumGreen += kernelValue * row[4 * x + 2];
+                    sumBlue += kernelValue * row[4 * x + 3];
                 }
+                dst[out + x] = destination.store(toARGB(sumAlpha, sumRed, sumGreen, sumBlue, Alphachannel));
+            }
+            progress.advance(1);
+        }
+    }
+
+    /**
+    * Turns the sums for each channel into a colour, the same way as the full convolution does:
+    * apply the offset if specified, clamp to the 0,255 range and truncate.
+    *
+    * @param sumAlpha     The alpha sum, ignored if the input has no alpha channel.
+    * @param sumRed       The red sum.
+    * @param sumGreen     The green sum.
+    * @param sumBlue      The blue sum.
+    * @param Alphachannel Whether the input has an alpha channel.
+    * @return The colour as packed ARGB.
+    */
+    private int toARGB(float sumAlpha, float sumRed, float sumGreen, float sumBlue, boolean Alphachannel) {
+        int middlevalue = offset ? 128 : 0;
+        int endr = (int) Math.min(Math.max(sumRed + middlevalue, 0), 255);
+        int endg = (int) Math.min(Math.max(sumGreen + middlevalue, 0), 255);
+        int endb = (int) Math.min(Math.max(sumBlue + middlevalue, 0), 255);
+        int enda = Alphachannel ? (int) Math.min(Math.max(sumAlpha + middlevalue, 0), 255) : 255;
+        return (enda << 24) | (endr << 16) | (endg << 8) | endb;
+    }
 
-                //add the convoluted and offseted red values to the list
-                redValuesAfter.add(endr);
+    /**
+    * Tell the probe about every pixel read and written by a convolution that has just finished.
+    *
+    * @param source      The pixels of the input image.
+    * @param destination The pixels of the output image.
+    * @param columns     The clamped column for each x + r, as used by the convolution.
+    */
+    private void report(ImagePixels source, ImagePixels destination, int[] columns) {
+        int kernelWidth = kernel.getWidth();
+        int r = kernelWidth / 2;
+        //pixels read back from an image without alpha need it filled in, as the convolution wrote it
+        int opaque = destination.hasAlpha ? 0 : 0xFF000000;
 
-                // Set the color of the corresponding pixel in the destination image
-                output.setRGB(x, y, resultARGB);
+        for (int y = 0; y < source.height; y++) {
+            for (int x = 0; x < source.width; x++) {
+                for (int ky = -r; ky <= r; ky++) {
+                    int pixelY = edgeMode.index(y + ky, source.height);
+                    int row = source.offset + pixelY * source.stride;
+                    for (int kx = 0; kx < kernelWidth; kx++) {
+                        probe.sampled(x, y, source.data[row + columns[x + kx]]);
+                    }
+                }
+                probe.produced(x, y, destination.data[destination.offset + y * destination.stride + x] | opaque);
             }
         }
-
-        // Return the resulting image
-        return output;
     }
 
 }
@@ -0,0 +1,47 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Receives the pixels read and written by a {@link Convo2} convolution, for
+ * testing and diagnostics.
+ * </p>
+ *
+ * <p>
+ * A probe attached with {@link Convo2#setProbe} is called once the convolution
+ * has finished, rather than from inside it, so that the convolution itself is
+ * no slower with a probe attached. Output pixels are visited in row-major order.
+ * For each output pixel, the source pixels under the kernel are reported in the
+ * order of the kernel's data, followed by the pixel that was written.
+ * </p>
+ *
+ * @version 1.0
+ */
+public interface ConvolutionProbe {
+
+    /**
+     * <p>
+     * Report a source pixel read while computing an output pixel.
+     * </p>
+     *
+     * <p>
+     * Pixels under the kernel that fall outside the image are reported as the
+     * nearest edge pixel, which is the value the convolution used.
+     * </p>
+     *
+     * @param x    The x coordinate of the output pixel being computed.
+     * @param y    The y coordinate of the output pixel being computed.
+     * @param argb The source pixel, as packed ARGB.
+     */
+    void sampled(int x, int y, int argb);
+
+    /**
+     * <p>
+     * Report an output pixel.
+     * </p>
+     *
+     * @param x    The x coordinate of the output pixel.
+     * @param y    The y coordinate of the output pixel.
+     * @param argb The output pixel, as packed ARGB.
+     */
+    void produced(int x, int y, int argb);
+}
@@ -1,11 +1,17 @@
 package cosc202.andie;
 
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 import java.io.*;
 import java.awt.*;
 import java.awt.image.*;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 import javax.imageio.*;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import java.awt.datatransfer.*;
 
 /**
@@ -33,6 +39,19 @@ import java.awt.datatransfer.*;
  * </p>
  * 
  * <p>
+ * Operations applied from the event dispatch thread are run in the background
+ * on a worker thread, one at a time and in the order they were applied.
+ * The result of each operation is only published to {@link current} and the
+ * operation only added to the history once it has completed, so a running
+ * operation can be {@link cancel}led without leaving the history in an
+ * inconsistent state.
+ * Listeners registered with {@link addPropertyChangeListener} are told when the
+ * image changes ({@code "image"}), when background work starts or stops
+ * ({@code "busy"}) and how far the running operation has got
+ * ({@code "progress"}, a percentage).
+ * </p>
+ * 
+ * <p>
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
  * 4.0</a>
  * </p>
@@ -58,10 +77,45 @@ class EditableImage {
     /** The file where the operation sequence is stored. */
     private String opsFilename;
 
+    /** Intermediate results used to shorten replays of {@link ops}. */
+    private SnapshotCache snapshots;
+
     private Stack<ImageOperation> macroOps;
     private boolean recording = false;
     private boolean isSaved = false;
 
+    /** Runs operations in the background, one at a time and in order. */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ANDIE operation worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Operations waiting for the background worker, in the order they were applied. */
+    private final Deque<PendingOperation> pending = new ArrayDeque<PendingOperation>();
+    /** The background worker currently running an operation, or null if idle. */
+    private OperationWorker worker;
+    /**
+     * Incremented whenever the history is changed other than by publishing a
+     * background result, so that results computed from an older state are discarded.
+     */
+    private int historyVersion;
+    /** Listeners for changes to the image and to background work. */
+    private final PropertyChangeSupport changes = new PropertyChangeSupport(this);
+
+    /**
+     * Summed-area tables of the image at one point in the history, identified by
+     * the original image and the operations applied to it, or null if there are none.
+     * The background worker reads these under this object's lock, but only the
+     * thread that owns the history changes them, since they are charged to
+     * {@link snapshots}.
+     */
+    private SummedAreaTable sums;
+    /** The original image {@link sums} were built from a version of. */
+    private BufferedImage sumsOriginal;
+    /** The operations applied to {@link sumsOriginal} to give the image {@link sums} were built from. */
+    private List<ImageOperation> sumsOps;
+
     /**
      * <p>
      * Create a new EditableImage.
@@ -77,6 +131,7 @@ class EditableImage {
         current = null;
         ops = new Stack<ImageOperation>();
         redoOps = new Stack<ImageOperation>();
+        snapshots = new SnapshotCache();
         imageFilename = null;
         opsFilename = null;
     }
@@ -96,6 +151,46 @@ class EditableImage {
         return isSaved;
     }
 
+    /**
+     * <p>
+     * Check if an operation is running or waiting to run in the background.
+     * </p>
+     * 
+     * @return True if there is background work outstanding, false otherwise.
+     */
+    public boolean isBusy() {
+        return worker != null || !pending.isEmpty();
+    }
+
+    /**
+     * <p>
+     * Register a listener for changes to this image.
+     * </p>
+     * 
+     * <p>
+     * Events are delivered on the event dispatch thread. The properties reported
+     * are {@code "image"} when the current image changes, {@code "busy"} when
+     * background work starts or finishes, and {@code "progress"} with the
+     * percentage complete of the running operation.
+     * </p>
+     * 
+     * @param listener The listener to register.
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        changes.addPropertyChangeListener(listener);
+    }
+
+    /**
+     * <p>
+     * Remove a listener registered with {@link addPropertyChangeListener}.
+     * </p>
+     * 
+     * @param listener The listener to remove.
+     */
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        changes.removePropertyChangeListener(listener);
+    }
+
     /**
      * <p>
      * Make a 'deep' copy of a BufferedImage.
@@ -138,10 +233,11 @@ class EditableImage {
      * @param bi The BufferedImage to copy.
      * @return A deep copy of the input.
      */
-    private static BufferedImage deepCopy(BufferedImage bi) {
+    static BufferedImage deepCopy(BufferedImage bi) {
         ColorModel cm = bi.getColorModel();
         boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
-        WritableRaster raster = bi.copyData(null);
+        // A subimage's raster is offset within its parent's, so copy into a fresh raster at the origin
+        WritableRaster raster = bi.copyData(bi.getRaster().createCompatibleWritableRaster(bi.getWidth(), bi.getHeight()));
         return new BufferedImage(cm, raster, isAlphaPremultiplied, null);
     }
 
@@ -163,11 +259,15 @@ class EditableImage {
      * @throws Exception If something goes wrong.
      */
     public void open(String filePath) throws Exception {
+        cancel();
+        historyVersion++;
+        discardSummedAreaTable();
         imageFilename = filePath;
         opsFilename = imageFilename + ".ops";
         File imageFile = new File(imageFilename);
         original = ImageIO.read(imageFile);
         current = deepCopy(original);
+        snapshots.clear();
 
         try {
             FileInputStream fileIn = new FileInputStream(this.opsFilename);
@@ -208,9 +308,17 @@ class EditableImage {
      * the current operations to <code>some/path/to/image.png.ops</code>.
      * </p>
      * 
-     * @throws Exception If something goes wrong.
+     * <p>
+     * An image can't be saved while an operation is running in the background,
+     * since the history saved would leave that operation out.
+     * </p>
+     * 
+     * @throws Exception If something goes wrong, or an operation is still running.
      */
     public void save() throws Exception {
+        if (isBusy()) {
+            throw new IllegalStateException(Settings.getLanguageProperty("WARN_BUSY"));
+        }
         if (this.opsFilename == null) {
             this.opsFilename = this.imageFilename + ".ops";
         }
@@ -240,9 +348,12 @@ class EditableImage {
      * </p>
      * 
      * @param imageFilename The file location to save the image to.
-     * @throws Exception If something goes wrong.
+     * @throws Exception If something goes wrong, or an operation is still running.
      */
     public void saveAs(String imageFilename) throws Exception {
+        if (isBusy()) {
+            throw new IllegalStateException(Settings.getLanguageProperty("WARN_BUSY"));
+        }
         this.imageFilename = imageFilename;
         this.opsFilename = imageFilename + ".ops";
         save();
@@ -253,15 +364,174 @@ class EditableImage {
      * Apply an {@link ImageOperation} to this image.
      * </p>
      * 
+     * <p>
+     * When called from the event dispatch thread the operation is queued and run
+     * in the background, so this method returns before the operation completes.
+     * Listeners are notified with an {@code "image"} event once the result has been
+     * published. When called from any other thread the operation is run
+     * immediately on the calling thread.
+     * </p>
+     * 
      * @param op The operation to apply.
      */
     public void apply(ImageOperation op) {
-        current = op.apply(current);
-        ops.add(op); // Always add to the main operations stack
-        if (isRecording()) {
-            macroOps.push(op); // Also add to macroOps if recording
+        submit(new PendingOperation(op, false, true));
+    }
+
+    /**
+     * <p>
+     * Cancel any operations running or waiting to run in the background.
+     * </p>
+     * 
+     * <p>
+     * Nothing from cancelled operations is added to the history. Operations that
+     * were being redone are returned to the redo stack.
+     * </p>
+     */
+    public void cancel() {
+        Iterator<PendingOperation> waiting = pending.descendingIterator();
+        while (waiting.hasNext()) {
+            restore(waiting.next());
+        }
+        pending.clear();
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * <p>
+     * Run an operation, in the background if called from the event dispatch
+     * thread.
+     * </p>
+     * 
+     * @param task The operation to run.
+     */
+    private void submit(PendingOperation task) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            long start = System.nanoTime();
+            BufferedImage image = current;
+            List<ImageOperation> history = new ArrayList<ImageOperation>(ops);
+            SummedAreaTable.offer(image, () -> getSummedAreaTable(original, history, image));
+            BufferedImage result;
+            try {
+                result = OperationPipeline.apply(task.ops, image);
+            } finally {
+                SummedAreaTable.withdraw();
+            }
+            publish(task, result, System.nanoTime() - start);
+            return;
+        }
+        pending.add(task);
+        runNext();
+    }
+
+    /**
+     * <p>
+     * Start the next waiting operation if the background worker is idle.
+     * </p>
+     */
+    private void runNext() {
+        if (worker != null || pending.isEmpty()) {
+            return;
+        }
+        boolean wasBusy = worker != null;
+        worker = new OperationWorker(pending.poll(), current, historyVersion);
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                changes.firePropertyChange("progress", e.getOldValue(), e.getNewValue());
+            }
+        });
+        changes.firePropertyChange("busy", wasBusy, true);
+        EXECUTOR.execute(worker);
+    }
+
+    /**
+     * <p>
+     * Handle a background worker finishing, on the event dispatch thread.
+     * </p>
+     * 
+     * <p>
+     * A successful result is published only if the history has not changed since
+     * the worker started. If the worker was cancelled or failed, the operations
+     * waiting behind it are dropped too, since they were applied on the
+     * assumption that it would succeed.
+     * </p>
+     * 
+     * @param finished The worker that has finished.
+     */
+    private void finished(OperationWorker finished) {
+        if (finished != worker) {
+            return;
+        }
+        worker = null;
+        if (finished.isCancelled()) {
+            restore(finished.task);
+            cancel();
+        } else {
+            try {
+                BufferedImage result = finished.get();
+                if (finished.version == historyVersion) {
+                    if (finished.built != null) {
+                        keepSummedAreaTable(finished.built, finished.inputOriginal, finished.inputOps);
+                    }
+                    publish(finished.task, result, finished.nanos);
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                restore(finished.task);
+                cancel();
+                if (!(ex.getCause() instanceof CancellationException)) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_GENERIC"),
+                            Settings.getLanguageProperty("ERROR"), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+        runNext();
+        if (worker == null) {
+            changes.firePropertyChange("busy", true, false);
+        }
+    }
+
+    /**
+     * <p>
+     * Make the result of an operation the current image and add the operation to
+     * the history.
+     * </p>
+     * 
+     * @param task   The operation that was run.
+     * @param result The image it produced.
+     * @param nanos  How long it took, in nanoseconds.
+     */
+    private void publish(PendingOperation task, BufferedImage result, long nanos) {
+        current = result;
+        for (int i = 0; i < task.ops.size(); i++) {
+            ImageOperation op = task.ops.get(i);
+            // The time is shared between the operations, and only the final result can be snapshotted
+            pushOperation(op, nanos / task.ops.size(), i == task.ops.size() - 1);
+            if (task.record && isRecording()) {
+                macroOps.push(op); // Also add to macroOps if recording
+            }
+            if (op instanceof TransparencyImage) {
+                transparencyLevel = ((TransparencyImage) op).getTransparencyLevel();
+            }
         }
         isSaved = false;
+        changes.firePropertyChange("image", null, current);
+    }
+
+    /**
+     * <p>
+     * Return an operation that will not be run to the redo stack if it came from
+     * there.
+     * </p>
+     * 
+     * @param task The operation that will not be run.
+     */
+    private void restore(PendingOperation task) {
+        if (task.fromRedo) {
+            redoOps.push(task.ops.get(0));
+        }
     }
 
     /**
@@ -277,13 +547,21 @@ class EditableImage {
             return;
         }
 
+        if (isBusy()) {
+            // The operation the user sees as the last one has not finished yet, so undoing it means cancelling it
+            cancel();
+            return;
+        }
+
         try {
             if (!ops.isEmpty()) {
+                historyVersion++;
                 redoOps.push(ops.pop()); // Move the last operation to redo stack
                 if (isRecording() && !macroOps.isEmpty()) {
                     macroOps.pop(); // If recording macros, remove the last macro operation
                 }
                 refresh(); // Refresh the image after undoing the operation
+                changes.firePropertyChange("image", null, current);
             } else {
                 JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("NO_UNDO"),
                         Settings.getLanguageProperty("WARNING"),
@@ -308,7 +586,19 @@ class EditableImage {
             return;
         }
         try {
-            apply(redoOps.pop()); // Apply the operation from the redo stack
+            ImageOperation op = redoOps.pop();
+            if (!isBusy() && snapshots.contains(ops.size() + 1)) {
+                // The result is still held from before the undo, so there is nothing to recompute
+                historyVersion++;
+                ops.add(op);
+                current = snapshots.nearest(ops.size()).getValue();
+                if (isRecording()) {
+                    macroOps.push(op);
+                }
+                changes.firePropertyChange("image", null, current);
+            } else {
+                submit(new PendingOperation(op, true, true)); // Apply the operation from the redo stack
+            }
             isSaved = false;
         } catch (EmptyStackException ex) {
             JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("NO_REDO"),
@@ -330,6 +620,224 @@ class EditableImage {
         return current;
     }
 
+    /**
+     * <p>
+     * Get summed-area tables for the current image.
+     * </p>
+     * 
+     * <p>
+     * The tables are kept, and only built again once the image has changed. The
+     * image is identified by the original and the operations applied to it rather
+     * than by the {@link current} object, which is replaced by undo and redo, so
+     * undoing an operation and applying another one in its place (to try out a
+     * different setting, say) reuses the tables.
+     * </p>
+     * 
+     * @return The tables for the current image.
+     */
+    public SummedAreaTable getSummedAreaTable() {
+        return getSummedAreaTable(original, new ArrayList<ImageOperation>(ops), current);
+    }
+
+    /**
+     * <p>
+     * Get summed-area tables for a version of the image, building and keeping
+     * them if the kept tables are for a different version.
+     * </p>
+     * 
+     * <p>
+     * This changes the snapshot cache, so it must only be called on the thread
+     * that owns the history: the event dispatch thread, or the thread running
+     * operations when they are applied outside it. The background worker looks
+     * the tables up with {@link findSummedAreaTable} instead, and hands any it
+     * builds back to be kept once it has finished.
+     * </p>
+     * 
+     * @param source  The original image the version comes from.
+     * @param history The operations applied to the original to give the version.
+     * @param image   The version itself, which the tables are built from if needed.
+     * @return The tables.
+     */
+    private SummedAreaTable getSummedAreaTable(BufferedImage source, List<ImageOperation> history,
+            BufferedImage image) {
+        SummedAreaTable tables = findSummedAreaTable(source, history);
+        if (tables == null) {
+            // let the old tables go before building the new ones
+            discardSummedAreaTable();
+            tables = SummedAreaTable.build(image);
+            keepSummedAreaTable(tables, source, history);
+        }
+        return tables;
+    }
+
+    /**
+     * <p>
+     * Get the kept summed-area tables if they are for a version of the image.
+     * This may be called from the background worker.
+     * </p>
+     * 
+     * @param source  The original image the version comes from.
+     * @param history The operations applied to the original to give the version.
+     * @return The kept tables, or null if they are for a different version or there are none.
+     */
+    private synchronized SummedAreaTable findSummedAreaTable(BufferedImage source, List<ImageOperation> history) {
+        if (sums == null || sumsOriginal != source || !sameOperations(sumsOps, history)) {
+            return null;
+        }
+        return sums;
+    }
+
+    /**
+     * <p>
+     * Keep summed-area tables for a version of the image in place of any kept
+     * before.
+     * </p>
+     * 
+     * <p>
+     * Only one set of tables is kept, since they take up to 16 bytes per pixel,
+     * and they count against the snapshot budget: they are only kept if they fit
+     * in it, and keeping them may evict snapshots. Tables that don't fit are
+     * built again the next time they are needed.
+     * </p>
+     * 
+     * @param tables  The tables.
+     * @param source  The original image the version comes from.
+     * @param history The operations applied to the original to give the version.
+     */
+    private synchronized void keepSummedAreaTable(SummedAreaTable tables, BufferedImage source,
+            List<ImageOperation> history) {
+        discardSummedAreaTable();
+        if (snapshots.reserve(tables.getBytes())) {
+            sums = tables;
+            sumsOriginal = source;
+            sumsOps = history;
+        }
+    }
+
+    /**
+     * <p>
+     * Let go of the kept summed-area tables, when the image they were built from
+     * is replaced, and release the memory reserved for them in the snapshot budget.
+     * </p>
+     */
+    private synchronized void discardSummedAreaTable() {
+        sums = null;
+        sumsOriginal = null;
+        sumsOps = null;
+        snapshots.reserve(0);
+    }
+
+    /**
+     * <p>
+     * Check whether two lists hold the very same operations in the same order.
+     * </p>
+     * 
+     * @param a One list of operations.
+     * @param b The other.
+     * @return True if the lists are the same length and hold the same objects.
+     */
+    private static boolean sameOperations(List<ImageOperation> a, List<ImageOperation> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Get the snapshot interval used to speed up undo and redo.
+     * </p>
+     * 
+     * @return How many operations apart intermediate results are kept, or 0 if
+     *         they are not kept.
+     * @see SnapshotCache
+     */
+    public int getSnapshotInterval() {
+        return snapshots.getInterval();
+    }
+
+    /**
+     * <p>
+     * Set the snapshot interval used to speed up undo and redo.
+     * </p>
+     * 
+     * <p>
+     * Every {@code interval} operations a copy of the intermediate result is kept,
+     * so that {@link refresh} only has to replay the operations after the nearest
+     * one. Smaller intervals make undo faster at the cost of memory.
+     * </p>
+     * 
+     * @param interval How many operations apart intermediate results are kept, or
+     *                 0 to keep none.
+     */
+    public void setSnapshotInterval(int interval) {
+        snapshots.setInterval(interval);
+    }
+
+    /**
+     * <p>
+     * Set the memory budget for the intermediate results kept to speed up undo
+     * and redo.
+     * </p>
+     * 
+     * <p>
+     * When the budget is exceeded the results that save the least replay time are
+     * discarded first, so the results of expensive operations such as a
+     * {@link MedianFilter} are kept in preference to cheap ones such as an
+     * {@link ImageFlip}. The kept summed-area tables count against the budget
+     * too, and are let go if they no longer fit in it.
+     * </p>
+     * 
+     * @param bytes The most memory, in bytes, the intermediate results may use.
+     */
+    public void setSnapshotBudget(long bytes) {
+        snapshots.setBudget(bytes);
+        keepSummedAreaTableInBudget();
+    }
+
+    /**
+     * <p>
+     * Let go of the kept summed-area tables if they no longer fit in the snapshot
+     * budget.
+     * </p>
+     */
+    private synchronized void keepSummedAreaTableInBudget() {
+        if (sums != null && !snapshots.reserve(sums.getBytes())) {
+            discardSummedAreaTable();
+        }
+    }
+
+    /**
+     * <p>
+     * Add an operation that has just been applied to {@link current} to the
+     * history.
+     * </p>
+     * 
+     * <p>
+     * Any snapshots from an undone branch of the history at or past the new
+     * position are discarded, the operation's cost is recorded, and the new
+     * result is snapshotted if the interval or its cost calls for it.
+     * </p>
+     * 
+     * @param op       The operation that was applied.
+     * @param nanos    How long the operation took, in nanoseconds.
+     * @param isResult Whether {@link current} is the result of the operation, rather
+     *                 than of a later one it was fused with.
+     */
+    private void pushOperation(ImageOperation op, long nanos, boolean isResult) {
+        ops.add(op);
+        snapshots.invalidateFrom(ops.size());
+        snapshots.record(ops.size(), nanos);
+        if (isResult && snapshots.wants(ops.size())) {
+            snapshots.put(ops.size(), current);
+        }
+    }
+
     /**
      * <p>
      * Reapply the current list of operations to the original.
@@ -337,17 +845,39 @@ class EditableImage {
      * 
      * <p>
      * While the latest version of the image is stored in {@link current}, this
-     * method makes a fresh copy of the original and applies the operations to it in
-     * sequence.
+     * method rebuilds it by applying the operations in sequence.
+     * Rather than always starting from a fresh copy of the original, the replay
+     * starts from the nearest snapshot at or before the end of the list.
+     * Runs of pixel operations are fused into single passes by
+     * {@link OperationPipeline}, and runs of blurs and point operations are
+     * applied to planes of the image, so intermediate results within a run are
+     * not snapshotted. On very large images, runs of neighbourhood operations
+     * are applied a strip at a time, so that replaying doesn't need a copy of
+     * the image for every operation.
      * This is useful when undoing changes to the image, or in any other case where
      * {@link current}
      * cannot be easily incrementally updated.
      * </p>
      */
     private void refresh() {
-        current = deepCopy(original);
-        for (ImageOperation op : ops) {
-            current = op.apply(current);
+        int position = 0;
+        Map.Entry<Integer, BufferedImage> start = snapshots.nearest(ops.size());
+        if (start != null) {
+            position = start.getKey();
+            current = start.getValue();
+        } else {
+            current = deepCopy(original);
+        }
+        for (OperationPipeline.Stage stage : OperationPipeline.stages(ops.subList(position, ops.size()), current)) {
+            long stageStart = System.nanoTime();
+            current = stage.apply(current);
+            long nanos = (System.nanoTime() - stageStart) / stage.size();
+            for (int i = 0; i < stage.size(); i++) {
+                snapshots.record(++position, nanos);
+            }
+            if (snapshots.wants(position)) {
+                snapshots.put(position, current);
+            }
         }
     }
 
@@ -358,8 +888,8 @@ class EditableImage {
      * 
      * <p>
      * This method exports the current image to the specified file path.
-     * It first checks if there is an image loaded; if not, it throws an
-     * IllegalStateException.
+     * It first checks if there is an image loaded and no operation still running
+     * in the background; if not, it throws an IllegalStateException.
      * Then, it determines the file extension from the provided file path and
      * ensures it is a supported type;
      * otherwise, it throws an IllegalArgumentException.
@@ -370,13 +900,17 @@ class EditableImage {
      * </p>
      * 
      * @param filePath The file path to export the image to.
-     * @throws Exception If there is no image loaded, or the file type is
-     *                   unsupported, or an error occurs during export.
+     * @throws Exception If there is no image loaded, an operation is still
+     *                   running, the file type is unsupported, or an error
+     *                   occurs during export.
      */
     public void export(String filePath) throws Exception {
         if (!hasImage()) {
             throw new IllegalStateException(Settings.getLanguageProperty("WARN_EXPORT_NO_IMG"));
         }
+        if (isBusy()) {
+            throw new IllegalStateException(Settings.getLanguageProperty("WARN_BUSY"));
+        }
 
         // Determine the file extension from the provided file path
         String extension = getFileExtension(filePath).toLowerCase();
@@ -444,13 +978,8 @@ class EditableImage {
                 return;
             }
 
-            // Apply all operations in the stack
-            for (ImageOperation op : opsFromFile) {
-                apply(op);
-            }
-
-            // Refresh UI or re-render the image
-            this.refresh();
+            // Apply all operations in the stack together, so runs of pixel operations are fused
+            submit(new PendingOperation(new ArrayList<ImageOperation>(opsFromFile), false, true));
 
         } catch (FileNotFoundException ex) {
             JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_NO_FILE_FOUND"),
@@ -637,12 +1166,16 @@ class EditableImage {
     }
 
     private void setDataFields(BufferedImage img, String source, Stack<ImageOperation> operations) {
+        cancel();
+        historyVersion++;
+        discardSummedAreaTable();
         this.original = img;
         this.current = deepCopy(img);
         this.imageFilename = source;
         this.opsFilename = source + ".ops";
         this.ops = operations;
         this.redoOps.clear();
+        this.snapshots.clear();
     }
 
     private int transparencyLevel = 100; // Default transparency level (100% opaque)
@@ -667,14 +1200,139 @@ class EditableImage {
      * Updates the current image by applying the provided ImageOperation, 
      * and stores the operation in the operations history.
      * If the operation is an instance of TransparencyImage, updates the transparency level.
+     * Like {@link apply}, the operation runs in the background when called from
+     * the event dispatch thread.
      *
      * @param op The ImageOperation to apply to the current image.
      */
     public void applyTransparency(ImageOperation op) {
-        current = op.apply(current);
-        ops.add(op);
-        if (op instanceof TransparencyImage) {
-            transparencyLevel = ((TransparencyImage) op).getTransparencyLevel();
+        submit(new PendingOperation(op, false, false));
+    }
+
+    /**
+     * <p>
+     * An operation waiting to be run, along with where it came from.
+     * </p>
+     */
+    private static class PendingOperation {
+        /** The operations to run, in order. */
+        final List<ImageOperation> ops;
+        /** Whether the operation was taken from the redo stack. */
+        final boolean fromRedo;
+        /** Whether the operation should be recorded into a macro being recorded. */
+        final boolean record;
+
+        PendingOperation(ImageOperation op, boolean fromRedo, boolean record) {
+            this(Collections.singletonList(op), fromRedo, record);
+        }
+
+        PendingOperation(List<ImageOperation> ops, boolean fromRedo, boolean record) {
+            this.ops = ops;
+            this.fromRedo = fromRedo;
+            this.record = record;
+        }
+    }
+
+    /**
+     * <p>
+     * Runs an operation, or a batch of them, on a worker thread.
+     * </p>
+     * 
+     * <p>
+     * The operation is applied to a copy of the image it was given, since many
+     * operations modify their input in place and the input is still on display
+     * (and is still the current image if the operation is cancelled).
+     * Progress reported through {@link OperationProgress} is forwarded as this
+     * worker's {@code "progress"} property.
+     * </p>
+     */
+    private class OperationWorker extends SwingWorker<BufferedImage, Void> {
+        /** The operation to run. */
+        final PendingOperation task;
+        /** The history version the input belongs to. */
+        final int version;
+        /** The image to apply the operation to. */
+        private final BufferedImage input;
+        /** Progress and cancellation for the operation. */
+        private final OperationProgress progress;
+        /** How long the operation took, in nanoseconds. */
+        volatile long nanos;
+        /** The original image the input is a version of. */
+        final BufferedImage inputOriginal;
+        /** The operations applied to the original to give the input. */
+        final List<ImageOperation> inputOps;
+        /** Summed-area tables built for the input, to be kept once the worker has finished, or null. */
+        volatile SummedAreaTable built;
+
+        OperationWorker(PendingOperation task, BufferedImage input, int version) {
+            this.task = task;
+            this.input = input;
+            this.version = version;
+            this.progress = new OperationProgress(this::setProgress);
+            this.inputOriginal = original;
+            this.inputOps = new ArrayList<ImageOperation>(ops);
+        }
+
+        @Override
+        protected BufferedImage doInBackground() {
+            OperationProgress.install(progress);
+            try {
+                BufferedImage copy = deepCopy(input);
+                SummedAreaTable.offer(copy, () -> summedAreaTable(copy));
+                long start = System.nanoTime();
+                BufferedImage result = OperationPipeline.apply(task.ops, copy);
+                nanos = System.nanoTime() - start;
+                if (progress.isCancelled()) {
+                    throw new CancellationException();
+                }
+                return result;
+            } finally {
+                SummedAreaTable.withdraw();
+                OperationProgress.install(null);
+            }
+        }
+
+        /**
+         * <p>
+         * Get summed-area tables for the input, using the kept ones if they are for
+         * it and building them otherwise.
+         * </p>
+         * 
+         * <p>
+         * Tables built here are not kept straight away, since the snapshot cache
+         * they are charged to belongs to the event dispatch thread, and the history
+         * may have moved on by the time the worker finishes. {@link finished} keeps
+         * them if the result is published.
+         * </p>
+         * 
+         * @param copy The copy of the input the operation is applied to.
+         * @return The tables.
+         */
+        private SummedAreaTable summedAreaTable(BufferedImage copy) {
+            if (built != null) {
+                return built;
+            }
+            SummedAreaTable kept = findSummedAreaTable(inputOriginal, inputOps);
+            if (kept != null) {
+                return kept;
+            }
+            built = SummedAreaTable.build(copy);
+            return built;
+        }
+
+        @Override
+        protected void done() {
+            finished(this);
+        }
+
+        /**
+         * <p>
+         * Stop the operation at its next progress report and discard its result.
+         * </p>
+         */
+        void stop() {
+            progress.cancel();
+            cancel(false);
         }
     }
 
@@ -14,7 +14,9 @@ import java.awt.image.*;
  * @author Hadrien Tang
  */
 
-public class EmbossFilter implements ImageOperation, java.io.Serializable {
+public class EmbossFilter implements NeighbourhoodOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = -1886073005891178571L;
     //The direction of the filter
     private String direction;
     private boolean offset;
@@ -78,4 +80,12 @@ public class EmbossFilter implements ImageOperation, java.io.Serializable {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Gets how far the emboss kernels reach from each pixel.
+     *
+     * @return 1, since every direction's kernel is 3x3.
+     */
+    public int getRadius() {
+        return 1;
+    }
+}
@@ -158,6 +158,12 @@ public class FileActions {
                         JOptionPane.ERROR_MESSAGE);
                 return;
             }
+            if (editableImage.isBusy()) {
+                JOptionPane.showMessageDialog(target, Settings.getLanguageProperty("WARN_BUSY"),
+                        Settings.getLanguageProperty("WARNING"),
+                        JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             try {
                 target.getImage().save();
             } catch (Exception ex) {
@@ -185,6 +191,12 @@ public class FileActions {
                         JOptionPane.ERROR_MESSAGE);
                 return;
             }
+            if (editableImage.isBusy()) {
+                JOptionPane.showMessageDialog(target, Settings.getLanguageProperty("WARN_BUSY"),
+                        Settings.getLanguageProperty("WARNING"),
+                        JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             JFileChooser fileChooser = new JFileChooser();
             int result = fileChooser.showSaveDialog(target);
 
@@ -219,6 +231,12 @@ public class FileActions {
                         JOptionPane.ERROR_MESSAGE);
                 return;
             }
+            if (editableImage.isBusy()) {
+                JOptionPane.showMessageDialog(target, Settings.getLanguageProperty("WARN_BUSY"),
+                        Settings.getLanguageProperty("WARNING"),
+                        JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle(Settings.getLanguageProperty("EXPORT_HEADER"));
 
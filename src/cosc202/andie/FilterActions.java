@@ -163,7 +163,7 @@ public class FilterActions {
             }
 
             // Create and apply the filter
-            target.getImage().apply(new MeanFilter(radius));
+            applyToSelection(new MeanFilter(radius));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -209,7 +209,7 @@ public class FilterActions {
             }
 
             // Create and apply the filter
-            target.getImage().apply(new MedianFilter(radius));
+            applyToSelection(new MedianFilter(radius));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -253,7 +253,7 @@ public class FilterActions {
             }
 
             // Create and apply the filter
-            target.getImage().apply(new GaussianBlurFilter(radius));
+            applyToSelection(new GaussianBlurFilter(radius));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -297,7 +297,7 @@ public class FilterActions {
          */
         public void actionPerformed(ActionEvent e) {
 
-            target.getImage().apply(new SharpenFilter());
+            applyToSelection(new SharpenFilter());
             target.repaint();
             target.getParent().revalidate();
         }
@@ -356,7 +356,7 @@ public class FilterActions {
             boolean apply_offset = offsetComboBox.getSelectedIndex() == 0;
 
             // Create and apply the filter
-            target.getImage().apply(new EmbossFilter(direction, apply_offset));
+            applyToSelection(new EmbossFilter(direction, apply_offset));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -429,7 +429,7 @@ public class FilterActions {
             boolean apply_offset = offsetComboBox.getSelectedIndex() == 0;
 
             // Create and apply the filter
-            target.getImage().apply(new SobelFilter(direction, apply_offset));
+            applyToSelection(new SobelFilter(direction, apply_offset));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -490,7 +490,7 @@ public class FilterActions {
             boolean apply_offset = offsetComboBox.getSelectedIndex() == 0;
 
             // Create and apply the filter
-            target.getImage().apply(new LaplacianFilter(apply_offset));
+            applyToSelection(new LaplacianFilter(apply_offset));
             target.repaint();
             target.getParent().revalidate();
         }
@@ -576,7 +576,7 @@ public class FilterActions {
                 radius = radiusModel.getNumber().intValue();
 
                 // Create and apply the filter
-                target.getImage().apply(new RandomScatteringFilter(radius));
+                applyToSelection(new RandomScatteringFilter(radius));
                 target.repaint();
                 target.getParent().revalidate();
             }
@@ -630,7 +630,7 @@ public class FilterActions {
 
             if (option == JOptionPane.OK_OPTION) {
                 float saturationLevel = 1.0f + (slider.getValue() / 100.0f);
-                target.getImage().apply(new SaturationFilter(saturationLevel));
+                applyToSelection(new SaturationFilter(saturationLevel));
                 target.repaint();
                 target.getParent().revalidate();
             }
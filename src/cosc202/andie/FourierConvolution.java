@@ -0,0 +1,409 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Convolves images with large kernels using the fast Fourier transform.
+ * </p>
+ *
+ * <p>
+ * Convolving directly costs one multiply-add per kernel tap per pixel, so a
+ * kernel of radius 20 costs 1681 per pixel. Convolution is instead a
+ * multiplication in the frequency domain, which costs the same whatever the
+ * size of the kernel, plus the transforms into and out of it, which cost
+ * O(log n) per pixel.
+ * </p>
+ *
+ * <p>
+ * The image is convolved a tile at a time (overlap-save). Each tile of the
+ * input, padded by the kernel's radius on every side with the
+ * {@link Convo2.EdgeMode}, is transformed, multiplied by the kernel's
+ * transform, and transformed back, and the middle of the result, where the
+ * transform's wrapping around doesn't reach, is kept. The tiles are a fixed
+ * power of two in size, so the kernel is transformed only once, and they are
+ * filled in parallel with {@link TileScheduler}.
+ * </p>
+ *
+ * <p>
+ * The image's channels are real, so two of them are transformed at once, one
+ * as the real part and the other as the imaginary part of a complex tile. As
+ * the kernel is real too, the two come back out separately. The sums are
+ * rounded to floats, so they agree with {@link Convo2}'s direct sums to within
+ * the rounding of a float, and the colours that come out to within one level.
+ * </p>
+ *
+ * @version 1.0
+ * @see Convo2
+ */
+final class FourierConvolution {
+
+    /** The smallest tile, along each side. */
+    private static final int MIN_TILE = 64;
+
+    /** The largest tile, along each side, unless the kernel needs a larger one. */
+    private static final int MAX_TILE = 1024;
+
+    /**
+     * The cost of one butterfly, per element per pass of a transform, relative
+     * to one tap of a direct convolution. Measured on a 12MP image.
+     */
+    private static final double TRANSFORM_COST = 0.3;
+
+    /** The number of transforms per tile: two channel pairs, there and back. */
+    private static final int TRANSFORMS = 4;
+
+    /**
+     * <p>
+     * Turns the four sums of a pixel into its colour.
+     * </p>
+     */
+    interface Packer {
+        /**
+         * <p>
+         * Turn the sums for each channel into a colour.
+         * </p>
+         *
+         * @param sumAlpha The alpha sum.
+         * @param sumRed   The red sum.
+         * @param sumGreen The green sum.
+         * @param sumBlue  The blue sum.
+         * @return The colour as packed ARGB.
+         */
+        int pack(float sumAlpha, float sumRed, float sumGreen, float sumBlue);
+    }
+
+    /** The width and height of the kernel. */
+    private final int size;
+
+    /** The width and height of each tile. */
+    private final int tile;
+
+    /** The transform the tiles are made with. */
+    private final Transform transform;
+
+    /** The transform of the kernel, real and imaginary parts. */
+    private final double[] kernelReal;
+    private final double[] kernelImaginary;
+
+    /**
+     * <p>
+     * Prepare to convolve with a kernel, by transforming it.
+     * </p>
+     *
+     * @param kernel The kernel's weights, row by row.
+     * @param size   The width and height of the kernel, which is odd.
+     * @param tile   The width and height of each tile, a power of two larger than the kernel.
+     */
+    FourierConvolution(float[] kernel, int size, int tile) {
+        this.size = size;
+        this.tile = tile;
+        this.transform = new Transform(tile);
+        this.kernelReal = new double[tile * tile];
+        this.kernelImaginary = new double[tile * tile];
+
+        // the tap at offset (dx, dy) from the pixel goes at (-dx, -dy), wrapped around,
+        // so the product is the correlation Convo2 computes rather than the convolution
+        int r = size / 2;
+        for (int ky = 0; ky < size; ky++) {
+            for (int kx = 0; kx < size; kx++) {
+                int y = Math.floorMod(r - ky, tile);
+                int x = Math.floorMod(r - kx, tile);
+                kernelReal[y * tile + x] = kernel[ky * size + kx];
+            }
+        }
+        transform.forward2D(kernelReal, kernelImaginary);
+    }
+
+    /**
+     * <p>
+     * Find the cheapest tile size for convolving an image with a kernel.
+     * </p>
+     *
+     * @param size   The width and height of the kernel.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return The width and height of the tiles.
+     */
+    static int chooseTile(int size, int width, int height) {
+        int best = smallestTile(size);
+        for (int tile = best * 2; tile <= MAX_TILE; tile *= 2) {
+            if (cost(size, tile, width, height) < cost(size, best, width, height)) {
+                best = tile;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * <p>
+     * Estimate the cost of convolving an image with a kernel in tiles of a
+     * given size.
+     * </p>
+     *
+     * @param size   The width and height of the kernel.
+     * @param tile   The width and height of each tile.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return The cost per pixel, in taps of a direct convolution.
+     */
+    static double cost(int size, int tile, int width, int height) {
+        int kept = tile - (size - 1);
+        long tiles = (long) ((width + kept - 1) / kept) * ((height + kept - 1) / kept);
+        double area = (double) tile * tile;
+        double perTile = TRANSFORMS * TRANSFORM_COST * area * 2 * Integer.numberOfTrailingZeros(tile) + 2 * area;
+        return tiles * perTile / ((double) width * height);
+    }
+
+    /**
+     * <p>
+     * Get the smallest tile that is at least twice the size of a kernel.
+     * </p>
+     *
+     * @param size The width and height of the kernel.
+     * @return The width and height of the tile.
+     */
+    private static int smallestTile(int size) {
+        int tile = MIN_TILE;
+        while (tile < 2 * size) {
+            tile *= 2;
+        }
+        return tile;
+    }
+
+    /**
+     * <p>
+     * Convolve an image.
+     * </p>
+     *
+     * @param source      The pixels of the input image.
+     * @param destination The pixels of the output image, the same size.
+     * @param edgeMode    How to pad the image past its edges.
+     * @param alpha       Whether to convolve the alpha channel.
+     * @param packer      Turns the sums for each pixel into its colour.
+     */
+    void filter(ImagePixels source, ImagePixels destination, Convo2.EdgeMode edgeMode, boolean alpha,
+            Packer packer) {
+        int r = size / 2;
+        int kept = tile - 2 * r;
+        int across = (source.width + kept - 1) / kept;
+        int down = (source.height + kept - 1) / kept;
+
+        // the padded column and row for each position of the tiles, which start r before the pixels they keep
+        int[] columns = new int[across * kept + 2 * r];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = edgeMode.index(i - r, source.width);
+        }
+        int[] rows = new int[down * kept + 2 * r];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = source.offset + edgeMode.index(i - r, source.height) * source.stride;
+        }
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(across * down);
+        TileScheduler.forEach(across * down, (start, end) -> {
+            double[] real = new double[tile * tile];
+            double[] imaginary = new double[tile * tile];
+            // the alpha and red sums of the tile, kept while green and blue are done
+            float[] first = new float[2 * kept * kept];
+            for (int t = start; t < end; t++) {
+                int left = (t % across) * kept;
+                int top = (t / across) * kept;
+                int width = Math.min(kept, source.width - left);
+                int height = Math.min(kept, source.height - top);
+
+                convolve(source, rows, columns, left, top, 24, 16, real, imaginary);
+                for (int y = 0; y < height; y++) {
+                    int in = (y + r) * tile + r;
+                    for (int x = 0; x < width; x++) {
+                        first[2 * (y * kept + x)] = (float) real[in + x];
+                        first[2 * (y * kept + x) + 1] = (float) imaginary[in + x];
+                    }
+                }
+                convolve(source, rows, columns, left, top, 8, 0, real, imaginary);
+                for (int y = 0; y < height; y++) {
+                    int in = (y + r) * tile + r;
+                    int out = destination.offset + (top + y) * destination.stride + left;
+                    for (int x = 0; x < width; x++) {
+                        float sumAlpha = alpha ? first[2 * (y * kept + x)] : 255;
+                        float sumRed = first[2 * (y * kept + x) + 1];
+                        destination.data[out + x] = destination.store(packer.pack(sumAlpha, sumRed,
+                                (float) real[in + x], (float) imaginary[in + x]));
+                    }
+                }
+                progress.advance(1);
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Convolve two channels of one tile.
+     * </p>
+     *
+     * @param source    The pixels of the input image.
+     * @param rows      The index of the start of the padded row for each row of the tiles.
+     * @param columns   The padded column for each column of the tiles.
+     * @param left      The first column the tile keeps.
+     * @param top       The first row the tile keeps.
+     * @param shift     How far right the first channel is in a packed pixel.
+     * @param shift2    How far right the second channel is in a packed pixel.
+     * @param real      Filled with the first channel's sums.
+     * @param imaginary Filled with the second channel's sums.
+     */
+    private void convolve(ImagePixels source, int[] rows, int[] columns, int left, int top, int shift, int shift2,
+            double[] real, double[] imaginary) {
+        int[] data = source.data;
+        for (int y = 0; y < tile; y++) {
+            int row = rows[top + y];
+            int out = y * tile;
+            for (int x = 0; x < tile; x++) {
+                int argb = data[row + columns[left + x]];
+                real[out + x] = (argb >>> shift) & 0xFF;
+                imaginary[out + x] = (argb >>> shift2) & 0xFF;
+            }
+        }
+
+        transform.forward2D(real, imaginary);
+        for (int i = 0; i < real.length; i++) {
+            double re = real[i] * kernelReal[i] - imaginary[i] * kernelImaginary[i];
+            double im = real[i] * kernelImaginary[i] + imaginary[i] * kernelReal[i];
+            real[i] = re;
+            imaginary[i] = im;
+        }
+        transform.inverse2D(real, imaginary);
+    }
+
+    /**
+     * <p>
+     * A fast Fourier transform of a fixed power-of-two size, applied to square
+     * arrays a row and then a column at a time.
+     * </p>
+     */
+    private static final class Transform {
+
+        /** The length of each row and column. */
+        private final int n;
+
+        /** The position each element is moved to before the butterflies: its bits reversed. */
+        private final int[] reversed;
+
+        /** The cosine and sine of each twiddle angle, 2 pi k / n for k up to n / 2. */
+        private final double[] cos;
+        private final double[] sin;
+
+        Transform(int n) {
+            this.n = n;
+            int bits = Integer.numberOfTrailingZeros(n);
+            reversed = new int[n];
+            for (int i = 0; i < n; i++) {
+                reversed[i] = Integer.reverse(i) >>> (32 - bits);
+            }
+            cos = new double[n / 2];
+            sin = new double[n / 2];
+            for (int k = 0; k < n / 2; k++) {
+                cos[k] = Math.cos(2 * Math.PI * k / n);
+                sin[k] = Math.sin(2 * Math.PI * k / n);
+            }
+        }
+
+        /**
+         * <p>
+         * Transform a square array in place.
+         * </p>
+         *
+         * @param real      The real parts, row by row.
+         * @param imaginary The imaginary parts, row by row.
+         */
+        void forward2D(double[] real, double[] imaginary) {
+            transform2D(real, imaginary, -1);
+        }
+
+        /**
+         * <p>
+         * Transform a square array back in place, scaled so that it undoes
+         * {@link forward2D}.
+         * </p>
+         *
+         * @param real      The real parts, row by row.
+         * @param imaginary The imaginary parts, row by row.
+         */
+        void inverse2D(double[] real, double[] imaginary) {
+            transform2D(real, imaginary, 1);
+            double scale = 1.0 / ((double) n * n);
+            for (int i = 0; i < real.length; i++) {
+                real[i] *= scale;
+                imaginary[i] *= scale;
+            }
+        }
+
+        /**
+         * <p>
+         * Transform every row, and then every column, of a square array.
+         * </p>
+         *
+         * @param real      The real parts, row by row.
+         * @param imaginary The imaginary parts, row by row.
+         * @param sign      -1 for the forward transform, 1 for the inverse.
+         */
+        private void transform2D(double[] real, double[] imaginary, int sign) {
+            for (int y = 0; y < n; y++) {
+                transform(real, imaginary, y * n, sign);
+            }
+            // each column is copied out so that the transform works on neighbouring elements
+            double[] columnReal = new double[n];
+            double[] columnImaginary = new double[n];
+            for (int x = 0; x < n; x++) {
+                for (int y = 0; y < n; y++) {
+                    columnReal[y] = real[y * n + x];
+                    columnImaginary[y] = imaginary[y * n + x];
+                }
+                transform(columnReal, columnImaginary, 0, sign);
+                for (int y = 0; y < n; y++) {
+                    real[y * n + x] = columnReal[y];
+                    imaginary[y * n + x] = columnImaginary[y];
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Transform n neighbouring elements in place, with the iterative
+         * radix-2 Cooley-Tukey algorithm.
+         * </p>
+         *
+         * @param real      The real parts.
+         * @param imaginary The imaginary parts.
+         * @param offset    The index of the first element.
+         * @param sign      -1 for the forward transform, 1 for the inverse.
+         */
+        private void transform(double[] real, double[] imaginary, int offset, int sign) {
+            for (int i = 0; i < n; i++) {
+                int j = reversed[i];
+                if (j > i) {
+                    double t = real[offset + i];
+                    real[offset + i] = real[offset + j];
+                    real[offset + j] = t;
+                    t = imaginary[offset + i];
+                    imaginary[offset + i] = imaginary[offset + j];
+                    imaginary[offset + j] = t;
+                }
+            }
+            for (int half = 1; half < n; half *= 2) {
+                int step = n / (2 * half);
+                for (int block = offset; block < offset + n; block += 2 * half) {
+                    for (int k = 0; k < half; k++) {
+                        double wr = cos[k * step];
+                        double wi = sign * sin[k * step];
+                        int a = block + k;
+                        int b = a + half;
+                        double tr = real[b] * wr - imaginary[b] * wi;
+                        double ti = real[b] * wi + imaginary[b] * wr;
+                        real[b] = real[a] - tr;
+                        imaginary[b] = imaginary[a] - ti;
+                        real[a] += tr;
+                        imaginary[a] += ti;
+                    }
+                }
+            }
+        }
+    }
+}
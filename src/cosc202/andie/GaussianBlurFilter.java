@@ -9,11 +9,25 @@ import java.awt.image.*;
  * a gaussian filter to a BufferedImage.
  * </p>
  *
+ * <p>
+ * Small radii are convolved directly, which is exact. Above a radius of 10 the
+ * blur is approximated with a recursive filter instead, which costs the same
+ * per pixel however large the radius is.
+ * </p>
+ *
  * @author Hadrien Tang
  */
 
 
-public class GaussianBlurFilter implements ImageOperation, java.io.Serializable {
+public class GaussianBlurFilter implements NeighbourhoodOperation, PlanarOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 9121605053081795887L;
+
+    /**
+     * The largest radius that is convolved directly. Larger radii are blurred
+     * with a {@link RecursiveGaussian}, whose cost doesn't grow with the radius.
+     */
+    private static final int MAX_DIRECT_RADIUS = 10;
 
     /**
      * The size of filter to apply. 
@@ -44,35 +58,31 @@ public class GaussianBlurFilter implements ImageOperation, java.io.Serializable
 
             // System.out.println(" this gaussian ran"); [Debug Statement]
             float sigma = radius / 3.0f;
+            BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
+                    input.isAlphaPremultiplied(), null);
+            if (radius > MAX_DIRECT_RADIUS) {
+                return new RecursiveGaussian(sigma).filter(input, output);
+            }
 
-            int size = (2 * radius + 1) * (2 * radius + 1);
+            int size = 2 * radius + 1;
             float[] array = new float[size];
             float sum = 0;
-            int index = 0;
-
-            // make the kernel values
-            for (int y = -radius; y <= radius; y++) {
-                for (int x = -radius; x <= radius; x++) {
-                    float value = (float) (Math.exp(-(x * x + y * y) / (2 * sigma * sigma))
-                            / (2 * Math.PI * sigma * sigma));
-                    array[index] = value;
-                    sum += value;
-                    index++;
-                }
+
+            // make the kernel values. The 2-D gaussian is the product of a 1-D gaussian in x and
+            // one in y, so it can be applied as a horizontal pass and then a vertical pass
+            for (int x = -radius; x <= radius; x++) {
+                float value = (float) Math.exp(-(x * x) / (2 * sigma * sigma));
+                array[x + radius] = value;
+                sum += value;
             }
 
             // normalize the array
             for (int i = 0; i < size; i++) {
                 array[i] /= sum;
-                // test to see that the gaussian kernel is the same as the one provided
-                //System.out.println("array element  " + array[i]);
             }
 
-            Kernel kernel = new Kernel(2 * radius + 1, 2 * radius + 1, array);
-            Convo2 convoOp = new Convo2(kernel);
+            Convo2 convoOp = new Convo2(array, array, false);
             //ConvolveOp convOp = new ConvolveOp(kernel);
-            BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
-                    input.isAlphaPremultiplied(), null);
             convoOp.filter(input, output);
 
             return output;
@@ -81,4 +91,45 @@ public class GaussianBlurFilter implements ImageOperation, java.io.Serializable
             return input;
         }
     }
+
+    /**
+     * Applies the recursive approximation of the gaussian blur to the planes of an image.
+     *
+     * @param input The planes to blur.
+     * @return The planes of the blurred image.
+     */
+    public PlanarImage apply(PlanarImage input) {
+        return new RecursiveGaussian(radius / 3.0f).filter(input);
+    }
+
+    /**
+     * Checks whether the blur can be applied to planes, which is only when it is approximated with
+     * the recursive filter. Smaller radii are convolved with packed pixels.
+     *
+     * @return True if the radius is large enough for the recursive filter.
+     */
+    public boolean isPlanar() {
+        return radius > MAX_DIRECT_RADIUS;
+    }
+
+    /**
+     * Gets the apron a region needs to be blurred exactly. That is the radius when the blur is
+     * convolved directly, but the recursive filter depends a little on every pixel in the same row
+     * and column, so it can only be applied exactly to the whole image.
+     *
+     * @return The radius, or {@link Integer#MAX_VALUE} for the recursive filter.
+     */
+    public int getApron() {
+        return radius > MAX_DIRECT_RADIUS ? Integer.MAX_VALUE : radius;
+    }
+
+    /**
+     * Gets the radius of the kernel. The gaussian is cut off at three standard
+     * deviations, so nothing further away contributes.
+     *
+     * @return The radius of the kernel.
+     */
+    public int getRadius() {
+        return radius;
+    }
 }
@@ -91,4 +91,21 @@ public abstract class ImageAction extends AbstractAction {
         return target;
     }
 
+    /**
+     * <p>
+     * Apply an operation to the target's image, or to just the selected region of
+     * it if a selection has been made.
+     * </p>
+     * 
+     * @param op The operation to apply.
+     * @see RegionOperation
+     */
+    protected static void applyToSelection(NeighbourhoodOperation op) {
+        if (target.selection.isSelectionMade()) {
+            target.getImage().apply(new RegionOperation(op, target.selection.getImageRegion()));
+        } else {
+            target.getImage().apply(op);
+        }
+    }
+
 }
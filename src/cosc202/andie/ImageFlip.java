@@ -1,6 +1,7 @@
 package cosc202.andie;
 
 import java.awt.image.*;
+import java.util.List;
 
 /**
  * Provides functionality for flipping images either horizontally or vertically.
@@ -9,10 +10,19 @@ import java.awt.image.*;
  * This class supports two types of flips: horizontal and vertical, determined
  * at instantiation.
  * 
+ * <p>
+ * Pixels are moved a row at a time on the packed pixel arrays, in parallel
+ * bands of rows. Flipping twice the same way undoes the flip, so when the
+ * history is replayed a run of consecutive flips is reduced to at most one
+ * horizontal and one vertical flip by {@link apply(List, BufferedImage)}.
+ * </p>
+ * 
  * @author Ned Redmond
  */
 public class ImageFlip implements ImageOperation, java.io.Serializable {
 
+    private static final long serialVersionUID = -2122455370820639796L;
+
     /**
      * Nested class to define flip types as constants for readability and ease of
      * use.
@@ -47,25 +57,78 @@ public class ImageFlip implements ImageOperation, java.io.Serializable {
      */
     public BufferedImage apply(BufferedImage input) {
         try {
+            return flip(input, flipType == FlipType.horizontal, flipType != FlipType.horizontal);
+        } catch (NullPointerException e) {
+            System.err.println(Settings.getLanguageProperty("WARN_NULL_INPUT"));
+            return input; // Return the original input if there is a null pointer exception.
+        }
+    }
 
-            int width = input.getWidth();
-            int height = input.getHeight();
-            BufferedImage flippedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    /**
+     * Applies a sequence of flips to a BufferedImage in a single pass.
+     * Flipping the same way twice cancels out, so only the number of horizontal
+     * and vertical flips that are odd matters. If they cancel out entirely and
+     * the input is already of the type a flip produces, the input is returned
+     * unchanged.
+     * 
+     * @param flips The flips, in the order they are applied.
+     * @param input The BufferedImage to be flipped.
+     * @return The result of applying every flip to the input image.
+     */
+    static BufferedImage apply(List<ImageFlip> flips, BufferedImage input) {
+        boolean horizontal = false;
+        boolean vertical = false;
+        for (ImageFlip flip : flips) {
+            if (flip.flipType == FlipType.horizontal) {
+                horizontal = !horizontal;
+            } else {
+                vertical = !vertical;
+            }
+        }
+        if (!horizontal && !vertical && input.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return input;
+        }
+        return flip(input, horizontal, vertical);
+    }
+
+    /**
+     * Flips an image horizontally, vertically, both (a rotation by 180 degrees)
+     * or neither (a copy).
+     * 
+     * @param input      The BufferedImage to be flipped.
+     * @param horizontal Whether to flip left to right.
+     * @param vertical   Whether to flip top to bottom.
+     * @return A new ARGB image that is the flipped input image.
+     */
+    static BufferedImage flip(BufferedImage input, boolean horizontal, boolean vertical) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        BufferedImage flippedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    if (flipType == FlipType.horizontal) {
-                        flippedImage.setRGB(width - x - 1, y, input.getRGB(x, y));
-                    } else {
-                        flippedImage.setRGB(x, height - y - 1, input.getRGB(x, y));
+        ImagePixels source = ImagePixels.of(input);
+        int[] flipped = ((DataBufferInt) flippedImage.getRaster().getDataBuffer()).getData();
+        // images without alpha are opaque
+        int opaque = source.hasAlpha ? 0 : 0xFF000000;
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(height);
+        TileScheduler.forEach(height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int in = source.offset + y * source.stride;
+                int out = (vertical ? height - y - 1 : y) * width;
+                if (horizontal) {
+                    for (int x = 0; x < width; x++) {
+                        flipped[out + width - x - 1] = source.data[in + x] | opaque;
+                    }
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        flipped[out + x] = source.data[in + x] | opaque;
                     }
                 }
+                progress.advance(1);
             }
-            return flippedImage;
-        } catch (NullPointerException e) {
-            System.err.println(Settings.getLanguageProperty("WARN_NULL_INPUT"));
-            return input; // Return the original input if there is a null pointer exception.
-        }
+        });
+        return flippedImage;
     }
 
 }
@@ -21,43 +21,33 @@ import java.awt.image.*;
  * @author Marcus Millan
  * @version 1.0
  */
-public class ImageInversion implements ImageOperation, java.io.Serializable {
+public class ImageInversion implements PointOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 4821281383211631098L;
 
     ImageInversion() {
+    }
 
+    /**
+     * Gets the lookup table for the inversion, which replaces each of the red,
+     * green and blue values with its complement and leaves alpha unchanged.
+     * 
+     * @return The lookup table for the inversion.
+     */
+    public ColourLut getLut() {
+        return ColourLut.identity().mapColour(v -> 255 - v);
     }
 
     /**
      * Applies the inversion operation to a given BufferedImage.
-     * This method iterates through each pixel of the input image,
-     * calculates the complementary color values, and updates the
-     * image with the inverted colors.
+     * This method looks up the complementary color values of each pixel of the
+     * input image and updates the image with the inverted colors.
      * 
      * @param input The BufferedImage to which the inversion will be applied.
-     * @return A new BufferedImage with inverted colors.
+     * @return The input image, with inverted colors.
      */
     public BufferedImage apply(BufferedImage input) {
-
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                int argb = input.getRGB(x, y);
-                int a = (argb & 0xFF000000) >> 24;
-                int r = (argb & 0x00FF0000) >> 16;
-                int g = (argb & 0x0000FF00) >> 8;
-                int b = (argb & 0x000000FF);
-
-                r = 255 - r;
-                g = 255 - g;
-                b = 255 - b;
-
-                // int grey = (int) Math.round(0.3*r + 0.6*g + 0.1*b);
-
-                argb = (a << 24) | (r << 16) | (g << 8) | b;
-                input.setRGB(x, y, argb);
-            }
-        }
-
-        return input;
+        return getLut().apply(input, input);
     }
 
 }
@@ -58,6 +58,16 @@ public class ImagePanel extends JPanel {
 
         selection = new MouseSelection(this);
         addMouseListener(selection);
+
+        // Operations finish in the background, so redraw whenever the image changes
+        image.addPropertyChangeListener(e -> {
+            if ("image".equals(e.getPropertyName())) {
+                repaint();
+                if (getParent() != null) {
+                    getParent().revalidate();
+                }
+            }
+        });
     }
 
     /**
@@ -0,0 +1,187 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * <p>
+ * The pixels of a {@link BufferedImage} as packed ARGB {@code int}s in a single
+ * array.
+ * </p>
+ *
+ * <p>
+ * {@link BufferedImage#getRGB(int, int)} and
+ * {@link BufferedImage#setRGB(int, int, int)} convert through the image's
+ * colour model on every call, which dominates the running time of filters that
+ * read many pixels per output pixel. For {@code TYPE_INT_ARGB} and
+ * {@code TYPE_INT_RGB} images the packed pixels are already stored in an
+ * {@code int[]}, so an ImagePixels for one of those images works on the backing
+ * array directly. For any other type of image the pixels are converted once, in
+ * bulk, into a new array, and written back in bulk by {@link commit}.
+ * </p>
+ *
+ * <p>
+ * The pixel at {@code (x, y)} is {@code data[offset + y * stride + x]}. The
+ * offset and stride are needed because images produced by
+ * {@link BufferedImage#getSubimage} (for example by {@link ImageCrop}) share a
+ * larger backing array.
+ * </p>
+ *
+ * <p>
+ * For images without an alpha channel the top byte of each element should be
+ * ignored when reading, and {@link store} should be used when writing.
+ * </p>
+ *
+ * @version 1.0
+ */
+final class ImagePixels {
+
+    /** The packed ARGB pixels. */
+    final int[] data;
+
+    /** The index of the top-left pixel in {@link data}. */
+    final int offset;
+
+    /** The distance in {@link data} between vertically adjacent pixels. */
+    final int stride;
+
+    /** The width of the image. */
+    final int width;
+
+    /** The height of the image. */
+    final int height;
+
+    /** Whether the image has an alpha channel. */
+    final boolean hasAlpha;
+
+    /** The image the pixels belong to. */
+    private final BufferedImage image;
+
+    /** Whether {@link data} is the image's own backing array. */
+    private final boolean direct;
+
+    private ImagePixels(BufferedImage image, int[] data, int offset, int stride, boolean direct) {
+        this.image = image;
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.hasAlpha = image.getColorModel().hasAlpha();
+        this.direct = direct;
+    }
+
+    /**
+     * <p>
+     * Get the pixels of an image for reading.
+     * </p>
+     *
+     * <p>
+     * Integer ARGB and RGB images are accessed directly. Any other image is
+     * converted to packed ARGB once, with a single bulk {@code getRGB}.
+     * </p>
+     *
+     * @param image The image to read.
+     * @return The pixels of the image.
+     */
+    static ImagePixels of(BufferedImage image) {
+        ImagePixels pixels = direct(image);
+        if (pixels != null) {
+            return pixels;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] data = image.getRGB(0, 0, width, height, null, 0, width);
+        return new ImagePixels(image, data, 0, width, false);
+    }
+
+    /**
+     * <p>
+     * Get the pixels of an image for writing.
+     * </p>
+     *
+     * <p>
+     * Unlike {@link of}, the existing contents of an image that cannot be
+     * accessed directly are not read, since they are about to be overwritten.
+     * Call {@link commit} once all pixels have been written.
+     * </p>
+     *
+     * @param image The image to write.
+     * @return The pixels of the image.
+     */
+    static ImagePixels forWriting(BufferedImage image) {
+        ImagePixels pixels = direct(image);
+        if (pixels != null) {
+            return pixels;
+        }
+        int width = image.getWidth();
+        return new ImagePixels(image, new int[width * image.getHeight()], 0, width, false);
+    }
+
+    /**
+     * <p>
+     * Access the backing array of an integer ARGB or RGB image.
+     * </p>
+     *
+     * @param image The image to access.
+     * @return The pixels of the image, or null if they are not stored as packed
+     *         {@code int}s.
+     */
+    private static ImagePixels direct(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return null;
+        }
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        // A child raster's origin is offset from its parent's
+        int x0 = -raster.getSampleModelTranslateX();
+        int y0 = -raster.getSampleModelTranslateY();
+        int stride = model.getScanlineStride();
+        int offset = buffer.getOffset() + y0 * stride + x0;
+        return new ImagePixels(image, buffer.getData(), offset, stride, true);
+    }
+
+    /**
+     * <p>
+     * Convert a packed ARGB colour into the form stored in {@link data}.
+     * </p>
+     *
+     * @param argb The colour.
+     * @return The colour, with the alpha byte cleared if the image's backing
+     *         array has no alpha channel.
+     */
+    int store(int argb) {
+        return hasAlpha || !direct ? argb : argb & 0x00FFFFFF;
+    }
+
+    /**
+     * <p>
+     * Check whether {@link data} is the image's own backing array, so that writes
+     * to it take effect immediately.
+     * </p>
+     *
+     * @return True if the image is accessed directly.
+     */
+    boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * <p>
+     * Write the pixels back to the image, if they are not its backing array.
+     * </p>
+     */
+    void commit() {
+        if (!direct) {
+            image.setRGB(0, 0, width, height, data, offset, stride);
+        }
+    }
+}
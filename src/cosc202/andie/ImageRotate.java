@@ -7,10 +7,24 @@ import java.awt.image.*;
  * The rotation operation alters the dimensions of the output image depending on
  * the angle of rotation.
  * 
+ * <p>
+ * Pixels are moved on the packed pixel arrays rather than one at a time through
+ * the images. Rotating by 90 or 270 degrees turns rows of the input into columns
+ * of the output, so the image is moved in square tiles small enough that the
+ * rows of a tile being read and the rows being written all stay in the cache.
+ * The tiles are moved in parallel, a band of tiles at a time.
+ * </p>
+ * 
  * @author Ned Redmond
  */
 
 public class ImageRotate implements ImageOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 6038392993296971788L;
+
+    /** The width and height of the tiles the image is moved in. */
+    private static final int TILE = 64;
+
     private int degrees;
 
     /**
@@ -37,40 +51,18 @@ public class ImageRotate implements ImageOperation, java.io.Serializable {
     public BufferedImage apply(BufferedImage input) {
         try {
 
-            int width = input.getWidth();
-            int height = input.getHeight();
-
-            int rotatedWidth, rotatedHeight;
-            if (degrees == 180) {
-                rotatedWidth = width;
-                rotatedHeight = height;
-            } else {
-                rotatedWidth = height;
-                rotatedHeight = width;
-            }
-
-            BufferedImage rotatedImage = new BufferedImage(rotatedWidth, rotatedHeight, BufferedImage.TYPE_INT_ARGB);
-
             if (degrees == 0) {
                 return input;
-            } else if (degrees == 90) {
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        rotatedImage.setRGB(height - y - 1, x, input.getRGB(x, y));
-                    }
-                }
             } else if (degrees == 180) {
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        rotatedImage.setRGB(width - x - 1, height - y - 1, input.getRGB(x, y));
-                    }
-                }
-            } else if (degrees == 270) {
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        rotatedImage.setRGB(y, width - x - 1, input.getRGB(x, y));
-                    }
-                }
+                // the dimensions remain the same, and the image is flipped along both axes
+                return ImageFlip.flip(input, true, true);
+            }
+
+            // for the other angles the width and height are swapped
+            BufferedImage rotatedImage = new BufferedImage(input.getHeight(), input.getWidth(),
+                    BufferedImage.TYPE_INT_ARGB);
+            if (degrees == 90 || degrees == 270) {
+                transpose(input, rotatedImage, degrees == 90);
             }
 
             return rotatedImage;
@@ -79,4 +71,52 @@ public class ImageRotate implements ImageOperation, java.io.Serializable {
             return input;
         }
     }
+
+    /**
+     * Moves each row of an image into a column of a rotated image, a tile at a
+     * time.
+     * 
+     * @param input     The image to rotate.
+     * @param rotated   The ARGB image to write, with the width and height of the
+     *                  input swapped.
+     * @param clockwise True to rotate by 90 degrees, false to rotate by 270.
+     */
+    private static void transpose(BufferedImage input, BufferedImage rotated, boolean clockwise) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        ImagePixels source = ImagePixels.of(input);
+        int[] output = ((DataBufferInt) rotated.getRaster().getDataBuffer()).getData();
+        // images without alpha are opaque
+        int opaque = source.hasAlpha ? 0 : 0xFF000000;
+
+        // each band is a row of tiles of the input
+        int bands = (height + TILE - 1) / TILE;
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(bands);
+        TileScheduler.forEach(bands, (start, end) -> {
+            for (int band = start; band < end; band++) {
+                int top = band * TILE;
+                int bottom = Math.min(top + TILE, height);
+                for (int left = 0; left < width; left += TILE) {
+                    int right = Math.min(left + TILE, width);
+                    for (int y = top; y < bottom; y++) {
+                        int in = source.offset + y * source.stride;
+                        if (clockwise) {
+                            // (x, y) moves to (height - y - 1, x)
+                            int out = height - y - 1;
+                            for (int x = left; x < right; x++) {
+                                output[x * height + out] = source.data[in + x] | opaque;
+                            }
+                        } else {
+                            // (x, y) moves to (y, width - x - 1)
+                            for (int x = left; x < right; x++) {
+                                output[(width - x - 1) * height + y] = source.data[in + x] | opaque;
+                            }
+                        }
+                    }
+                }
+                progress.advance(1);
+            }
+        });
+    }
 }
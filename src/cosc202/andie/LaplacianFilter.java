@@ -15,7 +15,9 @@ import java.awt.image.*;
  */
 
 
-public class LaplacianFilter implements ImageOperation, java.io.Serializable {
+public class LaplacianFilter implements NeighbourhoodOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 5923811015346935811L;
     //the kernel values for the horizontal and vertical filter
     float[] array = {0, -1, 0,-1,  4, -1,0, -1, 0};
     private boolean offset; 
@@ -41,4 +43,13 @@ public class LaplacianFilter implements ImageOperation, java.io.Serializable {
             return input;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets how far the Laplacian kernel reaches from each pixel.
+     *
+     * @return 1, since the kernel is 3x3.
+     */
+    public int getRadius() {
+        return 1;
+    }
+}
@@ -1,7 +1,6 @@
 package cosc202.andie;
 
 import java.awt.image.*;
-import java.util.*;
 
 /**
  * <p>
@@ -19,11 +18,13 @@ import java.util.*;
  * 4.0</a>
  * </p>
  * 
- * @see java.awt.image.ConvolveOp
+ * @see BoxBlur
  * @author Steven Mills
  * @version 1.0
  */
-public class MeanFilter implements ImageOperation, java.io.Serializable {
+public class MeanFilter implements NeighbourhoodOperation, PlanarOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 5589744882475085057L;
 
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a
@@ -69,8 +70,10 @@ public class MeanFilter implements ImageOperation, java.io.Serializable {
      * </p>
      * 
      * <p>
-     * As with many filters, the Mean filter is implemented via convolution.
-     * The size of the convolution kernel is specified by the {@link radius}.
+     * As with many filters, the Mean filter could be implemented via convolution.
+     * Since every pixel in the neighbourhood counts the same, it is instead
+     * implemented with running sums by {@link BoxBlur}, which gives the same
+     * result at a cost that doesn't grow with the {@link radius}.
      * Larger radii lead to stronger blurring.
      * </p>
      * 
@@ -78,17 +81,31 @@ public class MeanFilter implements ImageOperation, java.io.Serializable {
      * @return The resulting (blurred)) image.
      */
     public BufferedImage apply(BufferedImage input) {
-        int size = (2 * radius + 1) * (2 * radius + 1);
-        float[] array = new float[size];
-        Arrays.fill(array, 1.0f / size);
-
-        Kernel kernel = new Kernel(2 * radius + 1, 2 * radius + 1, array);
-        ConvolveOp convOp = new ConvolveOp(kernel);
+        // Every weight of the kernel is the same, so keep running sums rather than convolving
         BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
                 input.isAlphaPremultiplied(), null);
-        convOp.filter(input, output);
+        return BoxBlur.filter(input, output, radius);
+    }
 
-        return output;
+    /**
+     * <p>
+     * Apply a Mean filter to the planes of an image, with {@link BoxBlur}.
+     * </p>
+     * 
+     * @param input The planes to apply the Mean filter to.
+     * @return The planes of the resulting (blurred) image.
+     */
+    public PlanarImage apply(PlanarImage input) {
+        return BoxBlur.filter(input, radius);
     }
 
+    /**
+     * Gets the radius of the filter, which is how far the pixels averaged
+     * into each pixel can be from it.
+     *
+     * @return The radius of the filter.
+     */
+    public int getRadius() {
+        return radius;
+    }
 }
@@ -7,23 +7,45 @@ import java.util.*;
  * <p>
  * ImageOperation to apply a Median filter.
  * </p>
- * 
+ *
  * <p>
  * Implements a median filter operation to reduce noise in an image.
  * The median filter replaces each pixel value with the median value
  * of its neighboring pixels within a local window.
  * </p>
- * 
+ *
+ * <p>
+ * Each channel is filtered separately. Neighbours outside the image count as
+ * zero, and the alpha channel is ordered as a signed byte, so alpha values from
+ * 128 to 255 come before 0 to 127.
+ * </p>
+ *
+ * <p>
+ * The medians are found with sliding histograms (Perreault and Hebert,
+ * "Median Filtering in Constant Time"), so the time taken per pixel doesn't
+ * depend on the radius. A histogram is kept for each column of the window, and
+ * moved down a row at a time by removing the pixel that leaves it and adding the
+ * one that enters. The window's histogram is the sum of the column histograms
+ * under it, and is moved right a pixel at a time by adding one column histogram
+ * and removing another. Each histogram has 16 coarse bins as well as the 256
+ * fine ones, so the median is found by scanning at most 16 coarse bins and then
+ * the 16 fine bins within one of them. The fine bins of the window's histogram
+ * are only brought up to date for the coarse bins the medians are actually
+ * found in.
+ * </p>
+ *
  * @author Hadrien Tang
  */
-public class MedianFilter implements ImageOperation, java.io.Serializable {
+public class MedianFilter implements NeighbourhoodOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = -6489940994953466586L;
 
     private int radius;
 
     /**
      * Constructs a MedianFilter object with a specified radius.
      * The radius determines the size of the local neighborhood window.
-     * 
+     *
      * @param radius The radius of the neighborhood window.
      */
     MedianFilter(int radius) {
@@ -42,7 +64,7 @@ public class MedianFilter implements ImageOperation, java.io.Serializable {
      * For each pixel in the input image, this method computes the median
      * value of the pixel values in its local neighborhood defined by the
      * radius. The median value is then used as the new pixel value.
-     * 
+     *
      * @param input The BufferedImage to which the filter is applied.
      * @return A new BufferedImage object with the median filter applied.
      * @throws NullPointerException If the input image is null.
@@ -52,85 +74,267 @@ public class MedianFilter implements ImageOperation, java.io.Serializable {
             // make the output image
             BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
                     input.isAlphaPremultiplied(), null);
-            // array size of the local neighborhood
+
+            ImagePixels source = ImagePixels.of(input);
+            ImagePixels destination = ImagePixels.forWriting(output);
+
+            OperationProgress progress = OperationProgress.current();
+            progress.begin(input.getHeight());
+
+            // go throught the entire image a band of rows at a time in parallel, each with its own histograms
+            TileScheduler.forEach(input.getHeight(), (start, end) -> {
+                new Histograms(source, radius).filter(destination, start, end, progress);
+            });
+            destination.commit();
+            return output;
+        } catch (NullPointerException e) {
+            System.out.println(Settings.getLanguageProperty("WARN_NULL_INPUT"));
+            return input;
+        }
+    }
+
+    /**
+     * The sliding histograms for filtering one band of rows.
+     */
+    private static class Histograms {
+
+        // fine bins per channel, and fine bins per coarse bin
+        private static final int BINS = 256;
+        private static final int COARSE = 16;
+        private static final int SHIFT = 4;
+
+        private final ImagePixels source;
+        private final int radius;
+        private final int width;
+        private final int height;
+
+        // the first channel to filter: 0 (alpha) if the image has alpha, otherwise 1 (red)
+        private final int first;
+
+        // the histogram of each column of the window, as [x][channel][bin].
+        // a column holds at most 2 * radius + 1 pixels, so a char is enough
+        private final char[] columnFine;
+        private final char[] columnCoarse;
+
+        // the histogram of the window, as [channel][bin]
+        private final int[] windowFine;
+        private final int[] windowCoarse;
+
+        // the x the fine bins of each [channel][coarse bin] of the window were last brought up to date for
+        private final int[] windowFineX;
+
+        Histograms(ImagePixels source, int radius) {
+            this.source = source;
+            this.radius = radius;
+            this.width = source.width;
+            this.height = source.height;
+            this.first = source.hasAlpha ? 0 : 1;
+            this.columnFine = new char[width * 4 * BINS];
+            this.columnCoarse = new char[width * 4 * COARSE];
+            this.windowFine = new int[4 * BINS];
+            this.windowCoarse = new int[4 * COARSE];
+            this.windowFineX = new int[4 * COARSE];
+        }
+
+        /**
+         * Filters a band of rows.
+         *
+         * @param destination The pixels of the output image.
+         * @param start       The first row to filter.
+         * @param end         One past the last row to filter.
+         * @param progress    The progress of the operation, advanced once per row.
+         */
+        void filter(ImagePixels destination, int start, int end, OperationProgress progress) {
             int size = (2 * radius + 1) * (2 * radius + 1);
             int median = size / 2;
 
-            // go throught the entire image with this forloop
-            for (int y = 0; y < input.getHeight(); y++) {
-                for (int x = 0; x < input.getWidth(); x++) {
-                    // get the neighborhood for each pixel that we're currently at
-                    int[][] neighbors = getNeighborhood(input, x, y);
-
-                    int[] a = new int[size];
-                    int[] r = new int[size];
-                    int[] g = new int[size];
-                    int[] b = new int[size];
-
-                    // go through the neigborhood and get the pixel values for each pixel and put
-                    // them in the corresponding rgb channels
-                    int index = 0;
-                    for (int i = 0; i < neighbors.length; i++) {
-                        for (int j = 0; j < neighbors.length; j++) {
-                            int argb = neighbors[i][j];
-                            a[index] = (argb & 0xFF000000) >> 24;
-                            r[index] = (argb & 0x00FF0000) >> 16;
-                            g[index] = (argb & 0x0000FF00) >> 8;
-                            b[index] = (argb & 0x000000FF);
-                            index++;
+            // the column histograms for the window around the first row
+            for (int y = Math.max(0, start - radius); y <= Math.min(height - 1, start + radius); y++) {
+                updateColumns(y, 1);
+            }
+
+            for (int y = start; y < end; y++) {
+                if (y > start) {
+                    // move the column histograms down a row
+                    if (y - radius - 1 >= 0) {
+                        updateColumns(y - radius - 1, -1);
+                    }
+                    if (y + radius < height) {
+                        updateColumns(y + radius, 1);
+                    }
+                }
+                int rows = Math.min(height - 1, y + radius) - Math.max(0, y - radius) + 1;
+
+                // the window around the first pixel of the row
+                Arrays.fill(windowCoarse, 0);
+                Arrays.fill(windowFineX, Integer.MIN_VALUE);
+                for (int x = 0; x <= Math.min(width - 1, radius); x++) {
+                    updateWindowCoarse(x, 1);
+                }
+
+                int row = destination.offset + y * destination.stride;
+                for (int x = 0; x < width; x++) {
+                    if (x > 0) {
+                        // move the window right a pixel
+                        if (x - radius - 1 >= 0) {
+                            updateWindowCoarse(x - radius - 1, -1);
+                        }
+                        if (x + radius < width) {
+                            updateWindowCoarse(x + radius, 1);
                         }
                     }
 
-                    // sort the arrays
-                    Arrays.sort(a);
-                    Arrays.sort(r);
-                    Arrays.sort(g);
-                    Arrays.sort(b);
+                    // the neighbours outside the image, which count as zeros
+                    int columns = Math.min(width - 1, x + radius) - Math.max(0, x - radius) + 1;
+                    int padding = size - rows * columns;
 
-                    // get the medians
-                    int amed = a[median];
-                    int rmed = r[median];
-                    int gmed = g[median];
-                    int bmed = b[median];
+                    // images without alpha are opaque
+                    int argb = first == 0 ? 0 : 0xFF000000;
+                    for (int c = first; c < 4; c++) {
+                        int bin = median(c, x, median, padding);
+                        // alpha is binned as a signed byte, so flip it back
+                        argb |= (c == 0 ? bin ^ 0x80 : bin) << (24 - 8 * c);
+                    }
+                    destination.data[row + x] = destination.store(argb);
+                }
+                progress.advance(1);
+            }
+        }
 
-                    // chuck them back together
-                    int argb = (amed << 24) | (rmed << 16) | (gmed << 8) | bmed;
+        /**
+         * Adds a row of the input to, or removes it from, the column histograms.
+         *
+         * @param y     The row.
+         * @param delta 1 to add the row, -1 to remove it.
+         */
+        private void updateColumns(int y, int delta) {
+            int in = source.offset + y * source.stride;
+            for (int x = 0; x < width; x++) {
+                int argb = source.data[in + x];
+                for (int c = first; c < 4; c++) {
+                    int bin = bin(argb, c);
+                    columnFine[(x * 4 + c) * BINS + bin] += delta;
+                    columnCoarse[(x * 4 + c) * COARSE + (bin >> SHIFT)] += delta;
+                }
+            }
+        }
 
-                    output.setRGB(x, y, argb);
+        /**
+         * Adds a column histogram to, or removes it from, the coarse bins of the window.
+         *
+         * @param x     The column.
+         * @param delta 1 to add the column, -1 to remove it.
+         */
+        private void updateWindowCoarse(int x, int delta) {
+            int column = x * 4 * COARSE;
+            for (int i = first * COARSE; i < 4 * COARSE; i++) {
+                windowCoarse[i] += delta * columnCoarse[column + i];
+            }
+        }
+
+        /**
+         * Adds the fine bins within one coarse bin of a column histogram to, or
+         * removes them from, the window.
+         *
+         * @param x      The column.
+         * @param c      The channel.
+         * @param coarse The coarse bin.
+         * @param delta  1 to add the column, -1 to remove it.
+         */
+        private void updateWindowFine(int x, int c, int coarse, int delta) {
+            int column = (x * 4 + c) * BINS + (coarse << SHIFT);
+            int window = c * BINS + (coarse << SHIFT);
+            for (int i = 0; i < COARSE; i++) {
+                windowFine[window + i] += delta * columnFine[column + i];
+            }
+        }
 
+        /**
+         * Finds the median of a channel in the window around a pixel.
+         *
+         * @param c       The channel.
+         * @param x       The column of the pixel.
+         * @param median  The index of the median in the sorted neighbourhood.
+         * @param padding The number of neighbours outside the image.
+         * @return The bin of the median.
+         */
+        private int median(int c, int x, int median, int padding) {
+            // the bin zero falls in; alpha is binned as a signed byte
+            int zero = c == 0 ? 0x80 : 0;
+
+            int count = 0;
+            int coarse = 0;
+            for (;; coarse++) {
+                int n = windowCoarse[c * COARSE + coarse] + ((zero >> SHIFT) == coarse ? padding : 0);
+                if (count + n > median) {
+                    break;
                 }
+                count += n;
+            }
+
+            bringUpToDate(c, coarse, x);
+
+            int bin = coarse << SHIFT;
+            for (;; bin++) {
+                int n = windowFine[c * BINS + bin] + (bin == zero ? padding : 0);
+                if (count + n > median) {
+                    return bin;
+                }
+                count += n;
             }
-            return output;
-        } catch (NullPointerException e) {
-            System.out.println(Settings.getLanguageProperty("WARN_NULL_INPUT"));
-            return input;
         }
-    }
 
-    /**
-     * Retrieves the local neighborhood of a pixel in the image.
-     * The neighborhood consists of pixels surrounding the specified
-     * pixel within the radius defined by the filter.
-     * 
-     * @param input The BufferedImage containing the pixel.
-     * @param x     The x-coordinate of the pixel.
-     * @param y     The y-coordinate of the pixel.
-     * @return A 2D array representing the local neighborhood of the pixel.
-     */
-    int[][] getNeighborhood(BufferedImage input, int x, int y) {
-        int[][] neighborhood = new int[radius * 2 + 1][radius * 2 + 1];
-        int X1 = Math.max(0, x - radius);
-        int Y1 = Math.max(0, y - radius);
-        int Xend = Math.min(input.getWidth() - 1, x + radius);
-        int Yend = Math.min(input.getHeight() - 1, y + radius);
-
-        for (int i = X1; i <= Xend; i++) {
-            for (int j = Y1; j <= Yend; j++) {
-                neighborhood[i - X1][j - Y1] = input.getRGB(i, j);
+        /**
+         * Brings the fine bins within one coarse bin of the window up to date,
+         * by sliding them from where they were last brought up to date or by
+         * summing the columns afresh if that is quicker.
+         *
+         * @param c      The channel.
+         * @param coarse The coarse bin.
+         * @param x      The column of the pixel the window is around.
+         */
+        private void bringUpToDate(int c, int coarse, int x) {
+            int last = windowFineX[c * COARSE + coarse];
+            if (last == x) {
+                return;
             }
+            if ((long) x - last <= 2 * radius + 1) {
+                for (int step = last + 1; step <= x; step++) {
+                    if (step - radius - 1 >= 0) {
+                        updateWindowFine(step - radius - 1, c, coarse, -1);
+                    }
+                    if (step + radius < width) {
+                        updateWindowFine(step + radius, c, coarse, 1);
+                    }
+                }
+            } else {
+                Arrays.fill(windowFine, c * BINS + (coarse << SHIFT), c * BINS + ((coarse + 1) << SHIFT), 0);
+                for (int column = Math.max(0, x - radius); column <= Math.min(width - 1, x + radius); column++) {
+                    updateWindowFine(column, c, coarse, 1);
+                }
+            }
+            windowFineX[c * COARSE + coarse] = x;
         }
 
-        return neighborhood;
+        /**
+         * Gets the histogram bin of a channel of a pixel.
+         *
+         * @param argb The pixel.
+         * @param c    The channel: 0 for alpha, 1 for red, 2 for green, 3 for blue.
+         * @return The bin, which for alpha is its value as a signed byte plus 128.
+         */
+        private static int bin(int argb, int c) {
+            int value = (argb >>> (24 - 8 * c)) & 0xFF;
+            return c == 0 ? value ^ 0x80 : value;
+        }
     }
 
+    /**
+     * Gets the radius of the neighbourhood window the median is taken over.
+     *
+     * @return The radius of the neighbourhood window.
+     */
+    public int getRadius() {
+        return radius;
+    }
 }
@@ -1,5 +1,6 @@
 package cosc202.andie;
 
+import java.awt.Rectangle;
 import java.awt.event.*;
 
 /**
@@ -116,6 +117,25 @@ public class MouseSelection implements MouseListener {
         return height;
     }
 
+    /**
+     * Gets the selected region in the coordinates of the image rather than of the
+     * panel, allowing for the zoom level. The region includes the pixels under
+     * the selection rectangle's edges.
+     * 
+     * @return The selected region of the image, or null if no selection has been made.
+     */
+    public Rectangle getImageRegion() {
+        if (!selectionMade) {
+            return null;
+        }
+        double scale = target.getZoom() / 100;
+        int left = (int) Math.floor(X / scale);
+        int top = (int) Math.floor(Y / scale);
+        int right = (int) Math.ceil((X + width + 1) / scale);
+        int bottom = (int) Math.ceil((Y + height + 1) / scale);
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
     /**
      * Checks if a selection has been made.
      * 
@@ -0,0 +1,55 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * An {@link ImageOperation} where each output pixel depends only on the input
+ * pixels near it.
+ * </p>
+ *
+ * <p>
+ * Because pixels further away than the operation's radius make no difference,
+ * the operation can be applied to just part of an image, a region of interest,
+ * by applying it to that region plus a margin (an apron) of the radius around
+ * it. {@link RegionOperation} does this when a selection has been made.
+ * Operations implementing this interface must give the same result for the
+ * pixels inside the region either way, which also means they must not depend on
+ * where the region is in the image. The exception is
+ * {@link RandomScatteringFilter}, which only promises that the same region
+ * scatters the same way each time.
+ * </p>
+ *
+ * @version 1.0
+ * @see RegionOperation
+ */
+interface NeighbourhoodOperation extends ImageOperation {
+
+    /**
+     * <p>
+     * Get how far from each output pixel the input pixels it depends on can be.
+     * </p>
+     *
+     * @return The radius of the neighbourhood, in pixels, which is 0 for
+     *         operations that only depend on the pixel itself.
+     */
+    int getRadius();
+
+    /**
+     * <p>
+     * Get how wide an apron a region needs for its pixels to come out exactly
+     * as they would for the whole image.
+     * </p>
+     *
+     * <p>
+     * That is the radius for operations that only read pixels within it.
+     * Operations approximated with recursive filters depend a little on every
+     * pixel in line with each output pixel, however far away, and can only be
+     * applied exactly to the whole image.
+     * </p>
+     *
+     * @return The width of the apron, in pixels, or {@link Integer#MAX_VALUE}
+     *         if only the whole image will do.
+     */
+    default int getApron() {
+        return getRadius();
+    }
+}
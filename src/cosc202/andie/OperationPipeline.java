@@ -0,0 +1,613 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * <p>
+ * Applies a sequence of {@link ImageOperation}s, fusing runs of
+ * {@link PixelOperation}s into single passes.
+ * </p>
+ *
+ * <p>
+ * Runs of {@link ImageFlip}s are similarly reduced to at most one flip each
+ * way, since flipping twice the same way undoes the flip.
+ * </p>
+ *
+ * <p>
+ * Applied one at a time, each operation in a run like greyscale, brightness and
+ * contrast, and inversion makes its own pass over the image, and usually its own
+ * copy of it. Since each pixel of a pixel operation's result depends only on the
+ * same pixel of its input, the whole run can instead be applied to each pixel in
+ * turn in one pass. Consecutive {@link PointOperation}s are further combined into
+ * a single {@link ColourLut}, so a run made only of those costs four table
+ * lookups per pixel however long it is.
+ * </p>
+ *
+ * <p>
+ * A run is only fused when every image it would pass through stores packed ARGB
+ * or RGB pixels exactly ({@code TYPE_INT_ARGB} or {@code TYPE_INT_RGB}), so the
+ * fused result is the same as applying the operations one at a time. Otherwise
+ * the operations are applied one at a time. A fused run may modify its input
+ * image in place.
+ * </p>
+ *
+ * <p>
+ * Runs of {@link PlanarOperation}s that include at least one that isn't a pixel
+ * operation, like a mean filter followed by brightness and contrast, are
+ * applied to a {@link PlanarImage} instead. The image is unpacked into planes
+ * at the start of the run and packed again at the end, rather than by each
+ * operation in turn, and consecutive point operations within the run are still
+ * combined into one lookup table. The same conditions on the type of image
+ * apply.
+ * </p>
+ *
+ * <p>
+ * On very large images, runs of {@link NeighbourhoodOperation}s that aren't
+ * all pixel operations are applied a strip of rows at a time instead, to keep
+ * the memory they use bounded. Each strip is cut out with an apron of rows
+ * above and below it as deep as the run's
+ * {@link NeighbourhoodOperation#getApron aprons} added together, the run is
+ * applied to it as it would be to the whole image, and the rows of the strip
+ * itself are copied into the result. The apron means they come out exactly as
+ * if the whole image had been filtered, as {@link RegionOperation} relies on.
+ * Only the result is ever allocated at full size, rather than a copy or two
+ * of the image for every operation in the run.
+ * </p>
+ *
+ * @version 1.0
+ */
+final class OperationPipeline {
+
+    /** Makes an image without alpha opaque, as reading it back would. */
+    private static final ColourLut OPAQUE = ColourLut.identity().map(ColourLut.ALPHA, a -> 255);
+
+    /** Images with at least this many pixels are filtered a strip at a time. */
+    private static final long STRIP_MIN_PIXELS = 1L << 25;
+
+    /** About how many pixels each strip has, not counting its apron. */
+    private static final int STRIP_PIXELS = 1 << 22;
+
+    /** The deepest apron a run filtered in strips can have, beyond which recomputing it costs too much. */
+    private static final int MAX_APRON = 64;
+
+    private OperationPipeline() {
+    }
+
+    /**
+     * <p>
+     * Split a sequence of operations into the stages that apply them.
+     * </p>
+     *
+     * <p>
+     * Each run of two or more consecutive planar operations that aren't all
+     * pixel operations, of two or more consecutive pixel operations, or of two
+     * or more consecutive flips, becomes one stage, and every other operation
+     * is a stage of its own.
+     * </p>
+     *
+     * @param operations The operations, in the order they are applied.
+     * @return The stages, in the order they are applied.
+     */
+    static List<Stage> stages(List<? extends ImageOperation> operations) {
+        return stages(operations, null);
+    }
+
+    /**
+     * <p>
+     * Split a sequence of operations into the stages that apply them to an
+     * image.
+     * </p>
+     *
+     * <p>
+     * If the image has at least {@link STRIP_MIN_PIXELS} pixels, each run of
+     * neighbourhood operations that aren't all pixel operations, with an apron
+     * of up to {@link MAX_APRON} rows, first becomes a stage that applies it a
+     * strip at a time. The rest are split as {@link stages(List)} does.
+     * </p>
+     *
+     * @param operations The operations, in the order they are applied.
+     * @param input      The image they will be applied to, or null.
+     * @return The stages, in the order they are applied.
+     */
+    static List<Stage> stages(List<? extends ImageOperation> operations, BufferedImage input) {
+        return stages(operations, input, STRIP_MIN_PIXELS);
+    }
+
+    /**
+     * <p>
+     * Split a sequence of operations into the stages that apply them to an
+     * image, filtering in strips from a given size of image.
+     * </p>
+     *
+     * @param operations     The operations, in the order they are applied.
+     * @param input          The image they will be applied to, or null.
+     * @param stripMinPixels Images with at least this many pixels are filtered a strip at a time.
+     * @return The stages, in the order they are applied.
+     */
+    static List<Stage> stages(List<? extends ImageOperation> operations, BufferedImage input, long stripMinPixels) {
+        boolean strips = input != null && (long) input.getWidth() * input.getHeight() >= stripMinPixels;
+        List<Stage> stages = new ArrayList<Stage>();
+        int i = 0;
+        while (i < operations.size()) {
+            int stripEnd = strips ? stripRun(operations, i) : i;
+            if (stripEnd > i) {
+                stages.add(new Stage(new ArrayList<ImageOperation>(operations.subList(i, stripEnd)), Mode.STRIPS));
+                i = stripEnd;
+                continue;
+            }
+            int planarEnd = planarRun(operations, i);
+            if (planarEnd - i >= 2) {
+                stages.add(new Stage(new ArrayList<ImageOperation>(operations.subList(i, planarEnd)), Mode.PLANAR));
+                i = planarEnd;
+                continue;
+            }
+            Class<?> kind = kind(operations.get(i));
+            int end = i;
+            while (end < operations.size() && kind != null && kind(operations.get(end)) == kind) {
+                end++;
+            }
+            if (end - i < 2) {
+                end = i + 1;
+            }
+            stages.add(new Stage(new ArrayList<ImageOperation>(operations.subList(i, end)), Mode.DIRECT));
+            i = end;
+        }
+        return stages;
+    }
+
+    /**
+     * <p>
+     * Find the end of the run of operations that can be applied a strip at a
+     * time from a given operation.
+     * </p>
+     *
+     * <p>
+     * {@link RandomScatteringFilter} is left out, since it scatters each strip
+     * differently from the same rows of the whole image, as are operations
+     * that need more than {@link MAX_APRON} rows of apron, like large gaussian
+     * blurs, which need the whole image.
+     * </p>
+     *
+     * @param operations The operations.
+     * @param start      The first operation of the run.
+     * @return One past the last operation of the run, or {@code start} if the
+     *         run would be made only of pixel operations, which need no apron
+     *         and are already applied in place where they can be.
+     */
+    private static int stripRun(List<? extends ImageOperation> operations, int start) {
+        int end = start;
+        int apron = 0;
+        boolean neighbourhood = false;
+        while (end < operations.size() && operations.get(end) instanceof NeighbourhoodOperation
+                && !(operations.get(end) instanceof RandomScatteringFilter)
+                && ((NeighbourhoodOperation) operations.get(end)).getApron() <= MAX_APRON - apron) {
+            apron += ((NeighbourhoodOperation) operations.get(end)).getApron();
+            neighbourhood |= !(operations.get(end) instanceof PixelOperation);
+            end++;
+        }
+        return neighbourhood ? end : start;
+    }
+
+    /**
+     * <p>
+     * Find the end of the run of operations that can be applied to planes from
+     * a given operation.
+     * </p>
+     *
+     * @param operations The operations.
+     * @param start      The first operation of the run.
+     * @return One past the last operation of the run, or {@code start} if the
+     *         run would be made only of pixel operations, which are better fused.
+     */
+    private static int planarRun(List<? extends ImageOperation> operations, int start) {
+        int end = start;
+        boolean neighbourhood = false;
+        while (end < operations.size() && operations.get(end) instanceof PlanarOperation
+                && ((PlanarOperation) operations.get(end)).isPlanar()) {
+            neighbourhood |= !(operations.get(end) instanceof PixelOperation);
+            end++;
+        }
+        return neighbourhood ? end : start;
+    }
+
+    /**
+     * <p>
+     * Get the kind of run an operation can be part of.
+     * </p>
+     *
+     * @param operation The operation.
+     * @return {@link PixelOperation}, {@link ImageFlip}, or null if the operation
+     *         can't be combined with others.
+     */
+    private static Class<?> kind(ImageOperation operation) {
+        if (operation instanceof PixelOperation) {
+            return PixelOperation.class;
+        } else if (operation instanceof ImageFlip) {
+            return ImageFlip.class;
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Apply a sequence of operations to an image.
+     * </p>
+     *
+     * @param operations The operations, in the order they are applied.
+     * @param input      The image to apply them to.
+     * @return The result of applying every operation.
+     */
+    static BufferedImage apply(List<? extends ImageOperation> operations, BufferedImage input) {
+        return apply(stages(operations, input), input);
+    }
+
+    /**
+     * <p>
+     * Apply a sequence of stages to an image.
+     * </p>
+     *
+     * @param stages The stages, in the order they are applied.
+     * @param input  The image to apply them to.
+     * @return The result of applying every stage.
+     */
+    private static BufferedImage apply(Iterable<Stage> stages, BufferedImage input) {
+        for (Stage stage : stages) {
+            input = stage.apply(input);
+            // any tables offered for the input no longer describe it once a stage may have changed it
+            SummedAreaTable.withdraw();
+        }
+        return input;
+    }
+
+    /**
+     * <p>
+     * Apply neighbourhood operations to an image a strip of rows at a time.
+     * </p>
+     *
+     * <p>
+     * Each strip, with its apron, is copied out of the input and the
+     * operations are applied to the copy in the usual stages. The input is
+     * left as it was.
+     * </p>
+     *
+     * @param operations The operations, in the order they are applied.
+     * @param input      The image to apply them to.
+     * @param rows       The number of rows in each strip, not counting its apron.
+     * @return The result of applying every operation.
+     */
+    static BufferedImage applyInStrips(List<? extends ImageOperation> operations, BufferedImage input, int rows) {
+        List<Stage> stages = stages(operations);
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int apron = apron(operations);
+
+        // each strip runs with progress of its own, so that the bar moves once across the whole image
+        OperationProgress progress = OperationProgress.current();
+        OperationProgress part = progress.part();
+        progress.begin(height);
+        BufferedImage output = null;
+        if (part != progress) {
+            OperationProgress.install(part);
+        }
+        try {
+            for (int top = 0; top < height; top += rows) {
+                int bottom = Math.min(top + rows, height);
+                int from = Math.max(0, top - apron);
+                int to = Math.min(height, bottom + apron);
+                BufferedImage strip = apply(stages,
+                        EditableImage.deepCopy(input.getSubimage(0, from, width, to - from)));
+                if (output == null && strip.getType() != BufferedImage.TYPE_CUSTOM) {
+                    // a compatible raster doesn't keep the byte order of types like TYPE_3BYTE_BGR
+                    output = new BufferedImage(width, height, strip.getType());
+                } else if (output == null) {
+                    ColorModel colorModel = strip.getColorModel();
+                    output = new BufferedImage(colorModel, colorModel.createCompatibleWritableRaster(width, height),
+                            strip.isAlphaPremultiplied(), null);
+                }
+                Stage.copyRows(strip, top - from, output, top, bottom - top);
+                progress.advance(bottom - top);
+            }
+        } finally {
+            if (part != progress) {
+                OperationProgress.install(progress);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * <p>
+     * Get the rows of apron a run of neighbourhood operations needs altogether.
+     * </p>
+     *
+     * @param operations The operations.
+     * @return The sum of their aprons.
+     */
+    private static int apron(List<? extends ImageOperation> operations) {
+        int apron = 0;
+        for (ImageOperation operation : operations) {
+            apron += ((NeighbourhoodOperation) operation).getApron();
+        }
+        return apron;
+    }
+
+    /**
+     * <p>
+     * How a stage applies its operations.
+     * </p>
+     */
+    private enum Mode {
+        /** One at a time, or fused into a single pass if they can be. */
+        DIRECT,
+        /** To the planes of the image. */
+        PLANAR,
+        /** A strip of rows at a time. */
+        STRIPS
+    }
+
+    /**
+     * <p>
+     * One or more operations applied together.
+     * </p>
+     */
+    static final class Stage {
+
+        /** The operations, in the order they are applied. */
+        private final List<ImageOperation> operations;
+
+        /** How the operations are applied. */
+        private final Mode mode;
+
+        private Stage(List<ImageOperation> operations, Mode mode) {
+            this.operations = Collections.unmodifiableList(operations);
+            this.mode = mode;
+        }
+
+        /**
+         * <p>
+         * Get the number of operations the stage applies.
+         * </p>
+         *
+         * @return The number of operations.
+         */
+        int size() {
+            return operations.size();
+        }
+
+        /**
+         * <p>
+         * Apply the stage's operations to an image, in a single pass if they can
+         * be fused.
+         * </p>
+         *
+         * @param input The image to apply the operations to.
+         * @return The result of applying every operation.
+         */
+        BufferedImage apply(BufferedImage input) {
+            if (operations.size() > 1 && input != null && operations.get(0) instanceof ImageFlip) {
+                List<ImageFlip> flips = new ArrayList<ImageFlip>();
+                for (ImageOperation operation : operations) {
+                    flips.add((ImageFlip) operation);
+                }
+                return ImageFlip.apply(flips, input);
+            }
+            if (mode == Mode.STRIPS && input != null) {
+                return applyInStrips(input);
+            }
+            if (mode == Mode.PLANAR && input != null) {
+                BufferedImage result = applyPlanar(input);
+                if (result != null) {
+                    return result;
+                }
+            } else if (operations.size() > 1 && input != null) {
+                BufferedImage fused = fuse(input);
+                if (fused != null) {
+                    return fused;
+                }
+            }
+            for (ImageOperation operation : operations) {
+                input = operation.apply(input);
+            }
+            return input;
+        }
+
+        /**
+         * <p>
+         * Apply the stage's pixel operations in a single pass.
+         * </p>
+         *
+         * @param input The image to apply the operations to.
+         * @return The result, or null if the operations can't be fused for this image.
+         */
+        private BufferedImage fuse(BufferedImage input) {
+            // the steps applied to each pixel, with consecutive lookup tables combined
+            List<IntUnaryOperator> steps = new ArrayList<IntUnaryOperator>();
+            ColourLut lut = null;
+            int type = input.getType();
+            for (ImageOperation operation : operations) {
+                if (!isPacked(type)) {
+                    return null;
+                }
+                PixelOperation pixelOperation = (PixelOperation) operation;
+                if (pixelOperation instanceof PointOperation) {
+                    ColourLut next = ((PointOperation) pixelOperation).getLut();
+                    lut = lut == null ? next : lut.then(next);
+                } else {
+                    if (lut != null) {
+                        steps.add(lut::apply);
+                        lut = null;
+                    }
+                    steps.add(pixelOperation::filterPixel);
+                }
+                type = pixelOperation.getOutputType(type);
+                if (type == BufferedImage.TYPE_INT_RGB) {
+                    // the next operation would read this pixel back from an image without alpha
+                    lut = lut == null ? OPAQUE : lut.then(OPAQUE);
+                }
+            }
+            if (!isPacked(type)) {
+                return null;
+            }
+
+            BufferedImage output = type == input.getType() ? input
+                    : new BufferedImage(input.getWidth(), input.getHeight(), type);
+            if (steps.isEmpty()) {
+                return lut.apply(input, output);
+            }
+            if (lut != null) {
+                steps.add(lut::apply);
+            }
+            return apply(input, output, steps.toArray(new IntUnaryOperator[0]));
+        }
+
+        /**
+         * <p>
+         * Apply the stage's neighbourhood operations a strip of rows at a time.
+         * </p>
+         *
+         * <p>
+         * The strips are tall enough that their aprons add at most a quarter to
+         * the rows filtered. An image smaller than {@link STRIP_MIN_PIXELS} is
+         * filtered whole.
+         * </p>
+         *
+         * @param input The image to apply the operations to.
+         * @return The result of applying every operation.
+         */
+        private BufferedImage applyInStrips(BufferedImage input) {
+            int width = input.getWidth();
+            if ((long) width * input.getHeight() < STRIP_MIN_PIXELS) {
+                return OperationPipeline.apply(stages(operations), input);
+            }
+            int rows = Math.max(Math.max(1, 8 * apron(operations)), STRIP_PIXELS / width);
+            return OperationPipeline.applyInStrips(operations, input, rows);
+        }
+
+        /**
+         * <p>
+         * Copy rows of a filtered strip into the result.
+         * </p>
+         *
+         * @param strip  The filtered strip.
+         * @param from   The first row of the strip to copy.
+         * @param output The result.
+         * @param to     The row of the result to copy it to.
+         * @param rows   The number of rows to copy.
+         */
+        private static void copyRows(BufferedImage strip, int from, BufferedImage output, int to, int rows) {
+            int width = strip.getWidth();
+            if (strip.getType() == output.getType() && isPacked(output.getType())) {
+                ImagePixels source = ImagePixels.of(strip);
+                ImagePixels destination = ImagePixels.of(output);
+                for (int y = 0; y < rows; y++) {
+                    System.arraycopy(source.data, source.offset + (from + y) * source.stride, destination.data,
+                            destination.offset + (to + y) * destination.stride, width);
+                }
+            } else {
+                output.getRaster().setRect(strip.getRaster().createChild(0, from, width, rows, 0, to, null));
+            }
+        }
+
+        /**
+         * <p>
+         * Apply the stage's planar operations to the planes of an image.
+         * </p>
+         *
+         * @param input The image to apply the operations to.
+         * @return The result, or null if the image or one of the results isn't packed ARGB or RGB.
+         */
+        private BufferedImage applyPlanar(BufferedImage input) {
+            int type = input.getType();
+            for (ImageOperation operation : operations) {
+                if (!isPacked(type)) {
+                    return null;
+                }
+                if (operation instanceof PointOperation) {
+                    type = ((PointOperation) operation).getOutputType(type);
+                }
+            }
+            if (!isPacked(type)) {
+                return null;
+            }
+
+            PlanarImage planes = PlanarImage.of(input);
+            // consecutive point operations, combined into one lookup table as in fuse
+            ColourLut lut = null;
+            type = planes.type;
+            for (ImageOperation operation : operations) {
+                if (operation instanceof PointOperation) {
+                    PointOperation pointOperation = (PointOperation) operation;
+                    lut = lut == null ? pointOperation.getLut() : lut.then(pointOperation.getLut());
+                    type = pointOperation.getOutputType(type);
+                    if (type == BufferedImage.TYPE_INT_RGB) {
+                        lut = lut.then(OPAQUE);
+                    }
+                } else {
+                    if (lut != null) {
+                        planes = lut.apply(planes, type);
+                        lut = null;
+                    }
+                    planes = ((PlanarOperation) operation).apply(planes);
+                    type = planes.type;
+                }
+            }
+            if (lut != null) {
+                planes = lut.apply(planes, type);
+            }
+            return planes.toImage();
+        }
+
+        /**
+         * <p>
+         * Apply a sequence of per-pixel steps to every pixel of an image.
+         * </p>
+         *
+         * @param input  The image to read.
+         * @param output The image to write, which may be the input.
+         * @param steps  The steps applied to each pixel, in order.
+         * @return The output image.
+         */
+        private static BufferedImage apply(BufferedImage input, BufferedImage output, IntUnaryOperator[] steps) {
+            ImagePixels source = ImagePixels.of(input);
+            ImagePixels destination = output == input ? source : ImagePixels.forWriting(output);
+            int opaque = source.hasAlpha ? 0 : 0xFF000000;
+            int width = source.width;
+
+            OperationProgress progress = OperationProgress.current();
+            progress.begin(source.height);
+            TileScheduler.forEach(source.height, (start, end) -> {
+                for (int y = start; y < end; y++) {
+                    int in = source.offset + y * source.stride;
+                    int out = destination.offset + y * destination.stride;
+                    for (int x = 0; x < width; x++) {
+                        int argb = source.data[in + x] | opaque;
+                        for (IntUnaryOperator step : steps) {
+                            argb = step.applyAsInt(argb);
+                        }
+                        destination.data[out + x] = destination.store(argb);
+                    }
+                    progress.advance(1);
+                }
+            });
+            destination.commit();
+            return output;
+        }
+
+        /**
+         * <p>
+         * Check whether an image type stores packed ARGB or RGB pixels exactly.
+         * </p>
+         *
+         * @param type The {@link BufferedImage} type.
+         * @return True if pixels survive being written to and read from such an image.
+         */
+        private static boolean isPacked(int type) {
+            return type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package cosc202.andie;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * Progress and cancellation for the {@link ImageOperation} currently running.
+ * </p>
+ *
+ * <p>
+ * When {@link EditableImage} runs an operation in the background it installs an
+ * OperationProgress for the worker thread. Long-running operations report their
+ * progress through it, typically once per row:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * OperationProgress progress = OperationProgress.current();
+ * progress.begin(height);
+ * for (int y = 0; y < height; y++) {
+ *     ... // process row y
+ *     progress.advance(1);
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * {@link advance} throws a {@link CancellationException} once the operation
+ * has been cancelled, which unwinds the operation without it producing a
+ * result. Operations run outside of {@link EditableImage} (for example in tests)
+ * see a progress object that ignores all reports and is never cancelled.
+ * </p>
+ *
+ * <p>
+ * Units of work are counted across every call to {@link begin}, so an operation
+ * made of several passes, or one that runs other operations, can simply begin
+ * each pass as it comes. All methods are safe to call from several threads at
+ * once.
+ * </p>
+ *
+ * @version 1.0
+ */
+final class OperationProgress {
+
+    /** The progress of the operation running on each thread, if any. */
+    private static final ThreadLocal<OperationProgress> CURRENT = new ThreadLocal<OperationProgress>();
+
+    /** The progress seen by operations not run through {@link EditableImage}. */
+    private static final OperationProgress NONE = new OperationProgress(null);
+
+    /** Receives the percentage complete whenever it changes, or null. */
+    private final IntConsumer listener;
+
+    /** The units of work announced so far. */
+    private final AtomicLong total = new AtomicLong();
+
+    /** The units of work completed so far. */
+    private final AtomicLong done = new AtomicLong();
+
+    /** The last percentage passed to the listener. */
+    private volatile int percent;
+
+    /** Whether the operation has been cancelled. */
+    private volatile boolean cancelled;
+
+    /** The progress of the whole operation, if this is the progress of one part of it, or null. */
+    private final OperationProgress whole;
+
+    /**
+     * <p>
+     * Create a progress object for an operation.
+     * </p>
+     *
+     * @param listener Receives the percentage complete whenever it changes (ignored
+     *                 if null).
+     */
+    OperationProgress(IntConsumer listener) {
+        this(listener, null);
+    }
+
+    private OperationProgress(IntConsumer listener, OperationProgress whole) {
+        this.listener = listener;
+        this.whole = whole;
+    }
+
+    /**
+     * <p>
+     * Get a progress object for one part of this operation.
+     * </p>
+     *
+     * <p>
+     * The part's own reports are ignored, so the caller reports the part's
+     * progress to this one as a whole, but cancelling this operation cancels
+     * the part too. This is for running the same operations over and over on
+     * parts of an image, where each run would otherwise announce its work as
+     * more of the total.
+     * </p>
+     *
+     * @return The progress for the part.
+     */
+    OperationProgress part() {
+        return this == NONE ? NONE : new OperationProgress(null, this);
+    }
+
+    /**
+     * <p>
+     * Get the progress of the operation running on this thread.
+     * </p>
+     *
+     * @return The installed progress, or one that ignores all reports if there is none.
+     */
+    static OperationProgress current() {
+        OperationProgress progress = CURRENT.get();
+        return progress == null ? NONE : progress;
+    }
+
+    /**
+     * <p>
+     * Install a progress object for operations subsequently run on this thread.
+     * </p>
+     *
+     * @param progress The progress to install, or null to remove it.
+     */
+    static void install(OperationProgress progress) {
+        if (progress == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(progress);
+        }
+    }
+
+    /**
+     * <p>
+     * Announce units of work that are about to be done.
+     * </p>
+     *
+     * @param units The number of units of work.
+     */
+    void begin(long units) {
+        if (this != NONE) {
+            total.addAndGet(units);
+        }
+    }
+
+    /**
+     * <p>
+     * Report that units of work have been completed.
+     * </p>
+     *
+     * @param units The number of units of work completed.
+     * @throws CancellationException If the operation has been cancelled.
+     */
+    void advance(long units) {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+        if (this == NONE) {
+            return;
+        }
+        long completed = done.addAndGet(units);
+        long all = total.get();
+        if (listener != null && all > 0) {
+            int now = (int) Math.min(100, 100 * completed / all);
+            if (now != percent) {
+                percent = now;
+                listener.accept(now);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Cancel the operation. It stops at its next call to {@link advance}.
+     * </p>
+     */
+    void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * <p>
+     * Check whether the operation has been cancelled.
+     * </p>
+     *
+     * @return True if the operation has been cancelled.
+     */
+    boolean isCancelled() {
+        return cancelled || whole != null && whole.isCancelled();
+    }
+}
@@ -0,0 +1,69 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>
+ * An {@link ImageOperation} whose effect on each pixel depends only on that
+ * pixel.
+ * </p>
+ *
+ * <p>
+ * Because each pixel is independent, a run of pixel operations applied one
+ * after another can be fused into a single pass over the image, computing each
+ * pixel's final value before moving on to the next. {@link OperationPipeline}
+ * does this when replaying the history and applying macros. Operations
+ * implementing this interface still implement {@link ImageOperation#apply}
+ * themselves, for when they are applied on their own.
+ * </p>
+ *
+ * <p>
+ * A pixel operation is also a {@link NeighbourhoodOperation} with a radius of
+ * 0, so it can be applied to just a selected region.
+ * </p>
+ *
+ * @version 1.0
+ * @see PointOperation
+ */
+interface PixelOperation extends NeighbourhoodOperation {
+
+    /**
+     * <p>
+     * Apply the operation to one pixel.
+     * </p>
+     *
+     * @param argb The pixel, as packed ARGB.
+     * @return The new pixel, as packed ARGB.
+     */
+    int filterPixel(int argb);
+
+    /**
+     * <p>
+     * Get the type of image the operation produces from an image of the given
+     * type.
+     * </p>
+     *
+     * <p>
+     * By default the operation produces an image of the same type as its input.
+     * </p>
+     *
+     * @param inputType The {@link BufferedImage} type of the input.
+     * @return The {@link BufferedImage} type of the output.
+     */
+    default int getOutputType(int inputType) {
+        return inputType;
+    }
+
+    /**
+     * <p>
+     * Get how far from each output pixel the input pixels it depends on can be,
+     * which for a pixel operation is 0.
+     * </p>
+     *
+     * @return 0.
+     */
+    @Override
+    default int getRadius() {
+        return 0;
+    }
+}
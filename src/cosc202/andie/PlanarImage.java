@@ -0,0 +1,189 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>
+ * An image stored as a separate plane of bytes for each channel, rather than
+ * as packed ARGB ints.
+ * </p>
+ *
+ * <p>
+ * Every operation on packed pixels shifts and masks each channel out of each
+ * pixel it reads, and packs the channels back together for each pixel it
+ * writes. For a run of operations that each treat the channels separately,
+ * like blurs and colour lookups, {@link OperationPipeline} instead unpacks the
+ * image into planes once, applies every {@link PlanarOperation} of the run to
+ * the planes, and packs the result once at the end. Within the run each
+ * channel is then a plain array of values that the loops can read and write
+ * directly, and that the JIT compiler can vectorise.
+ * </p>
+ *
+ * <p>
+ * Each plane is a {@code byte[]} of width times height values with no padding,
+ * read as unsigned. Images without alpha have no alpha plane, and are read as
+ * opaque, just as an image without alpha would be read back. Planes are never
+ * changed once they have been filled, so an operation that leaves a channel
+ * as it was can share the plane with its input.
+ * </p>
+ *
+ * @version 1.0
+ * @see PlanarOperation
+ */
+final class PlanarImage {
+
+    /** The width of the image. */
+    final int width;
+
+    /** The height of the image. */
+    final int height;
+
+    /** The type of {@link BufferedImage} the planes stand for: TYPE_INT_ARGB or TYPE_INT_RGB. */
+    final int type;
+
+    /** The planes for alpha (or null if the image is opaque), red, green and blue. */
+    private final byte[][] planes;
+
+    private PlanarImage(int width, int height, int type, byte[][] planes) {
+        this.width = width;
+        this.height = height;
+        this.type = type;
+        this.planes = planes;
+    }
+
+    /**
+     * <p>
+     * Make an image with new, empty planes.
+     * </p>
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param type   TYPE_INT_ARGB, or TYPE_INT_RGB to leave out the alpha plane.
+     * @return The image.
+     */
+    static PlanarImage create(int width, int height, int type) {
+        byte[][] planes = new byte[4][];
+        for (int c = hasAlpha(type) ? ColourLut.ALPHA : ColourLut.RED; c < 4; c++) {
+            planes[c] = new byte[width * height];
+        }
+        return new PlanarImage(width, height, type, planes);
+    }
+
+    /**
+     * <p>
+     * Make an image from given planes.
+     * </p>
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param type   TYPE_INT_ARGB, or TYPE_INT_RGB if the alpha plane is null.
+     * @param planes The planes for alpha, red, green and blue, which are not copied.
+     * @return The image.
+     */
+    static PlanarImage of(int width, int height, int type, byte[][] planes) {
+        return new PlanarImage(width, height, type, planes.clone());
+    }
+
+    /**
+     * <p>
+     * Unpack an image into planes, in parallel bands of rows.
+     * </p>
+     *
+     * @param image The image, which must be TYPE_INT_ARGB or TYPE_INT_RGB.
+     * @return The planes of the image.
+     */
+    static PlanarImage of(BufferedImage image) {
+        ImagePixels source = ImagePixels.of(image);
+        PlanarImage result = create(source.width, source.height, image.getType());
+        byte[] alpha = result.planes[ColourLut.ALPHA];
+        byte[] red = result.planes[ColourLut.RED];
+        byte[] green = result.planes[ColourLut.GREEN];
+        byte[] blue = result.planes[ColourLut.BLUE];
+        int width = source.width;
+
+        TileScheduler.forEach(source.height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int in = source.offset + y * source.stride;
+                int at = y * width;
+                for (int x = 0; x < width; x++) {
+                    int argb = source.data[in + x];
+                    red[at + x] = (byte) (argb >> 16);
+                    green[at + x] = (byte) (argb >> 8);
+                    blue[at + x] = (byte) argb;
+                }
+                if (alpha != null) {
+                    for (int x = 0; x < width; x++) {
+                        alpha[at + x] = (byte) (source.data[in + x] >>> 24);
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * <p>
+     * Pack the planes into a new image, in parallel bands of rows.
+     * </p>
+     *
+     * @return An image of {@link type}.
+     */
+    BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(width, height, type);
+        ImagePixels destination = ImagePixels.forWriting(image);
+        byte[] alpha = planes[ColourLut.ALPHA];
+        byte[] red = planes[ColourLut.RED];
+        byte[] green = planes[ColourLut.GREEN];
+        byte[] blue = planes[ColourLut.BLUE];
+
+        TileScheduler.forEach(height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int out = destination.offset + y * destination.stride;
+                int at = y * width;
+                for (int x = 0; x < width; x++) {
+                    int a = alpha == null ? 0 : (alpha[at + x] & 0xFF) << 24;
+                    destination.data[out + x] = a | (red[at + x] & 0xFF) << 16 | (green[at + x] & 0xFF) << 8
+                            | (blue[at + x] & 0xFF);
+                }
+            }
+        });
+        destination.commit();
+        return image;
+    }
+
+    /**
+     * <p>
+     * Get the plane for a channel.
+     * </p>
+     *
+     * @param channel {@link ColourLut#ALPHA}, {@link ColourLut#RED},
+     *                {@link ColourLut#GREEN} or {@link ColourLut#BLUE}.
+     * @return The channel's values, row by row, or null for the alpha of an opaque image.
+     */
+    byte[] plane(int channel) {
+        return planes[channel];
+    }
+
+    /**
+     * <p>
+     * Check whether the image has an alpha plane.
+     * </p>
+     *
+     * @return True if the image has alpha.
+     */
+    boolean hasAlpha() {
+        return planes[ColourLut.ALPHA] != null;
+    }
+
+    /**
+     * <p>
+     * Check whether a type of image has alpha.
+     * </p>
+     *
+     * @param type TYPE_INT_ARGB or TYPE_INT_RGB.
+     * @return True for TYPE_INT_ARGB.
+     */
+    static boolean hasAlpha(int type) {
+        return type == BufferedImage.TYPE_INT_ARGB;
+    }
+}
@@ -0,0 +1,47 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * An {@link ImageOperation} that can also be applied to the separate channel
+ * planes of a {@link PlanarImage}.
+ * </p>
+ *
+ * <p>
+ * {@link OperationPipeline} applies runs of these operations to planes, so the
+ * image is unpacked and packed once for the whole run rather than once per
+ * operation. Applied to planes, the operation must give exactly the same
+ * result as {@link ImageOperation#apply} on a TYPE_INT_ARGB or TYPE_INT_RGB
+ * image, including the type of image it produces.
+ * </p>
+ *
+ * @version 1.0
+ * @see PlanarImage
+ */
+interface PlanarOperation extends ImageOperation {
+
+    /**
+     * <p>
+     * Apply the operation to the planes of an image.
+     * </p>
+     *
+     * @param input The planes to apply the operation to, which must not be changed.
+     * @return The planes of the result.
+     */
+    PlanarImage apply(PlanarImage input);
+
+    /**
+     * <p>
+     * Check whether the operation, as it is set up, works on planes.
+     * </p>
+     *
+     * <p>
+     * An operation may only work on planes for some of its settings, and apply
+     * other settings to packed pixels instead.
+     * </p>
+     *
+     * @return True if {@link apply(PlanarImage)} can be used.
+     */
+    default boolean isPlanar() {
+        return true;
+    }
+}
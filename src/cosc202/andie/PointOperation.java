@@ -0,0 +1,57 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * A {@link PixelOperation} whose effect on each output channel depends only on
+ * one input channel.
+ * </p>
+ *
+ * <p>
+ * Such operations can be described completely by a {@link ColourLut}, which
+ * applies them in a single tight loop over the pixels. Operations implementing
+ * this interface still implement {@link ImageOperation#apply} themselves, since
+ * each decides whether to work in place or on a copy, and what type of image it
+ * produces. Applied to planes, the lookup table is applied to each plane.
+ * </p>
+ *
+ * @version 1.0
+ */
+interface PointOperation extends PixelOperation, PlanarOperation {
+
+    /**
+     * <p>
+     * Get the lookup table that describes this operation.
+     * </p>
+     *
+     * @return The lookup table applied to each pixel.
+     */
+    ColourLut getLut();
+
+    /**
+     * <p>
+     * Apply the operation to one pixel, by looking it up in the operation's
+     * lookup table.
+     * </p>
+     *
+     * @param argb The pixel, as packed ARGB.
+     * @return The new pixel, as packed ARGB.
+     */
+    @Override
+    default int filterPixel(int argb) {
+        return getLut().apply(argb);
+    }
+
+    /**
+     * <p>
+     * Apply the operation to the planes of an image, by looking each channel
+     * up in the operation's lookup table.
+     * </p>
+     *
+     * @param input The planes to apply the operation to.
+     * @return The planes of the result, of the type {@link getOutputType} gives.
+     */
+    @Override
+    default PlanarImage apply(PlanarImage input) {
+        return getLut().apply(input, getOutputType(input.type));
+    }
+}
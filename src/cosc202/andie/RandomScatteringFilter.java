@@ -1,7 +1,8 @@
 package cosc202.andie;
 
 import java.awt.image.BufferedImage;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.swing.JOptionPane;
 
@@ -18,6 +19,15 @@ import javax.swing.JOptionPane;
  * or to simulate noise and other visual distortions.
  * </p>
  * 
+ * <p>
+ * Each filter is given a random seed when it is created, and stores it, so
+ * applying the same filter again (for example when the operations are replayed
+ * after an undo, or loaded from a file) scatters the pixels in exactly the same
+ * way. Each row of the image draws from its own random stream, derived from the
+ * seed and the row, so the rows can be filled in any order and in parallel
+ * without sharing a generator and still give the same result.
+ * </p>
+ * 
  * Example usage:
  * <pre>
  * {@code
@@ -32,7 +42,7 @@ import javax.swing.JOptionPane;
  * allowing it to be used in a sequence of image operations.
  * 
  * @see java.awt.image.BufferedImage
- * @see java.util.Random
+ * @see java.util.SplittableRandom
  * @see cosc202.andie.ImageOperation
  * @see java.io.Serializable
  * 
@@ -40,17 +50,36 @@ import javax.swing.JOptionPane;
  * @since 05/05/2024
  * @author Marcus Millan
  */
-public class RandomScatteringFilter implements ImageOperation, java.io.Serializable {
+public class RandomScatteringFilter implements NeighbourhoodOperation, java.io.Serializable {
     private static final long serialVersionUID = 1L;
     private int radius;
 
     /**
-     * Constructs a RandomScatteringFilter with a specified radius.
+     * The seed the random stream for each row is derived from.
+     */
+    private long seed;
+
+    /**
+     * Constructs a RandomScatteringFilter with a specified radius and a new
+     * random seed.
      * 
      * @param radius The radius within which to scatter pixels.
      */
     public RandomScatteringFilter(int radius) {
+        this(radius, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs a RandomScatteringFilter with a specified radius and seed.
+     * Filters with the same radius and seed scatter the pixels of an image in
+     * the same way.
+     * 
+     * @param radius The radius within which to scatter pixels.
+     * @param seed   The seed for the random choice of pixels.
+     */
+    public RandomScatteringFilter(int radius, long seed) {
         this.radius = radius;
+        this.seed = seed;
     }
 
     /**
@@ -85,23 +114,58 @@ public class RandomScatteringFilter implements ImageOperation, java.io.Serializa
         int width = input.getWidth();
         int height = input.getHeight();
         BufferedImage output = new BufferedImage(width, height, input.getType());
-        Random rand = new Random();
+        ImagePixels source = ImagePixels.of(input);
+        ImagePixels destination = ImagePixels.forWriting(output);
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(height);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                // Calculate random offsets within the radius
-                int randomX = x + rand.nextInt(2 * radius + 1) - radius;
-                int randomY = y + rand.nextInt(2 * radius + 1) - radius;
+        // Each row gets its own generator, so the rows can be filled in parallel in any order
+        TileScheduler.forEach(height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                SplittableRandom rand = new SplittableRandom(rowSeed(y));
+                int row = destination.offset + y * destination.stride;
+                for (int x = 0; x < width; x++) {
+                    // Calculate random offsets within the radius
+                    int randomX = x + rand.nextInt(2 * radius + 1) - radius;
+                    int randomY = y + rand.nextInt(2 * radius + 1) - radius;
 
-                // Ensure the new coordinates are within image boundaries
-                randomX = Math.max(0, Math.min(randomX, width - 1));
-                randomY = Math.max(0, Math.min(randomY, height - 1));
+                    // Ensure the new coordinates are within image boundaries
+                    randomX = Math.max(0, Math.min(randomX, width - 1));
+                    randomY = Math.max(0, Math.min(randomY, height - 1));
 
-                // Set the pixel at (x, y) in the output image to the pixel at (randomX, randomY) in the input image
-                output.setRGB(x, y, input.getRGB(randomX, randomY));
+                    // Set the pixel at (x, y) in the output image to the pixel at (randomX, randomY) in the input image
+                    int argb = source.data[source.offset + randomY * source.stride + randomX];
+                    destination.data[row + x] = destination.store(argb);
+                }
+                progress.advance(1);
             }
-        }
+        });
+        destination.commit();
 
         return output;
     }
+
+    /**
+     * Gets the seed for the random stream of one row, by mixing the row into the
+     * filter's seed (with the finalising step of SplitMix64) so that nearby rows
+     * get unrelated streams.
+     * 
+     * @param y The row.
+     * @return The seed for the row's random stream.
+     */
+    private long rowSeed(int y) {
+        long z = seed + (y + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the radius pixels are scattered within.
+     *
+     * @return The scattering radius.
+     */
+    public int getRadius() {
+        return radius;
+    }
 }
@@ -0,0 +1,114 @@
+package cosc202.andie;
+
+import java.awt.Rectangle;
+import java.awt.image.*;
+
+/**
+ * <p>
+ * ImageOperation to apply another operation to just a rectangular region of an
+ * image.
+ * </p>
+ *
+ * <p>
+ * The region is usually the user's selection. Only the region, plus an apron
+ * as wide as the wrapped operation's {@link NeighbourhoodOperation#getApron apron}
+ * (usually its radius) around it, is copied out and given
+ * to the operation, so the cost is proportional to the size of the region
+ * rather than of the whole image. The apron means the pixels inside the region
+ * come out exactly as if the whole image had been filtered. Only the pixels
+ * inside the region are then written back, into the input image itself, so the
+ * pixels outside it are left as they were.
+ * </p>
+ *
+ * <p>
+ * The region is stored in image coordinates as part of the operation, so the
+ * operation does the same thing when it is replayed or saved, whatever the
+ * selection is at the time.
+ * </p>
+ *
+ * @version 1.0
+ * @see NeighbourhoodOperation
+ */
+public class RegionOperation implements ImageOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The operation to apply. */
+    private NeighbourhoodOperation operation;
+
+    /** The region to apply it to, in image coordinates. */
+    private Rectangle region;
+
+    /**
+     * <p>
+     * Create a new operation that applies another to a region of an image.
+     * </p>
+     *
+     * @param operation The operation to apply.
+     * @param region    The region to apply it to, in image coordinates. Any part
+     *                  of it outside the image is ignored.
+     */
+    RegionOperation(NeighbourhoodOperation operation, Rectangle region) {
+        this.operation = operation;
+        this.region = new Rectangle(region);
+    }
+
+    /**
+     * <p>
+     * Get the operation applied to the region.
+     * </p>
+     *
+     * @return The wrapped operation.
+     */
+    public NeighbourhoodOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * <p>
+     * Get the region the operation is applied to.
+     * </p>
+     *
+     * @return A copy of the region, in image coordinates.
+     */
+    public Rectangle getRegion() {
+        return new Rectangle(region);
+    }
+
+    /**
+     * <p>
+     * Apply the operation to the region of an image.
+     * </p>
+     *
+     * @param input The image to apply the operation to.
+     * @return The input image, with the operation applied inside the region.
+     */
+    public BufferedImage apply(BufferedImage input) {
+        if (input == null) {
+            return operation.apply(input);
+        }
+        Rectangle bounds = new Rectangle(0, 0, input.getWidth(), input.getHeight());
+        Rectangle area = region.intersection(bounds);
+        if (area.isEmpty()) {
+            return input;
+        }
+        if (area.equals(bounds)) {
+            return operation.apply(input);
+        }
+
+        // the region and the apron around it that the pixels in it depend on
+        int apron = operation.getApron();
+        Rectangle context = apron >= Math.max(bounds.width, bounds.height) ? bounds
+                : new Rectangle(area.x - apron, area.y - apron,
+                        area.width + 2 * apron, area.height + 2 * apron).intersection(bounds);
+        BufferedImage part = EditableImage.deepCopy(input.getSubimage(context.x, context.y,
+                context.width, context.height));
+        BufferedImage result = operation.apply(part);
+
+        // copy just the region back, leaving the apron and everything else as it was
+        int[] pixels = result.getRGB(area.x - context.x, area.y - context.y, area.width, area.height,
+                null, 0, area.width);
+        input.setRGB(area.x, area.y, area.width, area.height, pixels, 0, area.width);
+        return input;
+    }
+}
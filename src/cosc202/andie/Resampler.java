@@ -0,0 +1,326 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Resizes images to any size with a choice of resampling filters.
+ * </p>
+ *
+ * <p>
+ * Resampling is separable: each row of the input is first resampled to the new
+ * width, and then each column of those rows is resampled to the new height.
+ * Which input pixels contribute to each output column, and by how much, is the
+ * same for every row, so the weights are worked out once per output column and
+ * once per output row before any pixels are touched. When shrinking, the filter
+ * is stretched to cover all of the input pixels that fall within each output
+ * pixel, so that they are averaged rather than skipped.
+ * </p>
+ *
+ * <p>
+ * The output rows are filled in parallel bands with {@link TileScheduler}. Each
+ * band keeps a ring of just the horizontally resampled rows its current output
+ * row needs, so no intermediate image is ever held. Colours are weighted by
+ * their alpha (premultiplied) while they are combined, so transparent pixels
+ * don't bleed their colour into their neighbours.
+ * </p>
+ *
+ * @version 1.0
+ * @see ResizeImage
+ */
+final class Resampler {
+
+    /**
+     * <p>
+     * The resampling filters.
+     * </p>
+     */
+    enum Filter {
+        /** Averages the pixels each output pixel covers, or repeats the nearest pixel when enlarging. */
+        BOX(0.5) {
+            @Override
+            double weight(double x) {
+                return x >= -0.5 && x < 0.5 ? 1 : 0;
+            }
+        },
+        /** Interpolates linearly between the two nearest pixels. */
+        BILINEAR(1) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                return x < 1 ? 1 - x : 0;
+            }
+        },
+        /** Interpolates with a Catmull-Rom cubic through the four nearest pixels. */
+        BICUBIC(2) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1) {
+                    return (1.5 * x - 2.5) * x * x + 1;
+                } else if (x < 2) {
+                    return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+                }
+                return 0;
+            }
+        },
+        /** Interpolates with a windowed sinc over the six nearest pixels; the sharpest. */
+        LANCZOS3(3) {
+            @Override
+            double weight(double x) {
+                if (x == 0) {
+                    return 1;
+                } else if (Math.abs(x) >= 3) {
+                    return 0;
+                }
+                double px = Math.PI * x;
+                return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+            }
+        };
+
+        /** How far from its centre, in pixels, the filter is non-zero. */
+        final double radius;
+
+        Filter(double radius) {
+            this.radius = radius;
+        }
+
+        /**
+         * <p>
+         * Get the filter's weight at a distance from its centre.
+         * </p>
+         *
+         * @param x The distance, in pixels.
+         * @return The weight.
+         */
+        abstract double weight(double x);
+    }
+
+    private Resampler() {
+    }
+
+    /**
+     * <p>
+     * Resize an image.
+     * </p>
+     *
+     * @param input  The image to resize.
+     * @param width  The width of the resized image.
+     * @param height The height of the resized image.
+     * @param filter The resampling filter.
+     * @return A new ARGB image of the given size.
+     * @throws IllegalArgumentException If the width or height is not positive.
+     */
+    static BufferedImage resize(BufferedImage input, int width, int height, Filter filter) {
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        ImagePixels source = ImagePixels.of(input);
+        int[] data = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+        Weights columns = new Weights(source.width, width, filter);
+        Weights rows = new Weights(source.height, height, filter);
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(height);
+        TileScheduler.forEach(height, (start, end) -> {
+            new Band(source, columns, rows).fill(data, start, end, progress);
+        });
+        return output;
+    }
+
+    /**
+     * <p>
+     * The input pixels that contribute to each output pixel along one axis, and
+     * their weights.
+     * </p>
+     */
+    private static final class Weights {
+
+        /** The most input pixels that contribute to any output pixel. */
+        final int taps;
+
+        /** The first input pixel that contributes to each output pixel. */
+        final int[] first;
+
+        /** The weights of the contributing input pixels, {@link taps} per output pixel. */
+        final float[] weights;
+
+        Weights(int in, int out, Filter filter) {
+            double scale = (double) in / out;
+            // when shrinking, the filter is stretched over the input pixels each output pixel covers
+            double stretch = Math.max(1, scale);
+            double support = filter.radius * stretch;
+            taps = Math.min(in, (int) Math.ceil(2 * support) + 2);
+            first = new int[out];
+            weights = new float[out * taps];
+
+            double[] raw = new double[taps];
+            for (int i = 0; i < out; i++) {
+                // the centre of the output pixel, in input pixels
+                double centre = (i + 0.5) * scale;
+                int left = Math.max(0, (int) Math.floor(centre - support));
+                int right = Math.min(in - 1, (int) Math.ceil(centre + support));
+                right = Math.min(right, left + taps - 1);
+                left = Math.max(0, Math.min(left, right - taps + 1));
+
+                double total = 0;
+                for (int j = left; j <= right; j++) {
+                    raw[j - left] = filter.weight((j + 0.5 - centre) / stretch);
+                    total += raw[j - left];
+                }
+                first[i] = left;
+                if (total == 0) {
+                    // only possible at the very edge; use the nearest pixel
+                    int nearest = Math.min(in - 1, Math.max(0, (int) centre));
+                    first[i] = Math.max(0, Math.min(nearest, in - taps));
+                    weights[i * taps + nearest - first[i]] = 1;
+                    continue;
+                }
+                for (int j = left; j <= right; j++) {
+                    weights[i * taps + j - left] = (float) (raw[j - left] / total);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Fills a band of output rows, keeping a ring of the horizontally resampled
+     * input rows the current output row needs.
+     * </p>
+     */
+    private static final class Band {
+
+        private final ImagePixels source;
+        private final Weights columns;
+        private final Weights rows;
+        private final int width;
+
+        /** Horizontally resampled input rows, as premultiplied ARGB floats, by input row modulo the ring size. */
+        private final float[][] ring;
+
+        /** The input row held in each slot of the ring, or -1. */
+        private final int[] held;
+
+        /** One input row, as premultiplied ARGB floats. */
+        private final float[] unpacked;
+
+        /** The output row being accumulated, as premultiplied ARGB floats. */
+        private final float[] sum;
+
+        Band(ImagePixels source, Weights columns, Weights rows) {
+            this.source = source;
+            this.columns = columns;
+            this.rows = rows;
+            this.width = columns.first.length;
+            this.ring = new float[rows.taps][width * 4];
+            this.held = new int[rows.taps];
+            Arrays.fill(held, -1);
+            this.unpacked = new float[source.width * 4];
+            this.sum = new float[width * 4];
+        }
+
+        /**
+         * <p>
+         * Fill the output rows from {@code start} to {@code end}.
+         * </p>
+         *
+         * @param data     The output image's pixels.
+         * @param start    The first output row.
+         * @param end      One past the last output row.
+         * @param progress The progress of the operation, advanced once per row.
+         */
+        void fill(int[] data, int start, int end, OperationProgress progress) {
+            int taps = rows.taps;
+            for (int y = start; y < end; y++) {
+                Arrays.fill(sum, 0);
+                int first = rows.first[y];
+                for (int k = 0; k < taps; k++) {
+                    float w = rows.weights[y * taps + k];
+                    if (w == 0) {
+                        continue;
+                    }
+                    float[] row = resampled(first + k);
+                    for (int i = 0; i < sum.length; i++) {
+                        sum[i] += w * row[i];
+                    }
+                }
+
+                int out = y * width;
+                for (int x = 0; x < width; x++) {
+                    float a = sum[x * 4];
+                    int alpha = clamp(a);
+                    int argb = alpha << 24;
+                    if (alpha > 0) {
+                        float unpremultiply = 255 / a;
+                        argb |= clamp(sum[x * 4 + 1] * unpremultiply) << 16
+                                | clamp(sum[x * 4 + 2] * unpremultiply) << 8
+                                | clamp(sum[x * 4 + 3] * unpremultiply);
+                    }
+                    data[out + x] = argb;
+                }
+                progress.advance(1);
+            }
+        }
+
+        /**
+         * <p>
+         * Get an input row resampled to the output width, resampling it if it is
+         * not already in the ring.
+         * </p>
+         *
+         * @param y The input row.
+         * @return The resampled row, as premultiplied ARGB floats.
+         */
+        private float[] resampled(int y) {
+            int slot = y % ring.length;
+            float[] row = ring[slot];
+            if (held[slot] == y) {
+                return row;
+            }
+            held[slot] = y;
+
+            // premultiply the input row; images without alpha are opaque
+            int in = source.offset + y * source.stride;
+            for (int x = 0; x < source.width; x++) {
+                int argb = source.data[in + x];
+                float a = source.hasAlpha ? argb >>> 24 : 255;
+                float premultiply = a / 255;
+                unpacked[x * 4] = a;
+                unpacked[x * 4 + 1] = ((argb >> 16) & 0xFF) * premultiply;
+                unpacked[x * 4 + 2] = ((argb >> 8) & 0xFF) * premultiply;
+                unpacked[x * 4 + 3] = (argb & 0xFF) * premultiply;
+            }
+
+            int taps = columns.taps;
+            for (int x = 0; x < width; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int j = columns.first[x] * 4;
+                for (int k = 0; k < taps; k++, j += 4) {
+                    float w = columns.weights[x * taps + k];
+                    a += w * unpacked[j];
+                    r += w * unpacked[j + 1];
+                    g += w * unpacked[j + 2];
+                    b += w * unpacked[j + 3];
+                }
+                row[x * 4] = a;
+                row[x * 4 + 1] = r;
+                row[x * 4 + 2] = g;
+                row[x * 4 + 3] = b;
+            }
+            return row;
+        }
+
+        /**
+         * <p>
+         * Round a channel value to the nearest level from 0 to 255.
+         * </p>
+         *
+         * @param v The value, which filters with negative weights can push out of range.
+         * @return The level.
+         */
+        private static int clamp(float v) {
+            return v <= 0 ? 0 : v >= 255 ? 255 : (int) (v + 0.5f);
+        }
+    }
+}
@@ -2,19 +2,26 @@ package cosc202.andie;
 
 import javax.swing.JOptionPane;
 
-import java.awt.*;
 import java.awt.image.*;
 
 /**
- * Implements an operation to resize an image by a specified percentage
- * increase.
- * This operation resizes the image while preserving its aspect ratio.
- * If the percentage increase is greater than 100, the image is scaled smoothly;
- * otherwise, it is scaled using area averaging.
+ * Implements an operation to resize an image, either by a specified percentage
+ * increase or to a specified width and height.
+ * Resizing by a percentage preserves the aspect ratio.
+ * If the percentage increase is greater than 100, the image is enlarged with
+ * bicubic interpolation;
+ * otherwise, it is shrunk by averaging the pixels that make up each new pixel.
+ * Any of the {@link Resampler.Filter}s can also be chosen explicitly.
  * If an error occurs during resizing, a JOptionPane with a warning message is
  * displayed.
  * 
  * <p>
+ * The resizing itself is done by {@link Resampler}, which works out the weights
+ * of the pixels contributing to each new row and column once and then fills the
+ * rows in parallel.
+ * </p>
+ * 
+ * <p>
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA
  * 4.0</a>
  * </p>
@@ -24,11 +31,28 @@ import java.awt.image.*;
  */
 public class ResizeImage implements ImageOperation, java.io.Serializable {
 
+    private static final long serialVersionUID = 8103810903823940468L;
+
     /**
     * The percentage by which the image size should be increased.
     */
     private int sizePercentageIncrease;
 
+    /**
+     * The width to resize to, or 0 to resize by {@link sizePercentageIncrease}.
+     */
+    private int width;
+
+    /**
+     * The height to resize to, or 0 to resize by {@link sizePercentageIncrease}.
+     */
+    private int height;
+
+    /**
+     * The resampling filter, or null to choose one from the direction of the resize.
+     */
+    private Resampler.Filter filter;
+
     /**
      * Constructs a ResizeImage object with the specified size percentage increase.
      * 
@@ -39,11 +63,25 @@ public class ResizeImage implements ImageOperation, java.io.Serializable {
         this.sizePercentageIncrease = sizePercentageIncrease;
     }
 
+    /**
+     * Constructs a ResizeImage object that resizes to a specified width and height
+     * with a specified resampling filter.
+     * 
+     * @param width  The width of the resized image.
+     * @param height The height of the resized image.
+     * @param filter The resampling filter to use.
+     */
+    ResizeImage(int width, int height, Resampler.Filter filter) {
+        this.width = width;
+        this.height = height;
+        this.filter = filter;
+    }
+
     /**
      * Applies the resize operation to the input image.
-     * If the sizePercentageIncrease is greater than 100, the image is scaled
-     * smoothly;
-     * otherwise, it is scaled using area averaging.
+     * If no filter was chosen, images that get bigger are resampled with bicubic
+     * interpolation and images that get smaller with box (area averaging)
+     * filtering.
      * creates a new buffered image when it is scaled up or down. 
      * and implements some exception handling if cancel is pressed.
      * 
@@ -54,24 +92,21 @@ public class ResizeImage implements ImageOperation, java.io.Serializable {
         BufferedImage resizedBufferedImage = null;
 
         try {
-            Image resizedImage = null;
-            if (this.sizePercentageIncrease > 100) { //checks if user input is greater then 100
-                resizedImage = input.getScaledInstance(
-                        (int) (input.getWidth() * ((double) this.sizePercentageIncrease / 100)),
-                        (int) (input.getHeight() * ((double) this.sizePercentageIncrease / 100)), Image.SCALE_SMOOTH);
-                resizedBufferedImage = new BufferedImage(resizedImage.getWidth(null), resizedImage.getHeight(null), 2);
-            } else {
-                resizedImage = input.getScaledInstance(
-                        (int) (input.getWidth() * ((double) this.sizePercentageIncrease / 100)),
-                        (int) (input.getHeight() * ((double) this.sizePercentageIncrease / 100)),
-                        Image.SCALE_AREA_AVERAGING);
-                resizedBufferedImage = new BufferedImage(resizedImage.getWidth(null), resizedImage.getHeight(null), 2);
+            int newWidth = this.width;
+            int newHeight = this.height;
+            if (newWidth == 0 && newHeight == 0) {
+                newWidth = (int) (input.getWidth() * ((double) this.sizePercentageIncrease / 100));
+                newHeight = (int) (input.getHeight() * ((double) this.sizePercentageIncrease / 100));
             }
 
-            Graphics2D graphics = resizedBufferedImage.createGraphics();
-            graphics.drawImage(resizedImage, 0, 0, null);
-            graphics.dispose();
-        } catch (Exception ex) {
+            Resampler.Filter resampling = this.filter;
+            if (resampling == null) { //checks if the image gets bigger
+                resampling = (long) newWidth * newHeight > (long) input.getWidth() * input.getHeight()
+                        ? Resampler.Filter.BICUBIC
+                        : Resampler.Filter.BOX;
+            }
+            resizedBufferedImage = Resampler.resize(input, newWidth, newHeight, resampling);
+        } catch (IllegalArgumentException | NullPointerException ex) {
 
             // Show JOptionPane with warning icon and message
             JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_RESIZE_CANCEL"),
@@ -1,7 +1,6 @@
 package cosc202.andie;
 
 import java.awt.image.*;
-import java.awt.*;
 
 /**
  * <p>
@@ -9,10 +8,25 @@ import java.awt.*;
  * a saturation filter to a BufferedImage.
  * </p>
  *
+ * <p>
+ * Saturation is adjusted as in the HSB colour model: the hue and brightness of
+ * each pixel are kept, and its saturation is multiplied by the saturation level
+ * and clamped to 1. Keeping the brightness keeps the largest channel, and
+ * keeping the hue keeps the ratios of the distances of the other channels from
+ * it, so each channel is simply moved towards or away from the largest one:
+ * {@code c' = max - (max - c) * factor}, where the factor is the saturation
+ * level, capped so that the smallest channel doesn't go below 0. This is done
+ * in 16.16 fixed point on the packed pixels, with no conversion to HSB and no
+ * allocation per pixel, and agrees with {@link java.awt.Color#RGBtoHSB} and
+ * {@link java.awt.Color#HSBtoRGB} to within one level.
+ * </p>
+ *
  * @author Angus Tucker
  * @version 1.0
  */
-public class SaturationFilter implements ImageOperation, java.io.Serializable {
+public class SaturationFilter implements PixelOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 6896177313192503771L;
 
     private float saturationLevel;
 
@@ -35,24 +49,82 @@ public class SaturationFilter implements ImageOperation, java.io.Serializable {
 
     /**
      * Applies a saturation filter to the input image.
+     * The output has the same colour model as the input, and is opaque.
      * 
      * @param input The input BufferedImage to which the saturation filter will be
      *              applied.
      * @return The resulting BufferedImage after applying the saturation filter.
      */
     public BufferedImage apply(BufferedImage input) {
-        BufferedImage result = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
-
-        // Convert to HSB
-        for (int y = 0; y < input.getHeight(); y++) {
-            for (int x = 0; x < input.getWidth(); x++) {
-                int rgb = input.getRGB(x, y);
-                float[] hsb = Color.RGBtoHSB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, null);
-                hsb[1] = Math.min(1.0f, Math.max(0.0f, hsb[1] * saturationLevel)); // Adjusts the saturation
-                int newRgb = Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]);
-                result.setRGB(x, y, newRgb);
+        BufferedImage result = new BufferedImage(input.getColorModel(),
+                input.getRaster().createCompatibleWritableRaster(), input.isAlphaPremultiplied(), null);
+
+        ImagePixels source = ImagePixels.of(input);
+        ImagePixels destination = ImagePixels.forWriting(result);
+        int factor = factor();
+        int width = source.width;
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(source.height);
+
+        TileScheduler.forEach(source.height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int in = source.offset + y * source.stride;
+                int out = destination.offset + y * destination.stride;
+                for (int x = 0; x < width; x++) {
+                    destination.data[out + x] = destination.store(saturate(source.data[in + x], factor));
+                }
+                progress.advance(1);
             }
-        }
+        });
+        destination.commit();
         return result;
     }
+
+    /**
+     * Applies the saturation filter to one pixel. The result is opaque.
+     * 
+     * @param rgb The pixel, as packed ARGB.
+     * @return The resulting pixel, as packed ARGB.
+     */
+    public int filterPixel(int rgb) {
+        return saturate(rgb, factor());
+    }
+
+    /**
+     * Gets the saturation level in 16.16 fixed point. Levels below 0 remove all
+     * saturation, as they are clamped to 0 in HSB.
+     * 
+     * @return The saturation level times 65536.
+     */
+    private int factor() {
+        return Math.round(Math.min(Math.max(saturationLevel, 0.0f), 256.0f) * 65536);
+    }
+
+    /**
+     * Adjusts the saturation of one pixel.
+     * 
+     * @param rgb    The pixel, as packed ARGB.
+     * @param factor The saturation level in 16.16 fixed point.
+     * @return The resulting pixel, as opaque packed ARGB.
+     */
+    private static int saturate(int rgb, int factor) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int range = max - Math.min(r, Math.min(g, b));
+        if (range == 0) {
+            // greys have no saturation to adjust
+            return 0xFF000000 | (rgb & 0xFFFFFF);
+        }
+        // saturation can't go above 1, which is where the smallest channel reaches 0
+        if ((long) factor * range > (long) max << 16) {
+            factor = (max << 16) / range;
+        }
+        r = ((max << 16) - (max - r) * factor + 0x8000) >> 16;
+        g = ((max << 16) - (max - g) * factor + 0x8000) >> 16;
+        b = ((max << 16) - (max - b) * factor + 0x8000) >> 16;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
 }
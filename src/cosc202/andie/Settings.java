@@ -71,6 +71,34 @@ public class Settings {
         }
     }
 
+    /**
+     * Retrieves a configuration property, falling back to a default if it has not
+     * been set.
+     *
+     * @param key          The key of the configuration property to retrieve.
+     * @param defaultValue The value to return if the property is not set.
+     * @return The value of the configuration property, or the default.
+     */
+    public static String getConfigProperty(String key, String defaultValue) {
+        return configProperties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Retrieves an integer configuration property, falling back to a default if
+     * it has not been set or is not a valid integer.
+     *
+     * @param key          The key of the configuration property to retrieve.
+     * @param defaultValue The value to return if the property is missing or invalid.
+     * @return The value of the configuration property, or the default.
+     */
+    public static int getIntConfigProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(configProperties.getProperty(key, Integer.toString(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
 /**
  * Loads the language properties based on the current language setting.
  * If the language file does not exist, it logs an error.
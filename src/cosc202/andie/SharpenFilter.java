@@ -11,7 +11,9 @@ import java.awt.image.*;
  * @author Angus Tucker
  * @version 1.0
  */
-public class SharpenFilter implements ImageOperation, java.io.Serializable {
+public class SharpenFilter implements NeighbourhoodOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = -3846747634817406169L;
 
     /**
      * Constructs a SharpenFilter object.
@@ -48,4 +50,13 @@ public class SharpenFilter implements ImageOperation, java.io.Serializable {
 
         return result;
     }
+
+    /**
+     * Gets how far the sharpening kernel reaches from each pixel.
+     *
+     * @return 1, since the kernel is 3x3.
+     */
+    public int getRadius() {
+        return 1;
+    }
 }
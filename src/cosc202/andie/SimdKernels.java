@@ -0,0 +1,112 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * The innermost pixel loops of the convolutions and colour operations, done
+ * several pixels at a time with SIMD instructions where the JVM supports it.
+ * </p>
+ *
+ * <p>
+ * ANDIE is built for Java 11, and every loop has a plain Java version that
+ * works anywhere. On Java 17 and later, the incubating Vector API
+ * ({@code jdk.incubator.vector}) can do the same loops 8 or 16 pixels at a
+ * time. Its implementation, {@code VectorKernels}, is compiled separately for
+ * Java 17 (from {@code src/java17}) and loaded by name, so on older JVMs, or
+ * when the JVM wasn't started with {@code --add-modules jdk.incubator.vector},
+ * it simply isn't found and {@link INSTANCE} is null. Callers then use their
+ * own scalar loops, so nothing has to be configured either way.
+ * </p>
+ *
+ * <p>
+ * Each method gives exactly the same result as the scalar loop it replaces:
+ * the float sums are added up tap by tap in the same order, and rounded and
+ * clamped the same way.
+ * </p>
+ *
+ * @version 1.0
+ * @see Convo2
+ * @see ColourLut
+ */
+interface SimdKernels {
+
+    /** The vectorised kernels, or null if the Vector API isn't available. */
+    SimdKernels INSTANCE = load();
+
+    /**
+     * <p>
+     * Load the vectorised kernels, if this JVM can run them.
+     * </p>
+     *
+     * @return The kernels, or null if they aren't available.
+     */
+    static SimdKernels load() {
+        try {
+            return (SimdKernels) Class.forName("cosc202.andie.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // not built, not Java 17, or the module wasn't added: use the scalar loops
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Convolve part of a row with float weights, where every tap is inside the
+     * image.
+     * </p>
+     *
+     * @param src       The pixels of the input image.
+     * @param taps      The index in src of each tap for the pixel at x = 0.
+     * @param weights   The weight of each tap.
+     * @param dst       The pixels of the output image.
+     * @param out       The index in dst of the output row's pixel at x = 0.
+     * @param from      The first column to fill.
+     * @param to        One past the last column to fill.
+     * @param middle    The offset added to each sum before it is clamped and truncated.
+     * @param alpha     Whether to convolve alpha, rather than making the output opaque.
+     * @param storeMask The mask each output pixel is stored through.
+     */
+    void convolve(int[] src, int[] taps, float[] weights, int[] dst, int out, int from, int to, float middle,
+            boolean alpha, int storeMask);
+
+    /**
+     * <p>
+     * Convolve part of a row with scaled integer weights, where every tap is
+     * inside the image.
+     * </p>
+     *
+     * @param src             The pixels of the input image.
+     * @param positiveTaps    The index in src of each positive tap for the pixel at x = 0.
+     * @param positiveWeights The scaled weight of each positive tap.
+     * @param negativeTaps    The index in src of each negative tap for the pixel at x = 0.
+     * @param negativeWeights The scaled magnitude of each negative tap's weight.
+     * @param dst             The pixels of the output image.
+     * @param out             The index in dst of the output row's pixel at x = 0.
+     * @param from            The first column to fill.
+     * @param to              One past the last column to fill.
+     * @param middle          The offset added to each sum, scaled like the weights.
+     * @param shift           The power of two the weights are scaled by.
+     * @param alpha           Whether to convolve alpha, rather than making the output opaque.
+     * @param storeMask       The mask each output pixel is stored through.
+     */
+    void convolveInteger(int[] src, int[] positiveTaps, int[] positiveWeights, int[] negativeTaps,
+            int[] negativeWeights, int[] dst, int out, int from, int to, int middle, int shift, boolean alpha,
+            int storeMask);
+
+    /**
+     * <p>
+     * Look up a run of pixels in the tables of a {@link ColourLut}.
+     * </p>
+     *
+     * @param src       The input pixels.
+     * @param in        The index in src of the first pixel.
+     * @param dst       The output pixels, which may be src.
+     * @param out       The index in dst of the first pixel.
+     * @param count     The number of pixels.
+     * @param opaque    The alpha to add to input pixels without alpha, or 0.
+     * @param tables    The table for each output channel, with its entries shifted into place.
+     * @param shifts    How far each output channel's source channel is shifted in a packed pixel.
+     * @param storeMask The mask each output pixel is stored through.
+     */
+    void lookup(int[] src, int in, int[] dst, int out, int count, int opaque, int[][] tables, int[] shifts,
+            int storeMask);
+}
@@ -0,0 +1,412 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Intermediate results kept at chosen positions in an {@link EditableImage}'s
+ * operation history.
+ * </p>
+ *
+ * <p>
+ * A snapshot at position {@code n} is the image obtained by applying the first
+ * {@code n} operations to the original. When the history is replayed (for
+ * example after an undo) the replay can start from the nearest snapshot at or
+ * before the target position rather than from the original image.
+ * </p>
+ *
+ * <p>
+ * Which positions are kept is decided by the snapshot interval: a snapshot is
+ * taken every {@code interval} operations, and an interval of 0 disables
+ * regular snapshots. The result of any operation that took longer than the
+ * minimum cost to compute is also kept, since replaying it is what makes undo
+ * slow. The defaults are read from the {@code snapshot_interval} and
+ * {@code snapshot_min_cost_ms} configuration properties.
+ * </p>
+ *
+ * <p>
+ * The cache records how long each operation in the history took and holds its
+ * snapshots within a memory budget (the {@code snapshot_budget_mb}
+ * configuration property, by default a quarter of the maximum heap). When the
+ * budget is exceeded, snapshots are evicted in order of how little they save:
+ * a snapshot at position {@code s} saves every position from {@code s} up to
+ * the next snapshot the cost of replaying the operations since the previous
+ * one. Dropping the snapshot after a cheap flip therefore costs almost
+ * nothing, while the one after a large median filter is kept.
+ * </p>
+ *
+ * <p>
+ * Other memory kept to speed up editing, such as {@link SummedAreaTable}s,
+ * can be {@link reserve}d against the same budget, so that everything kept
+ * stays within {@code snapshot_budget_mb} together.
+ * </p>
+ *
+ * <p>
+ * Snapshots are always stored and handed out as copies, since many
+ * {@link ImageOperation}s modify their input in place.
+ * </p>
+ *
+ * @version 1.0
+ */
+class SnapshotCache {
+
+    /** The interval used when none has been configured. */
+    static final int DEFAULT_INTERVAL = 5;
+
+    /** The minimum cost, in milliseconds, used when none has been configured. */
+    static final int DEFAULT_MIN_COST_MS = 100;
+
+    /** The snapshots currently held, keyed by history position. */
+    private final TreeMap<Integer, BufferedImage> snapshots;
+
+    /**
+     * The time in nanoseconds each operation took; element {@code i} is the cost
+     * of reaching position {@code i + 1} from position {@code i}.
+     */
+    private final ArrayList<Long> costs;
+
+    /** How many operations apart snapshots are taken, or 0 for none. */
+    private int interval;
+
+    /** Operations taking at least this many nanoseconds are always snapshotted. */
+    private long minCost;
+
+    /** The most memory, in bytes, the snapshots may use. */
+    private long budget;
+
+    /** The memory, in bytes, the snapshots currently use. */
+    private long usedBytes;
+
+    /** The memory, in bytes, kept outside the cache that counts against its budget. */
+    private long reservedBytes;
+
+    /**
+     * <p>
+     * Create an empty snapshot cache using the configured interval, minimum cost
+     * and budget.
+     * </p>
+     */
+    SnapshotCache() {
+        this(Settings.getIntConfigProperty("snapshot_interval", DEFAULT_INTERVAL));
+        setMinCost(Settings.getIntConfigProperty("snapshot_min_cost_ms", DEFAULT_MIN_COST_MS));
+        int budgetMb = Settings.getIntConfigProperty("snapshot_budget_mb", -1);
+        if (budgetMb >= 0) {
+            setBudget(budgetMb * 1024L * 1024L);
+        }
+    }
+
+    /**
+     * <p>
+     * Create an empty snapshot cache with the given interval.
+     * </p>
+     *
+     * @param interval How many operations apart snapshots are taken, or 0 for none.
+     */
+    SnapshotCache(int interval) {
+        snapshots = new TreeMap<Integer, BufferedImage>();
+        costs = new ArrayList<Long>();
+        setInterval(interval);
+        setMinCost(DEFAULT_MIN_COST_MS);
+        setBudget(Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * <p>
+     * Get the snapshot interval.
+     * </p>
+     *
+     * @return How many operations apart snapshots are taken, or 0 for none.
+     */
+    int getInterval() {
+        return interval;
+    }
+
+    /**
+     * <p>
+     * Set the snapshot interval.
+     * </p>
+     *
+     * <p>
+     * Snapshots that are already held are kept; the new interval only affects
+     * which positions are recorded from now on.
+     * </p>
+     *
+     * @param interval How many operations apart snapshots are taken, or 0 for none.
+     */
+    void setInterval(int interval) {
+        this.interval = Math.max(0, interval);
+    }
+
+    /**
+     * <p>
+     * Set the minimum cost above which an operation's result is always
+     * snapshotted.
+     * </p>
+     *
+     * @param millis The minimum cost in milliseconds.
+     */
+    void setMinCost(int millis) {
+        this.minCost = Math.max(0, millis) * 1000000L;
+    }
+
+    /**
+     * <p>
+     * Get the memory budget for snapshots.
+     * </p>
+     *
+     * @return The most memory, in bytes, the snapshots may use.
+     */
+    long getBudget() {
+        return budget;
+    }
+
+    /**
+     * <p>
+     * Set the memory budget for snapshots, evicting snapshots if they no longer
+     * fit.
+     * </p>
+     *
+     * @param bytes The most memory, in bytes, the snapshots may use.
+     */
+    void setBudget(long bytes) {
+        this.budget = Math.max(0, bytes);
+        evict();
+    }
+
+    /**
+     * <p>
+     * Get the memory the snapshots currently use.
+     * </p>
+     *
+     * @return The memory used, in bytes.
+     */
+    long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * <p>
+     * Count memory kept outside the cache against its budget, evicting snapshots
+     * to make room for it.
+     * </p>
+     *
+     * <p>
+     * This replaces any earlier reservation. Memory that would not fit in the
+     * budget on its own is not reserved, and shouldn't be kept.
+     * </p>
+     *
+     * @param bytes The memory to reserve, in bytes, or 0 to release the reservation.
+     * @return True if the memory was reserved.
+     */
+    boolean reserve(long bytes) {
+        boolean fits = bytes <= budget;
+        reservedBytes = fits ? bytes : 0;
+        evict();
+        return fits;
+    }
+
+    /**
+     * <p>
+     * Record how long the operation reaching a history position took.
+     * </p>
+     *
+     * @param position The number of operations applied, including the measured one.
+     * @param nanos    How long the operation took, in nanoseconds.
+     */
+    void record(int position, long nanos) {
+        while (costs.size() < position - 1) {
+            costs.add(0L);
+        }
+        if (costs.size() >= position) {
+            costs.set(position - 1, nanos);
+        } else {
+            costs.add(nanos);
+        }
+    }
+
+    /**
+     * <p>
+     * Check whether a snapshot should be taken at a history position.
+     * </p>
+     *
+     * <p>
+     * A position is wanted if it falls on the snapshot interval, or if the
+     * operation that reached it was at least as expensive as the minimum cost.
+     * The cost must already have been {@link record}ed.
+     * </p>
+     *
+     * @param position The number of operations applied.
+     * @return True if the position should be snapshotted and is not already.
+     */
+    boolean wants(int position) {
+        if (position <= 0 || snapshots.containsKey(position)) {
+            return false;
+        }
+        boolean onInterval = interval > 0 && position % interval == 0;
+        boolean expensive = position <= costs.size() && costs.get(position - 1) >= minCost;
+        return onInterval || expensive;
+    }
+
+    /**
+     * <p>
+     * Record a snapshot at a history position.
+     * </p>
+     *
+     * <p>
+     * Snapshots that would not fit in what the reservation leaves of the budget
+     * on their own are not stored.
+     * Otherwise the snapshot is stored and the least useful snapshots are evicted
+     * until the cache fits in its budget again (which may evict the new snapshot
+     * itself).
+     * </p>
+     *
+     * @param position The number of operations applied to produce the image.
+     * @param image    The image at that position. A copy is stored.
+     */
+    void put(int position, BufferedImage image) {
+        long bytes = sizeOf(image);
+        if (bytes > budget - reservedBytes) {
+            return;
+        }
+        BufferedImage old = snapshots.put(position, EditableImage.deepCopy(image));
+        if (old != null) {
+            usedBytes -= sizeOf(old);
+        }
+        usedBytes += bytes;
+        evict();
+    }
+
+    /**
+     * <p>
+     * Check whether a snapshot is held at exactly the given position.
+     * </p>
+     *
+     * @param position The history position.
+     * @return True if a snapshot is held at the position.
+     */
+    boolean contains(int position) {
+        return snapshots.containsKey(position);
+    }
+
+    /**
+     * <p>
+     * Find the nearest snapshot at or before a history position.
+     * </p>
+     *
+     * @param position The history position to be reached.
+     * @return The position and a copy of the snapshot image, or null if there is
+     *         no usable snapshot.
+     */
+    Map.Entry<Integer, BufferedImage> nearest(int position) {
+        Map.Entry<Integer, BufferedImage> entry = snapshots.floorEntry(position);
+        if (entry == null) {
+            return null;
+        }
+        return Map.entry(entry.getKey(), EditableImage.deepCopy(entry.getValue()));
+    }
+
+    /**
+     * <p>
+     * Discard all snapshots at or after a history position.
+     * </p>
+     *
+     * <p>
+     * This is called when the operation at {@code position - 1} changes, which
+     * makes every later snapshot stale.
+     * </p>
+     *
+     * @param position The first position to discard.
+     */
+    void invalidateFrom(int position) {
+        Map<Integer, BufferedImage> stale = snapshots.tailMap(position, true);
+        for (BufferedImage image : stale.values()) {
+            usedBytes -= sizeOf(image);
+        }
+        stale.clear();
+        while (costs.size() > Math.max(0, position - 1)) {
+            costs.remove(costs.size() - 1);
+        }
+    }
+
+    /**
+     * <p>
+     * Discard all snapshots and recorded costs.
+     * </p>
+     */
+    void clear() {
+        snapshots.clear();
+        costs.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * <p>
+     * Evict snapshots until the cache fits in its budget.
+     * </p>
+     *
+     * <p>
+     * Each round evicts the snapshot whose loss adds the least expected replay
+     * time per byte freed, assuming every recorded history position is equally
+     * likely to be the target of an undo or redo.
+     * </p>
+     */
+    private void evict() {
+        while (usedBytes + reservedBytes > budget && !snapshots.isEmpty()) {
+            Integer victim = null;
+            double victimScore = Double.MAX_VALUE;
+            for (Map.Entry<Integer, BufferedImage> entry : snapshots.entrySet()) {
+                double score = (double) replayPenalty(entry.getKey()) / sizeOf(entry.getValue());
+                if (score < victimScore) {
+                    victimScore = score;
+                    victim = entry.getKey();
+                }
+            }
+            usedBytes -= sizeOf(snapshots.remove(victim));
+        }
+    }
+
+    /**
+     * <p>
+     * Estimate the total replay time that would be added by evicting a snapshot.
+     * </p>
+     *
+     * <p>
+     * Without the snapshot at {@code s}, every position from {@code s} up to the
+     * next snapshot must replay the operations between the previous snapshot (or
+     * the original) and {@code s}.
+     * </p>
+     *
+     * @param position The position of the snapshot.
+     * @return The added replay time, in nanoseconds, summed over the positions served.
+     */
+    private long replayPenalty(int position) {
+        Integer previous = snapshots.lowerKey(position);
+        Integer next = snapshots.higherKey(position);
+        int from = previous == null ? 0 : previous;
+        int until = next == null ? Math.max(costs.size(), position) + 1 : next;
+
+        long replay = 0;
+        for (int i = from; i < position && i < costs.size(); i++) {
+            replay += costs.get(i);
+        }
+        return replay * (until - position);
+    }
+
+    /**
+     * <p>
+     * Estimate the memory an image's pixel data uses.
+     * </p>
+     *
+     * @param image The image to measure.
+     * @return The size of the image's data buffer in bytes.
+     */
+    static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long elementBytes = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return Math.max(1, (long) buffer.getSize() * buffer.getNumBanks() * elementBytes);
+    }
+}
@@ -14,7 +14,9 @@ import java.awt.image.*;
  * @author Hadrien Tang
  */
 
-public class SobelFilter implements ImageOperation, java.io.Serializable {
+public class SobelFilter implements NeighbourhoodOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = 7837675519691050756L;
     /**
     * The kernel for horizontal Sobel filtering.
     */
@@ -72,4 +74,13 @@ public class SobelFilter implements ImageOperation, java.io.Serializable {
             return input;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets how far the Sobel kernels reach from each pixel.
+     *
+     * @return 1, since both kernels are 3x3.
+     */
+    public int getRadius() {
+        return 1;
+    }
+}
@@ -0,0 +1,256 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Per-channel summed-area tables (integral images) of an image, which give the
+ * sum of any rectangle of it in constant time.
+ * </p>
+ *
+ * <p>
+ * The table for each channel holds, at (x, y), the sum of every pixel above
+ * and to the left of (x, y). The sum of a rectangle is then its bottom right
+ * entry, less the entries at its other corners. Building the tables takes one
+ * pass over the image, after which averaging any number of blocks of any size
+ * costs four lookups per channel each.
+ * </p>
+ *
+ * <p>
+ * The entries are ints and are allowed to overflow: the difference of four
+ * entries wraps around to the right answer as long as the answer itself fits
+ * in 32 bits, which it does for any rectangle of up to {@link MAX_AREA}
+ * pixels. Larger rectangles are summed in strips. That keeps the tables to 4
+ * bytes per channel per pixel, and the alpha table is left out for images
+ * without alpha.
+ * </p>
+ *
+ * <p>
+ * Building the tables is the expensive part, so {@link EditableImage} keeps the
+ * tables for its current image, as long as they fit in the snapshot budget
+ * alongside its snapshots, and offers them to operations applied to it
+ * through {@link of}, which otherwise builds them.
+ * </p>
+ *
+ * @version 1.0
+ * @see BlockAveragingFilter
+ */
+final class SummedAreaTable {
+
+    /** The largest rectangle whose channel sums always fit in 32 bits. */
+    static final int MAX_AREA = (int) (0xFFFFFFFFL / 255);
+
+    /** The tables offered for the image each thread's operation is applied to. */
+    private static final ThreadLocal<Offer> OFFERED = new ThreadLocal<Offer>();
+
+    /** The width of the image. */
+    final int width;
+
+    /** The height of the image. */
+    final int height;
+
+    /** The tables for alpha (or null if the image is opaque), red, green and blue, (width + 1) by (height + 1). */
+    private final int[][] tables;
+
+    private SummedAreaTable(int width, int height, int[][] tables) {
+        this.width = width;
+        this.height = height;
+        this.tables = tables;
+    }
+
+    /**
+     * <p>
+     * Build the tables for an image.
+     * </p>
+     *
+     * <p>
+     * The rows are summed across in parallel bands, and then the columns are
+     * summed down in parallel strips.
+     * </p>
+     *
+     * @param image The image.
+     * @return The tables.
+     */
+    static SummedAreaTable build(BufferedImage image) {
+        ImagePixels source = ImagePixels.of(image);
+        int width = source.width;
+        int height = source.height;
+        int stride = width + 1;
+        int opaque = source.hasAlpha ? 0 : 0xFF000000;
+        int[][] tables = new int[4][];
+        for (int c = source.hasAlpha ? 0 : 1; c < 4; c++) {
+            tables[c] = new int[stride * (height + 1)];
+        }
+
+        OperationProgress progress = OperationProgress.current();
+        progress.begin(2L * height);
+        TileScheduler.forEach(height, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int in = source.offset + y * source.stride;
+                int out = (y + 1) * stride + 1;
+                for (int c = 0; c < 4; c++) {
+                    int[] table = tables[c];
+                    if (table == null) {
+                        continue;
+                    }
+                    int shift = 24 - 8 * c;
+                    int sum = 0;
+                    for (int x = 0; x < width; x++) {
+                        sum += ((source.data[in + x] | opaque) >>> shift) & 0xFF;
+                        table[out + x] = sum;
+                    }
+                }
+                progress.advance(1);
+            }
+        });
+        TileScheduler.forEach(stride, (start, end) -> {
+            for (int y = 1; y <= height; y++) {
+                for (int[] table : tables) {
+                    if (table == null) {
+                        continue;
+                    }
+                    int above = (y - 1) * stride;
+                    int row = y * stride;
+                    for (int x = start; x < end; x++) {
+                        table[row + x] += table[above + x];
+                    }
+                }
+            }
+            progress.advance((long) height * (end - start) / stride);
+        });
+        return new SummedAreaTable(width, height, tables);
+    }
+
+    /**
+     * <p>
+     * Get the memory the tables take up.
+     * </p>
+     *
+     * @return The size of the tables, in bytes.
+     */
+    long getBytes() {
+        long bytes = 0;
+        for (int[] table : tables) {
+            if (table != null) {
+                bytes += 4L * table.length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Get the tables for an image an operation is being applied to.
+     * </p>
+     *
+     * <p>
+     * If tables have been offered for this very image on this thread, they
+     * are used, otherwise they are built.
+     * </p>
+     *
+     * @param image The image.
+     * @return The tables.
+     */
+    static SummedAreaTable of(BufferedImage image) {
+        Offer offer = OFFERED.get();
+        if (offer != null && offer.image == image) {
+            return offer.tables.get();
+        }
+        return build(image);
+    }
+
+    /**
+     * <p>
+     * Offer tables for an image to the operation about to be applied to it on
+     * this thread.
+     * </p>
+     *
+     * <p>
+     * The offer must be withdrawn as soon as the image may have been changed,
+     * which is after the first operation (or run of fused operations) applied
+     * to it.
+     * </p>
+     *
+     * @param image  The image.
+     * @param tables Gets the tables for the image, only called if an operation asks for them.
+     */
+    static void offer(BufferedImage image, Supplier<SummedAreaTable> tables) {
+        OFFERED.set(new Offer(image, tables));
+    }
+
+    /**
+     * <p>
+     * Withdraw any tables offered on this thread.
+     * </p>
+     */
+    static void withdraw() {
+        OFFERED.remove();
+    }
+
+    /**
+     * <p>
+     * Sum one channel over a rectangle.
+     * </p>
+     *
+     * @param channel The channel: {@link ColourLut#ALPHA}, {@link ColourLut#RED},
+     *                {@link ColourLut#GREEN} or {@link ColourLut#BLUE}.
+     * @param x       The left of the rectangle.
+     * @param y       The top of the rectangle.
+     * @param w       The width of the rectangle.
+     * @param h       The height of the rectangle.
+     * @return The sum of the channel's values over the rectangle, which must be inside the image.
+     */
+    long sum(int channel, int x, int y, int w, int h) {
+        int[] table = tables[channel];
+        if (table == null) {
+            return 255L * w * h;
+        }
+        // strips short enough that each strip's sum fits in 32 bits
+        int rows = Math.max(1, MAX_AREA / Math.max(1, w));
+        long total = 0;
+        for (int top = y; top < y + h; top += rows) {
+            int bottom = Math.min(top + rows, y + h);
+            int upper = top * (width + 1);
+            int lower = bottom * (width + 1);
+            int sum = table[lower + x + w] - table[lower + x] - table[upper + x + w] + table[upper + x];
+            total += sum & 0xFFFFFFFFL;
+        }
+        return total;
+    }
+
+    /**
+     * <p>
+     * Average the pixels of a rectangle.
+     * </p>
+     *
+     * @param x The left of the rectangle.
+     * @param y The top of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     * @return The mean of each channel over the rectangle, rounded down, as packed ARGB.
+     */
+    int mean(int x, int y, int w, int h) {
+        long area = (long) w * h;
+        int argb = 0;
+        for (int c = 0; c < 4; c++) {
+            argb = (argb << 8) | (int) (sum(c, x, y, w, h) / area);
+        }
+        return argb;
+    }
+
+    /**
+     * <p>
+     * Tables offered for an image.
+     * </p>
+     */
+    private static final class Offer {
+        final BufferedImage image;
+        final Supplier<SummedAreaTable> tables;
+
+        Offer(BufferedImage image, Supplier<SummedAreaTable> tables) {
+            this.image = image;
+            this.tables = tables;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package cosc202.andie;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * Runs the rows (or other units) of an image operation in parallel.
+ * </p>
+ *
+ * <p>
+ * Neighbourhood filters compute each output row from the unchanged input image,
+ * so the rows can be computed in any order and on any thread. The scheduler
+ * splits a range of rows into bands and fills the bands in parallel on a shared
+ * {@link ForkJoinPool}, which balances the work by letting idle threads steal
+ * bands from busy ones:
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TileScheduler.forEach(height, (start, end) -> {
+ *     for (int y = start; y < end; y++) {
+ *         ... // fill row y, reading only from the input
+ *     }
+ * });
+ * }
+ * </pre>
+ *
+ * <p>
+ * The number of threads used is read from the {@code parallelism}
+ * configuration property, and defaults to the number of available processors.
+ * A parallelism of 1 runs everything on the calling thread. The calling
+ * thread's {@link OperationProgress} is installed on the threads running each
+ * band, so progress reports and cancellation work as they do on one thread.
+ * </p>
+ *
+ * @version 1.0
+ */
+final class TileScheduler {
+
+    /** How many bands each thread gets on average, so that uneven bands balance out. */
+    private static final int BANDS_PER_THREAD = 4;
+
+    /** The number of threads to use. */
+    private static int parallelism = Math.max(1,
+            Settings.getIntConfigProperty("parallelism", Runtime.getRuntime().availableProcessors()));
+
+    /** The pool bands run on, created when first needed. */
+    private static ForkJoinPool pool;
+
+    private TileScheduler() {
+    }
+
+    /**
+     * <p>
+     * A band of rows (or other units) to fill.
+     * </p>
+     */
+    interface Band {
+        /**
+         * <p>
+         * Fill the units from {@code start} (inclusive) to {@code end} (exclusive).
+         * </p>
+         *
+         * @param start The first unit of the band.
+         * @param end   One past the last unit of the band.
+         */
+        void fill(int start, int end);
+    }
+
+    /**
+     * <p>
+     * Get the number of threads used.
+     * </p>
+     *
+     * @return The number of threads bands are run on.
+     */
+    static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * <p>
+     * Set the number of threads used.
+     * </p>
+     *
+     * @param threads The number of threads to run bands on. 1 runs every band on
+     *                the calling thread.
+     */
+    static synchronized void setParallelism(int threads) {
+        threads = Math.max(1, threads);
+        if (threads != parallelism && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        parallelism = threads;
+    }
+
+    /**
+     * <p>
+     * Fill the units from 0 to {@code count}, in bands, in parallel.
+     * </p>
+     *
+     * <p>
+     * Returns once every band has been filled. If any band throws, the exception
+     * is rethrown on the calling thread.
+     * </p>
+     *
+     * @param count The number of units.
+     * @param band  Fills a band of units.
+     */
+    static void forEach(int count, Band band) {
+        ForkJoinPool workers;
+        synchronized (TileScheduler.class) {
+            if (parallelism > 1 && pool == null) {
+                pool = new ForkJoinPool(parallelism);
+            }
+            workers = parallelism > 1 ? pool : null;
+        }
+        if (workers == null || count <= 1) {
+            band.fill(0, count);
+            return;
+        }
+        int grain = Math.max(1, count / (workers.getParallelism() * BANDS_PER_THREAD));
+        workers.invoke(new BandTask(band, 0, count, grain, OperationProgress.current()));
+    }
+
+    /**
+     * <p>
+     * Fills a range of units, splitting it in half until it is no bigger than
+     * the grain.
+     * </p>
+     */
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Band band;
+        private final int start;
+        private final int end;
+        private final int grain;
+        private final OperationProgress progress;
+
+        BandTask(Band band, int start, int end, int grain, OperationProgress progress) {
+            this.band = band;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= grain) {
+                OperationProgress previous = OperationProgress.current();
+                OperationProgress.install(progress);
+                try {
+                    band.fill(start, end);
+                } finally {
+                    OperationProgress.install(previous);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new BandTask(band, start, middle, grain, progress),
+                    new BandTask(band, middle, end, grain, progress));
+        }
+    }
+}
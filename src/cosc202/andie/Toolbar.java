@@ -63,6 +63,46 @@ public class Toolbar extends JPanel {
       System.err.println("Error loading toolbar icons: " + e.getMessage());
       // In the case of an error, don't build the toolbar
     }
+
+    add(createProgressPanel(), BorderLayout.EAST);
+  }
+
+  /**
+   * <p>
+   * Create the panel showing the progress of operations running in the
+   * background, with a button to cancel them.
+   * </p>
+   * 
+   * <p>
+   * The panel is only visible while the target image is busy.
+   * </p>
+   * 
+   * @return The progress panel.
+   */
+  private JPanel createProgressPanel() {
+    JPanel panel = new JPanel();
+    JProgressBar progressBar = new JProgressBar(0, 100);
+    progressBar.setStringPainted(true);
+    JButton cancelButton = new JButton(Settings.getLanguageProperty("cancel"));
+    cancelButton.setToolTipText(Settings.getLanguageProperty("Operation_Cancel"));
+    panel.add(progressBar);
+    panel.add(cancelButton);
+    panel.setVisible(false);
+
+    ImagePanel target = ImageAction.getTarget();
+    if (target != null) {
+      EditableImage image = target.getImage();
+      cancelButton.addActionListener(e -> image.cancel());
+      image.addPropertyChangeListener(e -> {
+        if ("progress".equals(e.getPropertyName())) {
+          progressBar.setValue((Integer) e.getNewValue());
+        } else if ("busy".equals(e.getPropertyName())) {
+          progressBar.setValue(0);
+          panel.setVisible(image.isBusy());
+        }
+      });
+    }
+    return panel;
   }
 
   private class OpenAction extends AbstractAction {
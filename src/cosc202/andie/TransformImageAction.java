@@ -6,6 +6,7 @@ import java.awt.geom.*;
 import javax.swing.*;
 import java.util.ArrayList;
 import java.awt.Color;
+import java.awt.GridLayout;
 import java.awt.Polygon;
 import java.awt.Shape;
 
@@ -189,16 +190,61 @@ public class TransformImageAction {
 
         /**
          * Callback for when the resize action is triggered. This method is called
-         * whenever the ResizeAction is triggered. It resizes the image by calling the resize image class and passing in the user input.
+         * whenever the ResizeAction is triggered. It asks the user for the new width
+         * and height, which start at the current size and keep its aspect ratio
+         * unless the user unticks the box, and for the resampling filter, then
+         * resizes the image by calling the resize image class with them.
          * 
          * @param e The event triggering this callback.
          */
         public void actionPerformed(ActionEvent e) {
-            // Prompt user for size percentage increase
-            int sizePercentageIncrease = promptForSizePercentageIncrease();
+            if (!target.getImage().hasImage()) {
+                JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_NO_FILE"),
+                        Settings.getLanguageProperty("ERROR"), JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            int oldWidth = target.getImage().getCurrentImage().getWidth();
+            int oldHeight = target.getImage().getCurrentImage().getHeight();
+
+            // Spinners for the new size, starting at the current size
+            SpinnerNumberModel widthModel = new SpinnerNumberModel(oldWidth, 1, null, 1);
+            SpinnerNumberModel heightModel = new SpinnerNumberModel(oldHeight, 1, null, 1);
+            JCheckBox keepRatio = new JCheckBox(Settings.getLanguageProperty("RESIZE_KEEP_RATIO"), true);
+            linkSizes(widthModel, oldWidth, heightModel, oldHeight, keepRatio);
+
+            // The first choice leaves the filter to the resize image class
+            String[] filterNames = { Settings.getLanguageProperty("RESIZE_FILTER_AUTO"),
+                    Settings.getLanguageProperty("RESIZE_FILTER_BOX"),
+                    Settings.getLanguageProperty("RESIZE_FILTER_BILINEAR"),
+                    Settings.getLanguageProperty("RESIZE_FILTER_BICUBIC"),
+                    Settings.getLanguageProperty("RESIZE_FILTER_LANCZOS3") };
+            Resampler.Filter[] filters = { null, Resampler.Filter.BOX, Resampler.Filter.BILINEAR,
+                    Resampler.Filter.BICUBIC, Resampler.Filter.LANCZOS3 };
+            JComboBox<String> filterComboBox = new JComboBox<>(filterNames);
+
+            // Create a panel to hold the components
+            JPanel panel = new JPanel(new GridLayout(0, 2));
+            panel.add(new JLabel(Settings.getLanguageProperty("RESIZE_WIDTH")));
+            panel.add(new JSpinner(widthModel));
+            panel.add(new JLabel(Settings.getLanguageProperty("RESIZE_HEIGHT")));
+            panel.add(new JSpinner(heightModel));
+            panel.add(keepRatio);
+            panel.add(new JLabel());
+            panel.add(new JLabel(Settings.getLanguageProperty("RESIZE_FILTER")));
+            panel.add(filterComboBox);
+
+            int option = JOptionPane.showConfirmDialog(null, new Object[] {
+                    Settings.getLanguageProperty("RESIZE_DIALOG"), panel }, Settings.getLanguageProperty("RESIZE_HEADER"),
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+
+            // Check the return value from the dialog box.
+            if (option != JOptionPane.OK_OPTION) {
+                return;
+            }
 
             // Create a new ResizeImage operation
-            ResizeImage resizeImage = new ResizeImage(sizePercentageIncrease);
+            ResizeImage resizeImage = new ResizeImage(widthModel.getNumber().intValue(),
+                    heightModel.getNumber().intValue(), filters[filterComboBox.getSelectedIndex()]);
 
             // Apply the resizing operation on the target image
             target.getImage().apply(resizeImage);
@@ -210,54 +256,35 @@ public class TransformImageAction {
         }
 
         /**
-         * Method to prompt the user for the size percentage increase. Uses exception handling to ensure the user input is a valid positive integer.
+         * Makes changing either the width or the height change the other one to keep the
+         * image's aspect ratio, while the box to keep it is ticked.
          * 
-         * @return The size percentage increase entered by the user.
+         * @param widthModel  The width spinner's model.
+         * @param oldWidth    The current width of the image.
+         * @param heightModel The height spinner's model.
+         * @param oldHeight   The current height of the image.
+         * @param keepRatio   The box to keep the aspect ratio.
          */
-        private int promptForSizePercentageIncrease() {
-            // Display an input dialog to prompt the user for the size percentage increase
-            String inputValue = JOptionPane.showInputDialog(null,
-                    Settings.getLanguageProperty("RESIZE_DIALOG"), Settings.getLanguageProperty("RESIZE_HEADER"),
-                    JOptionPane.QUESTION_MESSAGE);
-
-            // Check if the input dialog is canceled
-            if (inputValue == null) {
-                // Return a special value to indicate cancellation
-                return -1;
-            }
-
-            // Check if the input value is empty
-            if (inputValue.trim().isEmpty()) {
-                // Show an error message if the input value is empty
-                JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_VALID_INTEGER"),
-                        Settings.getLanguageProperty("WARN_INVALID_INPUT"),
-                        JOptionPane.ERROR_MESSAGE);
-                // Recursive call to prompt again
-                return promptForSizePercentageIncrease();
-            }
-
-            // Parses the input value as an integer
-            try {
-                int sizePercentageIncrease = Integer.parseInt(inputValue);
-                // Check if the entered value is valid (positive integer)
-                if (sizePercentageIncrease > 0) {
-                    return sizePercentageIncrease;
-                } else {
-                    // Show an error message if the entered value is not valid
-                    JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_POSITIVE_INTEGER"),
-                            Settings.getLanguageProperty("WARN_INVALID_INPUT"),
-                            JOptionPane.ERROR_MESSAGE);
-                    // Recursive call to prompt again
-                    return promptForSizePercentageIncrease();
+        private void linkSizes(SpinnerNumberModel widthModel, int oldWidth, SpinnerNumberModel heightModel,
+                int oldHeight, JCheckBox keepRatio) {
+            // set while one spinner is updating the other, so that the update doesn't come back round
+            boolean[] updating = { false };
+            widthModel.addChangeListener(event -> {
+                if (keepRatio.isSelected() && !updating[0]) {
+                    updating[0] = true;
+                    int width = widthModel.getNumber().intValue();
+                    heightModel.setValue((int) Math.max(1, Math.round((double) width * oldHeight / oldWidth)));
+                    updating[0] = false;
                 }
-            } catch (NumberFormatException e) {
-                // Show an error message if the entered value is not a valid integer
-                JOptionPane.showMessageDialog(null, Settings.getLanguageProperty("WARN_VALID_INTEGER"),
-                        Settings.getLanguageProperty("WARN_INVALID_INPUT"),
-                        JOptionPane.ERROR_MESSAGE);
-                // Recursive call to prompt again
-                return promptForSizePercentageIncrease();
-            }
+            });
+            heightModel.addChangeListener(event -> {
+                if (keepRatio.isSelected() && !updating[0]) {
+                    updating[0] = true;
+                    int height = heightModel.getNumber().intValue();
+                    widthModel.setValue((int) Math.max(1, Math.round((double) height * oldWidth / oldHeight)));
+                    updating[0] = false;
+                }
+            });
         }
     }
 
@@ -1,6 +1,5 @@
 package cosc202.andie;
 
-import java.awt.*;
 import java.awt.image.*;
 
 import javax.swing.JOptionPane;
@@ -16,7 +15,9 @@ import javax.swing.JOptionPane;
  * @author Marcus Millan
  * 
  */
-public class TransparencyImage implements ImageOperation, java.io.Serializable {
+public class TransparencyImage implements PointOperation, java.io.Serializable {
+
+    private static final long serialVersionUID = -2319899180901794749L;
 
     private int transparencyLevel;
 
@@ -39,6 +40,30 @@ public class TransparencyImage implements ImageOperation, java.io.Serializable {
         return transparencyLevel;
     }
     
+    /**
+     * Gets the lookup table for the transparency level, which sets the alpha value
+     * of every pixel that is not fully transparent and leaves the colours unchanged.
+     * Fully transparent pixels (the background) are preserved.
+     * 
+     * @return The lookup table for the transparency operation.
+     */
+    public ColourLut getLut() {
+        // Calculate the alpha value from the transparency level (0-100)
+        int alpha = (int) (transparencyLevel * 2.55); // transparencyLevel 0-100 maps to alpha 0-255
+        return ColourLut.identity().map(ColourLut.ALPHA, a -> a == 0 ? 0 : alpha);
+    }
+
+    /**
+     * Gets the type of image the transparency operation produces, which always
+     * has an alpha channel.
+     * 
+     * @param inputType The type of the input image.
+     * @return {@link BufferedImage#TYPE_INT_ARGB}.
+     */
+    public int getOutputType(int inputType) {
+        return BufferedImage.TYPE_INT_ARGB;
+    }
+
     /**
      * Applies the transparency operation to a BufferedImage.
      * The operation adjusts the alpha value of each pixel in the image based on the transparency level.
@@ -56,27 +81,9 @@ public class TransparencyImage implements ImageOperation, java.io.Serializable {
         }
 
         try {
-            int width = input.getWidth();
-            int height = input.getHeight();
-            BufferedImage transparentImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-            // Calculate the alpha value from the transparency level (0-100)
-            int alpha = (int) (transparencyLevel * 2.55); // transparencyLevel 0-100 maps to alpha 0-255
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int rgba = input.getRGB(x, y);
-                    Color color = new Color(rgba, true);
-                    // If the pixel is not fully transparent, adjust its alpha value
-                    if (color.getAlpha() != 0) {
-                        Color newColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
-                        transparentImage.setRGB(x, y, newColor.getRGB());
-                    } else {
-                        // Preserve fully transparent pixels (background)
-                        transparentImage.setRGB(x, y, rgba);
-                    }
-                }
-            }
+            BufferedImage transparentImage = new BufferedImage(input.getWidth(), input.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB);
+            getLut().apply(input, transparentImage);
             return transparentImage;
         } catch (Exception e) {
             System.err.println(Settings.getLanguageProperty("WARN_EXCEPTION"));
@@ -0,0 +1,233 @@
+package cosc202.andie;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>
+ * The pixel loops of {@link SimdKernels}, done with the Vector API, as many
+ * pixels at a time as the CPU's widest vectors hold.
+ * </p>
+ *
+ * <p>
+ * Each lane of an int vector holds one packed pixel, and each channel is
+ * shifted and masked out of it into its own vector, so the loops are the same
+ * as the scalar ones with every variable widened to a vector. The float and
+ * int vectors have as many lanes as each other. The pixels left over at the
+ * end of a run, fewer than a vector's worth, go through the scalar loop.
+ * </p>
+ *
+ * <p>
+ * This needs Java 17 and {@code --add-modules jdk.incubator.vector}, and is
+ * only ever loaded by name from {@link SimdKernels#load}.
+ * </p>
+ *
+ * @version 1.0
+ * @see SimdKernels
+ */
+final class VectorKernels implements SimdKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * <p>
+     * Check that the Vector API works here, so that loading fails up front
+     * rather than on first use.
+     * </p>
+     */
+    public VectorKernels() {
+        if (INTS.length() != FLOATS.length() || INTS.length() < 4) {
+            throw new UnsupportedOperationException("No usable vector shape");
+        }
+    }
+
+    @Override
+    public void convolve(int[] src, int[] taps, float[] weights, int[] dst, int out, int from, int to,
+            float middle, boolean alpha, int storeMask) {
+        int lanes = INTS.length();
+        int x = from;
+        for (; x <= to - lanes; x += lanes) {
+            FloatVector sumAlpha = FloatVector.zero(FLOATS), sumRed = FloatVector.zero(FLOATS);
+            FloatVector sumGreen = FloatVector.zero(FLOATS), sumBlue = FloatVector.zero(FLOATS);
+            for (int i = 0; i < taps.length; i++) {
+                IntVector argb = IntVector.fromArray(INTS, src, taps[i] + x);
+                float kernelValue = weights[i];
+                sumAlpha = sumAlpha.add(channel(argb, 24).mul(kernelValue));
+                sumRed = sumRed.add(channel(argb, 16).mul(kernelValue));
+                sumGreen = sumGreen.add(channel(argb, 8).mul(kernelValue));
+                sumBlue = sumBlue.add(channel(argb, 0).mul(kernelValue));
+            }
+            IntVector enda = alpha ? toChannel(sumAlpha, middle) : IntVector.broadcast(INTS, 255);
+            IntVector argb = enda.lanewise(VectorOperators.LSHL, 24)
+                    .or(toChannel(sumRed, middle).lanewise(VectorOperators.LSHL, 16))
+                    .or(toChannel(sumGreen, middle).lanewise(VectorOperators.LSHL, 8))
+                    .or(toChannel(sumBlue, middle));
+            argb.and(storeMask).intoArray(dst, out + x);
+        }
+        for (; x < to; x++) {
+            float sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+            for (int i = 0; i < taps.length; i++) {
+                int argb = src[taps[i] + x];
+                float kernelValue = weights[i];
+                sumAlpha += kernelValue * ((argb >> 24) & 0xFF);
+                sumRed += kernelValue * ((argb >> 16) & 0xFF);
+                sumGreen += kernelValue * ((argb >> 8) & 0xFF);
+                sumBlue += kernelValue * (argb & 0xFF);
+            }
+            int endr = (int) Math.min(Math.max(sumRed + middle, 0), 255);
+            int endg = (int) Math.min(Math.max(sumGreen + middle, 0), 255);
+            int endb = (int) Math.min(Math.max(sumBlue + middle, 0), 255);
+            int enda = alpha ? (int) Math.min(Math.max(sumAlpha + middle, 0), 255) : 255;
+            dst[out + x] = ((enda << 24) | (endr << 16) | (endg << 8) | endb) & storeMask;
+        }
+    }
+
+    @Override
+    public void convolveInteger(int[] src, int[] positiveTaps, int[] positiveWeights, int[] negativeTaps,
+            int[] negativeWeights, int[] dst, int out, int from, int to, int middle, int shift, boolean alpha,
+            int storeMask) {
+        int lanes = INTS.length();
+        int x = from;
+        for (; x <= to - lanes; x += lanes) {
+            // alpha and green, and red and blue, each in the high and low 16 bits of a lane
+            IntVector positiveAG = IntVector.zero(INTS), positiveRB = IntVector.zero(INTS);
+            for (int i = 0; i < positiveTaps.length; i++) {
+                IntVector argb = IntVector.fromArray(INTS, src, positiveTaps[i] + x);
+                positiveAG = positiveAG.add(argb.lanewise(VectorOperators.LSHR, 8).and(0x00FF00FF)
+                        .mul(positiveWeights[i]));
+                positiveRB = positiveRB.add(argb.and(0x00FF00FF).mul(positiveWeights[i]));
+            }
+            IntVector negativeAG = IntVector.zero(INTS), negativeRB = IntVector.zero(INTS);
+            for (int i = 0; i < negativeTaps.length; i++) {
+                IntVector argb = IntVector.fromArray(INTS, src, negativeTaps[i] + x);
+                negativeAG = negativeAG.add(argb.lanewise(VectorOperators.LSHR, 8).and(0x00FF00FF)
+                        .mul(negativeWeights[i]));
+                negativeRB = negativeRB.add(argb.and(0x00FF00FF).mul(negativeWeights[i]));
+            }
+            IntVector endr = toChannel(high(positiveRB).sub(high(negativeRB)), middle, shift);
+            IntVector endg = toChannel(positiveAG.and(0xFFFF).sub(negativeAG.and(0xFFFF)), middle, shift);
+            IntVector endb = toChannel(positiveRB.and(0xFFFF).sub(negativeRB.and(0xFFFF)), middle, shift);
+            IntVector enda = alpha ? toChannel(high(positiveAG).sub(high(negativeAG)), middle, shift)
+                    : IntVector.broadcast(INTS, 255);
+            IntVector argb = enda.lanewise(VectorOperators.LSHL, 24)
+                    .or(endr.lanewise(VectorOperators.LSHL, 16))
+                    .or(endg.lanewise(VectorOperators.LSHL, 8))
+                    .or(endb);
+            argb.and(storeMask).intoArray(dst, out + x);
+        }
+        for (; x < to; x++) {
+            int positiveAG = 0, positiveRB = 0;
+            for (int i = 0; i < positiveTaps.length; i++) {
+                int argb = src[positiveTaps[i] + x];
+                positiveAG += positiveWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+                positiveRB += positiveWeights[i] * (argb & 0x00FF00FF);
+            }
+            int negativeAG = 0, negativeRB = 0;
+            for (int i = 0; i < negativeTaps.length; i++) {
+                int argb = src[negativeTaps[i] + x];
+                negativeAG += negativeWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+                negativeRB += negativeWeights[i] * (argb & 0x00FF00FF);
+            }
+            int endr = toChannel((positiveRB >>> 16) - (negativeRB >>> 16) + middle, shift);
+            int endg = toChannel((positiveAG & 0xFFFF) - (negativeAG & 0xFFFF) + middle, shift);
+            int endb = toChannel((positiveRB & 0xFFFF) - (negativeRB & 0xFFFF) + middle, shift);
+            int enda = alpha ? toChannel((positiveAG >>> 16) - (negativeAG >>> 16) + middle, shift) : 255;
+            dst[out + x] = ((enda << 24) | (endr << 16) | (endg << 8) | endb) & storeMask;
+        }
+    }
+
+    @Override
+    public void lookup(int[] src, int in, int[] dst, int out, int count, int opaque, int[][] tables, int[] shifts,
+            int storeMask) {
+        int lanes = INTS.length();
+        // the table index of each lane, for the gathers, which take their indices from an array
+        int[] indices = new int[lanes];
+        int x = 0;
+        for (; x <= count - lanes; x += lanes) {
+            IntVector argb = IntVector.fromArray(INTS, src, in + x).or(opaque);
+            IntVector result = IntVector.zero(INTS);
+            for (int c = 0; c < 4; c++) {
+                argb.lanewise(VectorOperators.LSHR, shifts[c]).and(0xFF).intoArray(indices, 0);
+                result = result.or(IntVector.fromArray(INTS, tables[c], 0, indices, 0));
+            }
+            result.and(storeMask).intoArray(dst, out + x);
+        }
+        for (; x < count; x++) {
+            int argb = src[in + x] | opaque;
+            dst[out + x] = (tables[0][(argb >>> shifts[0]) & 0xFF] | tables[1][(argb >>> shifts[1]) & 0xFF]
+                    | tables[2][(argb >>> shifts[2]) & 0xFF] | tables[3][(argb >>> shifts[3]) & 0xFF]) & storeMask;
+        }
+    }
+
+    /**
+     * <p>
+     * Extract one channel of each pixel as a float.
+     * </p>
+     *
+     * @param argb  The packed pixels.
+     * @param shift How far the channel is shifted in a packed pixel.
+     * @return The channel's values, 0 to 255.
+     */
+    private static FloatVector channel(IntVector argb, int shift) {
+        return (FloatVector) argb.lanewise(VectorOperators.LSHR, shift).and(0xFF)
+                .convert(VectorOperators.I2F, 0);
+    }
+
+    /**
+     * <p>
+     * Turn float sums for one channel into the channel's values: add the
+     * offset, clamp to the 0,255 range and truncate.
+     * </p>
+     *
+     * @param sum    The sums.
+     * @param middle The offset.
+     * @return The channel's values.
+     */
+    private static IntVector toChannel(FloatVector sum, float middle) {
+        return (IntVector) sum.add(middle).max(0f).min(255f).convert(VectorOperators.F2I, 0);
+    }
+
+    /**
+     * <p>
+     * Turn scaled integer sums for one channel into the channel's values: add
+     * the offset, clamp to the 0,255 range and truncate.
+     * </p>
+     *
+     * @param sum    The sums, scaled by 2^shift.
+     * @param middle The offset, scaled the same way.
+     * @param shift  The power of two the sums are scaled by.
+     * @return The channel's values.
+     */
+    private static IntVector toChannel(IntVector sum, int middle, int shift) {
+        return sum.add(middle).max(0).lanewise(VectorOperators.ASHR, shift).min(255);
+    }
+
+    /**
+     * <p>
+     * Turn a scaled integer sum for one channel into the channel's value, for
+     * the pixels left over.
+     * </p>
+     *
+     * @param sum   The sum, with the offset added, scaled by 2^shift.
+     * @param shift The power of two the sum is scaled by.
+     * @return The channel value.
+     */
+    private static int toChannel(int sum, int shift) {
+        return sum <= 0 ? 0 : Math.min(sum >> shift, 255);
+    }
+
+    /**
+     * <p>
+     * Get the high 16 bits of each lane.
+     * </p>
+     *
+     * @param packed Two channels' sums in each lane.
+     * @return The sums in the high halves.
+     */
+    private static IntVector high(IntVector packed) {
+        return packed.lanewise(VectorOperators.LSHR, 16);
+    }
+}
@@ -0,0 +1,76 @@
+package cosc202.andie;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.*;
+
+public class BoxBlurTest {
+
+    //the mean of each channel over the square around each pixel, rounded down, with the edge pixels
+    //repeated past the edges, one pixel at a time
+    private static int[] clampedMean(BufferedImage input, int radius) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int count = (2 * radius + 1) * (2 * radius + 1);
+        int[] result = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long[] sums = new long[4];
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int argb = input.getRGB(Math.min(Math.max(x + dx, 0), width - 1),
+                                Math.min(Math.max(y + dy, 0), height - 1));
+                        for (int c = 0; c < 4; c++) {
+                            sums[c] += (argb >>> (24 - 8 * c)) & 0xFF;
+                        }
+                    }
+                }
+                int argb = 0;
+                for (int c = 0; c < 4; c++) {
+                    argb = (argb << 8) | (int) (sums[c] / count);
+                }
+                result[y * width + x] = argb;
+            }
+        }
+        return result;
+    }
+
+    //the mean filter gives exactly the clamped mean, at the borders as well as inside, for small and large
+    //radii, with and without alpha
+    @Test
+    void testMatchesClampedMean() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(37, 26, type, 60);
+            for (int radius : new int[] { 1, 2, 3, 5, 8, 12 }) {
+                BufferedImage output = new MeanFilter(radius).apply(input);
+                assertEquals(type, output.getType());
+                ConvolutionTest.assertWithin(clampedMean(input, radius), output, 0);
+            }
+        }
+    }
+
+    //windows wider than the image, where every pixel is near an edge, and one pixel wide or high images
+    @Test
+    void testWindowWiderThanImage() {
+        int[][] sizes = { { 9, 5 }, { 1, 13 }, { 13, 1 }, { 1, 1 } };
+        for (int[] size : sizes) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(size[0], size[1], BufferedImage.TYPE_INT_ARGB, 61);
+            for (int radius : new int[] { 1, 4, 20 }) {
+                ConvolutionTest.assertWithin(clampedMean(input, radius), new MeanFilter(radius).apply(input), 0);
+            }
+        }
+    }
+
+    //averaging the planes of an image gives exactly what averaging its packed pixels does
+    @Test
+    void testPlanarMatchesPacked() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(41, 19, type, 62);
+            for (int radius : new int[] { 1, 6, 25 }) {
+                BufferedImage planar = BoxBlur.filter(PlanarImage.of(input), radius).toImage();
+                ConvolutionTest.assertWithin(clampedMean(input, radius), planar, 0);
+            }
+        }
+    }
+}
@@ -6,9 +6,14 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.awt.*;
 import java.awt.image.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 
 public class ConvolutionTest {
@@ -61,6 +66,8 @@ public class ConvolutionTest {
 
         // Define convolution operation with nearest pixel value padding
         Convo2 convolution = new Convo2(kernel, true);
+        RedChannelProbe probe = new RedChannelProbe();
+        convolution.setProbe(probe);
 
         // Define input image (5x5)
         int[][] inputPixels = {
@@ -84,7 +91,310 @@ public class ConvolutionTest {
         int[] expectedRedValuesAfter = { 107, 94, 97, 111, 100, 88, 91, 105 , 101, 90, 93, 106, 108, 97, 100, 112 };
 
         // Assert output image pixel values
-         assertArrayEquals(expectedRedValuesAfter, convolution.redValuesAfter.stream().mapToInt(i -> i).toArray());
+         assertArrayEquals(expectedRedValuesAfter, probe.redValuesAfter.stream().mapToInt(i -> i).toArray());
+
+        // Every output pixel reads the 9 pixels under the kernel
+        assertEquals(9 * expectedRedValuesAfter.length, probe.redValuesBefore.size());
+    }
+
+    //records the red channel of the pixels the convolution reads and writes, so that one channel can be checked
+    private static class RedChannelProbe implements ConvolutionProbe {
+        List<Integer> redValuesBefore = new ArrayList<>();
+        List<Integer> redValuesAfter = new ArrayList<>();
+
+        @Override
+        public void sampled(int x, int y, int argb) {
+            redValuesBefore.add((argb >> 16) & 0xFF);
+        }
+
+        @Override
+        public void produced(int x, int y, int argb) {
+            redValuesAfter.add((argb >> 16) & 0xFF);
+        }
+    }
+
+    //a separable kernel applied as two 1-D passes is within a level of the full 2-D kernel everywhere,
+    //including the clamped border, for the gaussian's own kernels and a lopsided one with negative weights
+    @Test
+    void testSeparableMatchesFullKernel() {
+        float[][] kernels = { gaussian(1), gaussian(3), gaussian(10), { -0.25f, 0.5f, 1.5f, 0.5f, -0.25f } };
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(37, 23, type, 6);
+            for (float[] kernel : kernels) {
+                for (boolean offset : new boolean[] { false, true }) {
+                    BufferedImage output = new Convo2(kernel, kernel, offset).filter(input, null);
+                    int[] expected = referenceConvolve(input, outer(kernel, kernel), kernel.length, offset,
+                            Convo2.EdgeMode.CLAMP);
+                    assertWithin(expected, output, 1);
+                }
+            }
+        }
+    }
+
+    //the gaussian blur filter is within a level of convolving with the full gaussian kernel
+    @Test
+    void testGaussianBlurMatchesFullKernel() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(41, 29, BufferedImage.TYPE_INT_ARGB, 7);
+        for (int radius = 1; radius <= 10; radius++) {
+            BufferedImage output = new GaussianBlurFilter(radius).apply(input);
+            float[] kernel = gaussian(radius);
+            assertWithin(referenceConvolve(input, outer(kernel, kernel), kernel.length, false, Convo2.EdgeMode.CLAMP),
+                    output, 1);
+        }
+    }
+
+    //the kernels of the sobel, emboss, laplacian and sharpen filters, and kernels whose weights add up to
+    //the most the integer path takes
+    private static final float[][] INTEGER_KERNELS = {
+        { -0.5f, 0, 0.5f, 1, 0, -1, -0.5f, 0, 0.5f },
+        { -0.5f, -1, 0.5f, 0, 0, 0, 0.5f, 1, 0.5f },
+        { 0, 1, 0, 0, 0, 0, 0, -1, 0 },
+        { 0, 0, 1, 0, 0, 0, -1, 0, 0 },
+        { 1, 0, 0, 0, 0, 0, 0, 0, -1 },
+        { 0, -1, 0, -1, 4, -1, 0, -1, 0 },
+        { 0, -0.5f, 0, -0.5f, 3, -0.5f, 0, -0.5f, 0 },
+        { 128, 0, 0, 0, 129, 0, 0, 0, 0 },
+        { -128, 0, 0, 0, 129, 0, 0, 0, 0 },
+        { 0, 0, 0, 0, -257, 0, 0, 0, 0 },
+        { 0, 0, 0, 0, 128, 0, 0, 0, -0.5f }
+    };
+
+    //packing two channels into each int gives exactly what the float sums give, with and without the
+    //offset, for random images and for the extremes where the packed sums come closest to overflowing
+    @Test
+    void testIntegerMatchesFloat() {
+        BufferedImage[] inputs = {
+            ImagePixelsTest.createRandomImage(29, 18, BufferedImage.TYPE_INT_ARGB, 27),
+            ImagePixelsTest.createRandomImage(29, 18, BufferedImage.TYPE_INT_RGB, 28),
+            createUniformImage(9, 7, 0xFFFFFFFF),
+            createCheckerboard(16, 11, 0xFFFFFFFF, 0x00000000),
+            createCheckerboard(16, 11, 0x00FF00FF, 0xFF00FF00)
+        };
+        for (BufferedImage input : inputs) {
+            for (float[] data : INTEGER_KERNELS) {
+                for (boolean offset : new boolean[] { false, true }) {
+                    Kernel kernel = new Kernel(3, 3, data);
+                    BufferedImage integer = new Convo2(kernel, offset, true).filter(input, null);
+                    BufferedImage floats = new Convo2(kernel, offset, false).filter(input, null);
+                    assertWithin(toArray(floats), integer, 0);
+                }
+            }
+        }
+    }
+
+    //the sobel, emboss and laplacian filters give exactly what the float convolution does
+    @Test
+    void testFiltersMatchFloat() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(33, 21, BufferedImage.TYPE_INT_ARGB, 29);
+        for (boolean offset : new boolean[] { false, true }) {
+            assertWithin(referenceConvolve(input, INTEGER_KERNELS[0], 3, offset, Convo2.EdgeMode.CLAMP),
+                    new SobelFilter("Horizontal", offset).apply(input), 0);
+            assertWithin(referenceConvolve(input, INTEGER_KERNELS[1], 3, offset, Convo2.EdgeMode.CLAMP),
+                    new SobelFilter("Vertical", offset).apply(input), 0);
+            assertWithin(referenceConvolve(input, INTEGER_KERNELS[4], 3, offset, Convo2.EdgeMode.CLAMP),
+                    new EmbossFilter("NORTH WEST", offset).apply(input), 0);
+            assertWithin(referenceConvolve(input, INTEGER_KERNELS[5], 3, offset, Convo2.EdgeMode.CLAMP),
+                    new LaplacianFilter(offset).apply(input), 0);
+        }
+    }
+
+    //kernels that are mostly zeros give exactly what visiting every tap does, for scattered fractional
+    //weights that only the float path takes as well as for the integer kernels
+    @Test
+    void testSparseKernelMatchesDense() {
+        Random random = new Random(30);
+        BufferedImage input = ImagePixelsTest.createRandomImage(27, 19, BufferedImage.TYPE_INT_ARGB, 31);
+        for (int size = 3; size <= 9; size += 2) {
+            float[] data = new float[size * size];
+            for (int i = 0; i < data.length; i++) {
+                if (random.nextInt(4) == 0) {
+                    data[i] = random.nextFloat() - 0.4f;
+                }
+            }
+            for (boolean offset : new boolean[] { false, true }) {
+                Convo2 sparse = new Convo2(new Kernel(size, size, data), offset);
+                assertWithin(referenceConvolve(input, data, size, offset, Convo2.EdgeMode.CLAMP),
+                        sparse.filter(input, null), 0);
+            }
+        }
+        for (float[] data : INTEGER_KERNELS) {
+            assertWithin(referenceConvolve(input, data, 3, false, Convo2.EdgeMode.CLAMP),
+                    new Convo2(new Kernel(3, 3, data), false, false).filter(input, null), 0);
+        }
+    }
+
+    //a kernel with one tap in a corner moves the image, clamped at the edges, and one with no taps
+    //at all leaves only the offset
+    @Test
+    void testSingleTapAndEmptyKernels() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(14, 9, BufferedImage.TYPE_INT_ARGB, 32);
+        float[] corner = new float[25];
+        corner[0] = 1;
+        BufferedImage moved = new Convo2(new Kernel(5, 5, corner), false).filter(input, null);
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 14; x++) {
+                assertEquals(input.getRGB(Math.max(x - 2, 0), Math.max(y - 2, 0)), moved.getRGB(x, y));
+            }
+        }
+        BufferedImage empty = new Convo2(new Kernel(3, 3, new float[9]), true).filter(input, null);
+        int[] middle = new int[14 * 9];
+        Arrays.fill(middle, 0x80808080);
+        assertWithin(middle, empty, 0);
+    }
+
+    //every edge mode gives the padded reference on the integer, float and separable paths, including
+    //images thinner than the kernel, where no pixel is in the interior and the padding folds over more than once
+    @Test
+    void testEdgeModesMatchPadded() {
+        Random random = new Random(33);
+        int[][] sizes = { { 27, 19 }, { 8, 5 }, { 3, 2 }, { 1, 6 }, { 6, 1 }, { 1, 1 } };
+        for (Convo2.EdgeMode edgeMode : Convo2.EdgeMode.values()) {
+            for (int[] wh : sizes) {
+                BufferedImage input = ImagePixelsTest.createRandomImage(wh[0], wh[1], BufferedImage.TYPE_INT_ARGB,
+                        random.nextLong());
+                for (int size = 3; size <= 9; size += 6) {
+                    float[] fractional = new float[size * size];
+                    int[] whole = new int[size * size];
+                    float[] integer = new float[size * size];
+                    for (int i = 0; i < fractional.length; i++) {
+                        fractional[i] = random.nextFloat() - 0.45f;
+                        whole[i] = random.nextInt(5) - 2;
+                        integer[i] = whole[i];
+                    }
+                    for (float[] data : new float[][] { fractional, integer }) {
+                        Convo2 full = new Convo2(new Kernel(size, size, data), true);
+                        full.setEdgeMode(edgeMode);
+                        assertWithin(referenceConvolve(input, data, size, true, edgeMode), full.filter(input, null), 0);
+                    }
+
+                    float[] horizontal = new float[size];
+                    float[] vertical = new float[size];
+                    for (int i = 0; i < size; i++) {
+                        horizontal[i] = random.nextFloat() / size;
+                        vertical[i] = (random.nextFloat() * 1.5f - 0.25f) / size;
+                    }
+                    Convo2 separable = new Convo2(horizontal, vertical, false);
+                    separable.setEdgeMode(edgeMode);
+                    assertWithin(referenceConvolve(input, outer(horizontal, vertical), size, false, edgeMode),
+                            separable.filter(input, null), 1);
+                }
+            }
+        }
+    }
+
+    //an image without alpha gives the padded reference too, with its alpha left opaque
+    @Test
+    void testEdgeModesWithoutAlpha() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(11, 7, BufferedImage.TYPE_INT_RGB, 34);
+        float[] data = { 0.1f, 0, 0.3f, -0.2f, 0.6f, 0, 0, 0.2f, 0.1f };
+        for (Convo2.EdgeMode edgeMode : Convo2.EdgeMode.values()) {
+            Convo2 convolution = new Convo2(new Kernel(3, 3, data), false);
+            convolution.setEdgeMode(edgeMode);
+            BufferedImage output = convolution.filter(input, null);
+            assertEquals(BufferedImage.TYPE_INT_RGB, output.getType());
+            assertWithin(referenceConvolve(input, data, 3, false, edgeMode), output, 0);
+        }
+    }
+
+    //the pixels of an image, as getRGB gives them
+    static int[] toArray(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    //alternates two colours pixel by pixel
+    static BufferedImage createCheckerboard(int width, int height, int even, int odd) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x + y) % 2 == 0 ? even : odd);
+            }
+        }
+        return image;
+    }
+
+    //the normalised 1-D gaussian the blur filter uses, cut off at three standard deviations
+    static float[] gaussian(int radius) {
+        float sigma = radius / 3.0f;
+        float[] kernel = new float[2 * radius + 1];
+        float sum = 0;
+        for (int x = -radius; x <= radius; x++) {
+            kernel[x + radius] = (float) Math.exp(-(x * x) / (2 * sigma * sigma));
+            sum += kernel[x + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+        return kernel;
+    }
+
+    //the full kernel that is the product of a 1-D kernel down and a 1-D kernel across
+    static float[] outer(float[] horizontal, float[] vertical) {
+        float[] data = new float[horizontal.length * vertical.length];
+        for (int y = 0; y < vertical.length; y++) {
+            for (int x = 0; x < horizontal.length; x++) {
+                data[y * horizontal.length + x] = vertical[y] * horizontal[x];
+            }
+        }
+        return data;
+    }
+
+    //convolves an image the plain way, one pixel and one tap at a time through getRGB, padding the edges as given
+    static int[] referenceConvolve(BufferedImage input, float[] kernel, int size, boolean offset,
+            Convo2.EdgeMode edgeMode) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int r = size / 2;
+        boolean alpha = input.getColorModel().hasAlpha();
+        int middle = offset ? 128 : 0;
+        int[] result = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float[] sums = new float[4];
+                for (int ky = 0; ky < size; ky++) {
+                    for (int kx = 0; kx < size; kx++) {
+                        int argb = input.getRGB(pad(x + kx - r, width, edgeMode), pad(y + ky - r, height, edgeMode));
+                        for (int c = 0; c < 4; c++) {
+                            sums[c] += kernel[ky * size + kx] * ((argb >> (24 - 8 * c)) & 0xFF);
+                        }
+                    }
+                }
+                int argb = 0;
+                for (int c = 0; c < 4; c++) {
+                    int value = (int) Math.min(Math.max(sums[c] + middle, 0), 255);
+                    argb = (argb << 8) | (c == 0 && !alpha ? 255 : value);
+                }
+                result[y * width + x] = argb;
+            }
+        }
+        return result;
+    }
+
+    //the pixel that stands in for one past the edge of a row or column n long
+    private static int pad(int i, int n, Convo2.EdgeMode edgeMode) {
+        switch (edgeMode) {
+            case REFLECT:
+                while (i < 0 || i >= n) {
+                    i = n == 1 ? 0 : i < 0 ? -i : 2 * (n - 1) - i;
+                }
+                return i;
+            case WRAP:
+                return ((i % n) + n) % n;
+            default:
+                return Math.min(Math.max(i, 0), n - 1);
+        }
+    }
+
+    //checks every channel of every pixel is within a tolerance of the expected colours
+    static void assertWithin(int[] expected, BufferedImage actual, int tolerance) {
+        int width = actual.getWidth();
+        for (int i = 0; i < expected.length; i++) {
+            int argb = actual.getRGB(i % width, i / width);
+            for (int shift = 0; shift < 32; shift += 8) {
+                int difference = Math.abs(((expected[i] >> shift) & 0xFF) - ((argb >> shift) & 0xFF));
+                assertTrue(difference <= tolerance, "Mismatch at (" + (i % width) + ", " + (i / width) + "): expected "
+                        + Integer.toHexString(expected[i]) + " got " + Integer.toHexString(argb));
+            }
+        }
     }
 
     private void assertImagePixelValues(BufferedImage image, int[][] expectedPixels) {
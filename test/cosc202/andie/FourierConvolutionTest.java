@@ -0,0 +1,77 @@
+package cosc202.andie;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.*;
+import java.util.Random;
+
+public class FourierConvolutionTest {
+
+    //a dense kernel of random weights that add up to about one, with some negative
+    private static float[] randomKernel(int size, long seed) {
+        Random random = new Random(seed);
+        float[] data = new float[size * size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (random.nextFloat() - 0.3f) / (data.length * 0.2f);
+        }
+        return data;
+    }
+
+    //checks the cost model sends a kernel to the frequency domain for an image, so the tests below test it
+    private static void assertTransformed(int size, int width, int height) {
+        int tile = FourierConvolution.chooseTile(size, width, height);
+        assertTrue(FourierConvolution.cost(size, tile, width, height) < size * size,
+                "expected a " + size + "x" + size + " kernel on " + width + "x" + height + " to be transformed");
+    }
+
+    //large kernels convolved in the frequency domain are within a level of convolving directly, across
+    //several tiles, with and without alpha and the offset
+    @Test
+    void testMatchesDirect() {
+        int size = 31;
+        float[] data = randomKernel(size, 40);
+        assertTransformed(size, 130, 90);
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(130, 90, type, 41);
+            for (boolean offset : new boolean[] { false, true }) {
+                BufferedImage output = new Convo2(new Kernel(size, size, data), offset).filter(input, null);
+                ConvolutionTest.assertWithin(
+                        ConvolutionTest.referenceConvolve(input, data, size, offset, Convo2.EdgeMode.CLAMP), output, 1);
+            }
+        }
+    }
+
+    //the padding of tiles past the edges of the image follows the edge mode
+    @Test
+    void testEdgeModes() {
+        int size = 25;
+        float[] data = randomKernel(size, 42);
+        assertTransformed(size, 100, 70);
+        BufferedImage input = ImagePixelsTest.createRandomImage(100, 70, BufferedImage.TYPE_INT_ARGB, 43);
+        for (Convo2.EdgeMode edgeMode : Convo2.EdgeMode.values()) {
+            Convo2 convolution = new Convo2(new Kernel(size, size, data), false);
+            convolution.setEdgeMode(edgeMode);
+            ConvolutionTest.assertWithin(ConvolutionTest.referenceConvolve(input, data, size, false, edgeMode),
+                    convolution.filter(input, null), 1);
+        }
+    }
+
+    //a kernel that only moves the image keeps it exactly, which checks the taps aren't flipped
+    @Test
+    void testShift() {
+        int size = 41;
+        float[] data = new float[size * size];
+        data[3 * size + 30] = 1;
+        assertTransformed(size, 150, 120);
+        BufferedImage input = ImagePixelsTest.createRandomImage(150, 120, BufferedImage.TYPE_INT_ARGB, 44);
+        BufferedImage output = new Convo2(new Kernel(size, size, data), false).filter(input, null);
+        int[] expected = new int[150 * 120];
+        for (int y = 0; y < 120; y++) {
+            for (int x = 0; x < 150; x++) {
+                expected[y * 150 + x] = input.getRGB(Math.min(Math.max(x + 10, 0), 149), Math.max(y - 17, 0));
+            }
+        }
+        ConvolutionTest.assertWithin(expected, output, 0);
+    }
+}
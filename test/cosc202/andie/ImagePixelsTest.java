@@ -0,0 +1,115 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.*;
+import java.util.Random;
+
+
+public class ImagePixelsTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY
+    };
+
+    //reading through the array gives what getRGB gives, for images accessed directly and converted alike
+    @Test
+    void testReadMatchesGetRGB() {
+        for (int type : TYPES) {
+            BufferedImage image = createRandomImage(13, 7, type, 1);
+            ImagePixels pixels = ImagePixels.of(image);
+            assertEquals(type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB, pixels.isDirect());
+            assertPixelsMatch(image, pixels);
+        }
+    }
+
+    //a subimage shares its parent's array, so the offset and stride have to be right
+    @Test
+    void testReadSubimage() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage image = createRandomImage(20, 15, type, 2).getSubimage(3, 4, 9, 6);
+            ImagePixels pixels = ImagePixels.of(image);
+            assertTrue(pixels.isDirect());
+            assertPixelsMatch(image, pixels);
+        }
+    }
+
+    //values written through the array and committed read back the same with getRGB
+    @Test
+    void testWriteMatchesSetRGB() {
+        int[] types = {
+            BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_3BYTE_BGR
+        };
+        for (int type : types) {
+            BufferedImage expected = createRandomImage(11, 9, type, 3);
+            BufferedImage image = new BufferedImage(20, 15, type).getSubimage(5, 2, 11, 9);
+            ImagePixels pixels = ImagePixels.forWriting(image);
+            for (int y = 0; y < pixels.height; y++) {
+                for (int x = 0; x < pixels.width; x++) {
+                    pixels.data[pixels.offset + y * pixels.stride + x] = pixels.store(expected.getRGB(x, y));
+                }
+            }
+            pixels.commit();
+            for (int y = 0; y < pixels.height; y++) {
+                for (int x = 0; x < pixels.width; x++) {
+                    assertEquals(expected.getRGB(x, y), image.getRGB(x, y), "Mismatch at (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+
+    //an opaque image stored directly keeps its unused top byte clear
+    @Test
+    void testStoreClearsAlphaOfOpaqueImage() {
+        ImagePixels pixels = ImagePixels.forWriting(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB));
+        assertFalse(pixels.hasAlpha);
+        assertEquals(0x00123456, pixels.store(0xFF123456));
+        ImagePixels alpha = ImagePixels.forWriting(new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB));
+        assertEquals(0x80123456, alpha.store(0x80123456));
+    }
+
+    //a convolution reads and writes the same pixels whether it works on the array or goes through getRGB
+    @Test
+    void testConvolutionMatchesAcrossTypes() {
+        BufferedImage argb = createRandomImage(17, 12, BufferedImage.TYPE_INT_ARGB, 4);
+        BufferedImage abgr = createRandomImage(17, 12, BufferedImage.TYPE_4BYTE_ABGR, 4);
+        Kernel kernel = new Kernel(3, 3, new float[] { 0, -1, 0, -1, 5, -1, 0, -1, 0 });
+
+        BufferedImage direct = new Convo2(kernel, true).filter(argb, null);
+        BufferedImage converted = new Convo2(kernel, true).filter(abgr, null);
+        for (int y = 0; y < 12; y++) {
+            for (int x = 0; x < 17; x++) {
+                assertEquals(direct.getRGB(x, y), converted.getRGB(x, y), "Mismatch at (" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    private static void assertPixelsMatch(BufferedImage image, ImagePixels pixels) {
+        int mask = pixels.hasAlpha ? 0xFFFFFFFF : 0x00FFFFFF;
+        assertEquals(image.getWidth(), pixels.width);
+        assertEquals(image.getHeight(), pixels.height);
+        for (int y = 0; y < pixels.height; y++) {
+            for (int x = 0; x < pixels.width; x++) {
+                assertEquals(image.getRGB(x, y) & mask, pixels.data[pixels.offset + y * pixels.stride + x] & mask,
+                        "Mismatch at (" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    public static BufferedImage createRandomImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
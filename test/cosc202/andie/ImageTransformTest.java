@@ -0,0 +1,102 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.*;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class ImageTransformTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR
+    };
+
+    //rotating in tiles puts every pixel exactly where rotating a pixel at a time did, for images that
+    //are several tiles across with part tiles at the edges, and for subimages
+    @Test
+    void testRotate() {
+        for (int type : TYPES) {
+            for (int[] size : new int[][] { { 150, 71 }, { 1, 9 }, { 9, 1 } }) {
+                BufferedImage input = ImagePixelsTest.createRandomImage(size[0], size[1], type, 14);
+                for (int degrees : new int[] { 90, 180, 270 }) {
+                    assertRotated(input, degrees, new ImageRotate(degrees).apply(input));
+                }
+            }
+        }
+        BufferedImage subimage = ImagePixelsTest.createRandomImage(200, 120, BufferedImage.TYPE_INT_ARGB, 15)
+                .getSubimage(33, 17, 130, 70);
+        for (int degrees : new int[] { 90, 180, 270 }) {
+            assertRotated(subimage, degrees, new ImageRotate(degrees).apply(subimage));
+        }
+    }
+
+    //flipping puts every pixel exactly where flipping a pixel at a time did
+    @Test
+    void testFlip() {
+        for (int type : TYPES) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(97, 66, type, 16);
+            BufferedImage horizontal = new ImageFlip(ImageFlip.FlipType.horizontal).apply(input);
+            BufferedImage vertical = new ImageFlip(ImageFlip.FlipType.vertical).apply(input);
+            assertEquals(BufferedImage.TYPE_INT_ARGB, horizontal.getType());
+            for (int y = 0; y < 66; y++) {
+                for (int x = 0; x < 97; x++) {
+                    assertEquals(input.getRGB(x, y), horizontal.getRGB(96 - x, y));
+                    assertEquals(input.getRGB(x, y), vertical.getRGB(x, 65 - y));
+                }
+            }
+        }
+    }
+
+    //flips that cancel out give back the input itself if it is already what a flip makes, and a copy otherwise;
+    //any other run of flips gives what flipping one at a time does
+    @Test
+    void testFlipRuns() {
+        ImageFlip horizontal = new ImageFlip(ImageFlip.FlipType.horizontal);
+        ImageFlip vertical = new ImageFlip(ImageFlip.FlipType.vertical);
+        List<List<ImageFlip>> runs = Arrays.asList(Arrays.asList(horizontal, horizontal),
+                Arrays.asList(vertical, horizontal, vertical, horizontal), Arrays.asList(horizontal, vertical),
+                Arrays.asList(vertical, vertical, vertical), Arrays.asList(horizontal, vertical, horizontal));
+        for (int type : TYPES) {
+            for (List<ImageFlip> run : runs) {
+                BufferedImage input = ImagePixelsTest.createRandomImage(31, 20, type, 17);
+                OperationPipelineTest.assertSameAsOneAtATime(run, input);
+            }
+        }
+
+        BufferedImage argb = ImagePixelsTest.createRandomImage(31, 20, BufferedImage.TYPE_INT_ARGB, 18);
+        assertSame(argb, OperationPipeline.apply(runs.get(0), argb));
+        assertSame(argb, OperationPipeline.apply(runs.get(1), argb));
+        BufferedImage rgb = ImagePixelsTest.createRandomImage(31, 20, BufferedImage.TYPE_INT_RGB, 18);
+        BufferedImage copy = OperationPipeline.apply(runs.get(0), rgb);
+        assertNotSame(rgb, copy);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, copy.getType());
+        MedianFilterTest.assertSameImage(rgb, copy);
+    }
+
+    //checks an image is another rotated clockwise, as an ARGB image
+    private static void assertRotated(BufferedImage input, int degrees, BufferedImage rotated) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        assertEquals(BufferedImage.TYPE_INT_ARGB, rotated.getType());
+        assertEquals(degrees == 180 ? width : height, rotated.getWidth());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int argb;
+                if (degrees == 90) {
+                    argb = rotated.getRGB(height - y - 1, x);
+                } else if (degrees == 180) {
+                    argb = rotated.getRGB(width - x - 1, height - y - 1);
+                } else {
+                    argb = rotated.getRGB(y, width - x - 1);
+                }
+                assertEquals(input.getRGB(x, y), argb, "Mismatch at (" + x + ", " + y + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.*;
+import java.util.Arrays;
+
+
+public class MedianFilterTest {
+
+    //the histogram median gives exactly what sorting each neighbourhood gives, alpha included
+    @Test
+    void testMatchesSortedNeighbourhoods() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(31, 22, type, 8);
+            for (int radius : new int[] { 1, 2, 3, 5, 8 }) {
+                assertSameImage(referenceMedian(input, radius), new MedianFilter(radius).apply(input));
+            }
+        }
+    }
+
+    //images one pixel wide or tall, and windows bigger than the image, are mostly padding
+    @Test
+    void testThinImages() {
+        int[][] sizes = { { 1, 19 }, { 19, 1 }, { 1, 1 }, { 2, 3 } };
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            for (int[] size : sizes) {
+                BufferedImage input = ImagePixelsTest.createRandomImage(size[0], size[1], type, 9);
+                for (int radius : new int[] { 1, 2, 4 }) {
+                    assertSameImage(referenceMedian(input, radius), new MedianFilter(radius).apply(input));
+                }
+            }
+        }
+    }
+
+    //a patch of mostly opaque and mostly clear pixels, where ordering alpha as a signed byte matters
+    @Test
+    void testAlphaOrdering() {
+        BufferedImage input = new BufferedImage(6, 6, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 6; x++) {
+                int alpha = (x + y) % 3 == 0 ? 0x10 : (x * y) % 2 == 0 ? 0xF0 : 0x80;
+                input.setRGB(x, y, alpha << 24 | 0x336699);
+            }
+        }
+        for (int radius : new int[] { 1, 2 }) {
+            assertSameImage(referenceMedian(input, radius), new MedianFilter(radius).apply(input));
+        }
+    }
+
+    //the median filter as it was first written: sort each channel of the (2r+1)^2 neighbourhood, with the
+    //neighbours outside the image left as zero and alpha sign-extended
+    private static BufferedImage referenceMedian(BufferedImage input, int radius) {
+        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
+        int size = (2 * radius + 1) * (2 * radius + 1);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                int[][] channels = new int[4][size];
+                int index = 0;
+                for (int j = Math.max(0, y - radius); j <= Math.min(input.getHeight() - 1, y + radius); j++) {
+                    for (int i = Math.max(0, x - radius); i <= Math.min(input.getWidth() - 1, x + radius); i++) {
+                        int argb = input.getRGB(i, j);
+                        channels[0][index] = (argb & 0xFF000000) >> 24;
+                        channels[1][index] = (argb & 0x00FF0000) >> 16;
+                        channels[2][index] = (argb & 0x0000FF00) >> 8;
+                        channels[3][index] = argb & 0x000000FF;
+                        index++;
+                    }
+                }
+                int argb = 0;
+                for (int c = 0; c < 4; c++) {
+                    Arrays.sort(channels[c]);
+                    argb |= channels[c][size / 2] << (24 - 8 * c);
+                }
+                output.setRGB(x, y, argb);
+            }
+        }
+        return output;
+    }
+
+    static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "Mismatch at (" + x + ", " + y + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.*;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class OperationPipelineTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY
+    };
+
+    //runs of pixel operations are one stage each, with anything else in a stage of its own
+    @Test
+    void testStagesGroupPixelOperations() {
+        List<ImageOperation> operations = Arrays.asList(new ConvertToGrey(), new ImageInversion(),
+                new SharpenFilter(), new BrightnessAndContrast(10, 10), new SaturationFilter(1.5f),
+                new ImageInversion(), new ImageRotate(90), new ImageInversion());
+        List<OperationPipeline.Stage> stages = OperationPipeline.stages(operations);
+        int[] sizes = new int[stages.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = stages.get(i).size();
+        }
+        assertArrayEquals(new int[] { 2, 1, 3, 1, 1 }, sizes);
+    }
+
+    //a fused run, whether all lookup tables or mixed with per-pixel operations, gives what the operations
+    //give applied one at a time, including for images that can't be fused and go one at a time anyway
+    @Test
+    void testFusedRunsMatchOneAtATime() {
+        List<List<ImageOperation>> runs = Arrays.asList(
+                Arrays.asList(new BrightnessAndContrast(20, 10), new ImageInversion(), new ColourChannelCycling(2),
+                        new TransparencyImage(60)),
+                Arrays.asList(new ConvertToGrey(), new BrightnessAndContrast(-30, 40), new SaturationFilter(1.5f),
+                        new ImageInversion()),
+                Arrays.asList(new TransparencyImage(50), new SaturationFilter(0.5f), new ColourChannelCycling(5),
+                        new BrightnessAndContrast(0, -60)),
+                Arrays.asList(new SaturationFilter(2f), new ConvertToGrey()));
+        for (int type : TYPES) {
+            for (List<ImageOperation> run : runs) {
+                BufferedImage input = ImagePixelsTest.createRandomImage(23, 17, type, 11);
+                assertSameAsOneAtATime(run, input);
+            }
+        }
+    }
+
+    //runs of blurs that can be applied to planes and point operations are one stage, stopping at a blur small
+    //enough to be convolved or at a pixel operation that mixes channels, like greyscale, while a lone planar
+    //blur isn't a planar run
+    @Test
+    void testStagesGroupPlanarRuns() {
+        List<ImageOperation> operations = Arrays.asList(new MeanFilter(2), new BrightnessAndContrast(10, 10),
+                new GaussianBlurFilter(12), new ImageInversion(), new GaussianBlurFilter(5), new MeanFilter(1),
+                new ImageRotate(90), new GaussianBlurFilter(20), new ImageInversion(), new ConvertToGrey());
+        List<OperationPipeline.Stage> stages = OperationPipeline.stages(operations);
+        int[] sizes = new int[stages.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = stages.get(i).size();
+        }
+        assertArrayEquals(new int[] { 4, 1, 1, 1, 2, 1 }, sizes);
+    }
+
+    //runs applied to planes give exactly what the operations give one at a time, including point operations
+    //that add alpha to an opaque image partway through
+    @Test
+    void testPlanarRunsMatchOneAtATime() {
+        List<List<ImageOperation>> runs = Arrays.asList(
+                Arrays.asList(new MeanFilter(2), new BrightnessAndContrast(20, -10), new GaussianBlurFilter(12)),
+                Arrays.asList(new GaussianBlurFilter(15), new ImageInversion(), new TransparencyImage(40),
+                        new MeanFilter(3)),
+                Arrays.asList(new BrightnessAndContrast(-15, 30), new MeanFilter(1), new ImageInversion(),
+                        new ColourChannelCycling(3)),
+                Arrays.asList(new TransparencyImage(70), new GaussianBlurFilter(11), new GaussianBlurFilter(25)));
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            for (List<ImageOperation> run : runs) {
+                assertSameAsOneAtATime(run, ImagePixelsTest.createRandomImage(41, 29, type, 12));
+            }
+        }
+    }
+
+    //images whose pixels aren't packed ints can't be unpacked into planes exactly, so planar runs fall back to
+    //applying the operations one at a time
+    @Test
+    void testPlanarRunsFallBackForOtherTypes() {
+        List<ImageOperation> run = Arrays.asList(new MeanFilter(2), new BrightnessAndContrast(20, -10),
+                new GaussianBlurFilter(12), new ImageInversion());
+        for (int type : new int[] { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+                BufferedImage.TYPE_BYTE_GRAY }) {
+            assertSameAsOneAtATime(run, ImagePixelsTest.createRandomImage(41, 29, type, 13));
+        }
+    }
+
+    //on an image big enough to filter in strips, runs of neighbourhood operations are one stage, leaving out
+    //random scattering, which scatters a strip differently from the whole image, and stopping before the aprons
+    //add up to more than 64 rows, so a large gaussian blur is applied to planes instead
+    @Test
+    void testStagesGroupStripRuns() {
+        List<ImageOperation> operations = Arrays.asList(new MeanFilter(2), new SobelFilter("Horizontal", false),
+                new BrightnessAndContrast(10, 10), new RandomScatteringFilter(2, 5), new MedianFilter(3),
+                new GaussianBlurFilter(30), new ImageInversion(), new ImageInversion(),
+                new BrightnessAndContrast(-10, 5));
+        List<ImageOperation> deep = Arrays.asList(new MeanFilter(20), new MeanFilter(20), new MeanFilter(20),
+                new MeanFilter(20));
+        BufferedImage image = ImagePixelsTest.createRandomImage(8, 8, BufferedImage.TYPE_INT_ARGB, 14);
+
+        assertArrayEquals(new int[] { 3, 1, 1, 4 }, sizes(OperationPipeline.stages(operations, image, 64)));
+        assertArrayEquals(new int[] { 3, 1 }, sizes(OperationPipeline.stages(deep, image, 64)));
+        //one pixel short of the size that is filtered in strips
+        assertArrayEquals(new int[] { 1, 1, 1, 1, 1, 4 }, sizes(OperationPipeline.stages(operations, image, 65)));
+        assertArrayEquals(new int[] { 4 }, sizes(OperationPipeline.stages(deep, image, 65)));
+    }
+
+    //filtering in strips of any height, from one row to more than the whole image, gives exactly what the
+    //operations give one at a time to the whole image, and leaves the input as it was
+    @Test
+    void testStripsMatchWholeImage() {
+        List<List<ImageOperation>> runs = Arrays.asList(
+                Arrays.asList(new MeanFilter(2), new SobelFilter("Horizontal", false),
+                        new BrightnessAndContrast(20, 10)),
+                Arrays.asList(new MedianFilter(2), new EmbossFilter("NORTH", true), new ImageInversion(),
+                        new MeanFilter(1)),
+                Arrays.asList(new GaussianBlurFilter(4), new SharpenFilter()),
+                Arrays.asList(new BrightnessAndContrast(-20, 30), new MeanFilter(3), new SaturationFilter(1.5f),
+                        new LaplacianFilter(true)));
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+                BufferedImage.TYPE_3BYTE_BGR }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(37, 23, type, 15);
+            BufferedImage copy = EditableImage.deepCopy(input);
+            for (List<ImageOperation> run : runs) {
+                BufferedImage expected = EditableImage.deepCopy(input);
+                for (ImageOperation operation : run) {
+                    expected = operation.apply(expected);
+                }
+                for (int rows : new int[] { 1, 4, 9, 23, 40 }) {
+                    BufferedImage actual = OperationPipeline.applyInStrips(run, input, rows);
+                    assertEquals(expected.getType(), actual.getType());
+                    MedianFilterTest.assertSameImage(expected, actual);
+                }
+                MedianFilterTest.assertSameImage(copy, input);
+            }
+        }
+    }
+
+    //the number of operations in each stage
+    private static int[] sizes(List<OperationPipeline.Stage> stages) {
+        int[] sizes = new int[stages.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = stages.get(i).size();
+        }
+        return sizes;
+    }
+
+    //applies operations through the pipeline and one at a time, each to its own copy of the input, and checks
+    //the results are the same type of image with the same pixels
+    static void assertSameAsOneAtATime(List<? extends ImageOperation> operations, BufferedImage input) {
+        BufferedImage expected = EditableImage.deepCopy(input);
+        for (ImageOperation operation : operations) {
+            expected = operation.apply(expected);
+        }
+        BufferedImage actual = OperationPipeline.apply(operations, EditableImage.deepCopy(input));
+        assertEquals(expected.getType(), actual.getType());
+        MedianFilterTest.assertSameImage(expected, actual);
+    }
+}
@@ -0,0 +1,145 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Color;
+import java.awt.image.*;
+
+
+public class PointOperationTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR
+    };
+
+    //the lookup tables give what working out each pixel's colour did, on a copy of the same type
+    @Test
+    void testBrightnessAndContrast() {
+        int[][] settings = { { 0, 0 }, { -50, 30 }, { 20, -40 }, { 100, 100 }, { -100, -100 } };
+        for (int type : TYPES) {
+            for (int[] setting : settings) {
+                BufferedImage input = createImage(type);
+                BufferedImage expected = referenceBrightnessAndContrast(input, setting[0], setting[1]);
+                BufferedImage actual = new BrightnessAndContrast(setting[0], setting[1]).apply(input);
+                assertNotSame(input, actual);
+                assertEquals(type, actual.getType());
+                MedianFilterTest.assertSameImage(expected, actual);
+            }
+        }
+    }
+
+    //inverting changes the image it is given, as it always has
+    @Test
+    void testInversion() {
+        for (int type : TYPES) {
+            BufferedImage expected = createImage(type);
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    expected.setRGB(x, y, expected.getRGB(x, y) ^ 0x00FFFFFF);
+                }
+            }
+            BufferedImage input = createImage(type);
+            assertSame(input, new ImageInversion().apply(input));
+            MedianFilterTest.assertSameImage(expected, input);
+        }
+    }
+
+    //every reordering of the colour channels, with alpha left alone
+    @Test
+    void testChannelCycling() {
+        for (int type : TYPES) {
+            for (int option = 0; option <= 5; option++) {
+                BufferedImage input = createImage(type);
+                BufferedImage expected = referenceChannelCycling(input, option);
+                BufferedImage actual = new ColourChannelCycling(option).apply(input);
+                assertEquals(type, actual.getType());
+                MedianFilterTest.assertSameImage(expected, actual);
+            }
+        }
+    }
+
+    //transparency sets the alpha of every pixel that isn't already clear, and always gives an ARGB image
+    @Test
+    void testTransparency() {
+        for (int type : TYPES) {
+            for (int level : new int[] { 0, 1, 37, 50, 99, 100 }) {
+                BufferedImage input = createImage(type);
+                BufferedImage expected = referenceTransparency(input, level);
+                BufferedImage actual = new TransparencyImage(level).apply(input);
+                assertEquals(BufferedImage.TYPE_INT_ARGB, actual.getType());
+                MedianFilterTest.assertSameImage(expected, actual);
+            }
+        }
+    }
+
+    //a random image with some fully clear pixels
+    private static BufferedImage createImage(int type) {
+        BufferedImage image = ImagePixelsTest.createRandomImage(19, 13, type, 10);
+        for (int x = 0; x < 19; x += 3) {
+            image.setRGB(x, x % 13, image.getRGB(x, x % 13) & 0x00FFFFFF);
+        }
+        return image;
+    }
+
+    //brightness and contrast as they were first written, one pixel at a time
+    private static BufferedImage referenceBrightnessAndContrast(BufferedImage input, double brightness,
+            double contrast) {
+        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
+                input.isAlphaPremultiplied(), null);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                int argb = input.getRGB(x, y);
+                int result = argb & 0xFF000000;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int value = (argb >> shift) & 0xFF;
+                    int colour = (int) Math.round(((1 + (contrast / 100)) * (value - 127.5))
+                            + (127.5 * (1 + (brightness / 100))));
+                    result |= Math.min(Math.max(colour, 0), 255) << shift;
+                }
+                output.setRGB(x, y, result);
+            }
+        }
+        return output;
+    }
+
+    //channel cycling as it was first written
+    private static BufferedImage referenceChannelCycling(BufferedImage input, int option) {
+        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null),
+                input.isAlphaPremultiplied(), null);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                int argb = input.getRGB(x, y);
+                int a = (argb >> 24) & 0xFF;
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                int[][] orders = { { r, g, b }, { r, b, g }, { b, r, g }, { g, b, r }, { g, r, b }, { b, g, r } };
+                int[] order = orders[option];
+                output.setRGB(x, y, (a << 24) | (order[0] << 16) | (order[1] << 8) | order[2]);
+            }
+        }
+        return output;
+    }
+
+    //transparency as it was first written, through Color
+    private static BufferedImage referenceTransparency(BufferedImage input, int level) {
+        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int alpha = (int) (level * 2.55);
+        for (int y = 0; y < input.getHeight(); y++) {
+            for (int x = 0; x < input.getWidth(); x++) {
+                int argb = input.getRGB(x, y);
+                Color color = new Color(argb, true);
+                if (color.getAlpha() != 0) {
+                    output.setRGB(x, y, new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha).getRGB());
+                } else {
+                    output.setRGB(x, y, argb);
+                }
+            }
+        }
+        return output;
+    }
+}
@@ -0,0 +1,88 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.*;
+import java.io.*;
+
+
+public class RandomScatteringFilterTest {
+
+    //the same seed scatters the same way every time, and from a fresh filter
+    @Test
+    void testSameSeedSameImage() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(45, 38, BufferedImage.TYPE_INT_ARGB, 23);
+        RandomScatteringFilter filter = new RandomScatteringFilter(3, 42L);
+        BufferedImage first = filter.apply(input);
+        MedianFilterTest.assertSameImage(first, filter.apply(input));
+        MedianFilterTest.assertSameImage(first, new RandomScatteringFilter(3, 42L).apply(input));
+        assertFalse(sameImage(first, new RandomScatteringFilter(3, 43L).apply(input)));
+    }
+
+    //the rows come out the same whether they are filled on one thread or shared between several
+    @Test
+    void testSameOnAnyNumberOfThreads() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(64, 200, BufferedImage.TYPE_INT_RGB, 24);
+        RandomScatteringFilter filter = new RandomScatteringFilter(4, -7L);
+        int parallelism = TileScheduler.getParallelism();
+        try {
+            TileScheduler.setParallelism(1);
+            BufferedImage serial = filter.apply(input);
+            TileScheduler.setParallelism(4);
+            MedianFilterTest.assertSameImage(serial, filter.apply(input));
+            TileScheduler.setParallelism(7);
+            MedianFilterTest.assertSameImage(serial, filter.apply(input));
+        } finally {
+            TileScheduler.setParallelism(parallelism);
+        }
+    }
+
+    //a filter saved with the operations and loaded again scatters the same way, as on replay from a file
+    @Test
+    void testSameAfterSerialization() throws Exception {
+        BufferedImage input = ImagePixelsTest.createRandomImage(30, 25, BufferedImage.TYPE_INT_ARGB, 25);
+        RandomScatteringFilter filter = new RandomScatteringFilter(5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(filter);
+        }
+        RandomScatteringFilter loaded;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            loaded = (RandomScatteringFilter) in.readObject();
+        }
+        MedianFilterTest.assertSameImage(filter.apply(input), loaded.apply(input));
+    }
+
+    //every pixel still comes from within the radius of where it ends up
+    @Test
+    void testPixelsComeFromWithinRadius() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(20, 15, BufferedImage.TYPE_INT_ARGB, 26);
+        int radius = 2;
+        BufferedImage output = new RandomScatteringFilter(radius, 5L).apply(input);
+        for (int y = 0; y < 15; y++) {
+            for (int x = 0; x < 20; x++) {
+                boolean found = false;
+                for (int j = Math.max(0, y - radius); j <= Math.min(14, y + radius); j++) {
+                    for (int i = Math.max(0, x - radius); i <= Math.min(19, x + radius); i++) {
+                        found |= input.getRGB(i, j) == output.getRGB(x, y);
+                    }
+                }
+                assertTrue(found, "Pixel at (" + x + ", " + y + ") came from too far away");
+            }
+        }
+    }
+
+    private static boolean sameImage(BufferedImage a, BufferedImage b) {
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
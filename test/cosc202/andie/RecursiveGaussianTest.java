@@ -0,0 +1,76 @@
+package cosc202.andie;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.*;
+
+public class RecursiveGaussianTest {
+
+    //draws one of the images the blur is measured on: a one pixel checkerboard, a step, or a smooth gradient
+    private static BufferedImage createPattern(String pattern, int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v;
+                if (pattern.equals("checkerboard")) {
+                    v = (x + y) % 2 == 0 ? 255 : 0;
+                } else if (pattern.equals("step")) {
+                    v = x < width / 2 ? 0 : 255;
+                } else {
+                    v = (int) (127.5 + 127.5 * Math.sin(x * 0.05) * Math.cos(y * 0.07));
+                }
+                image.setRGB(x, y, (v << 24) | (v << 16) | ((255 - v) << 8) | ((v * 7) & 0xFF));
+            }
+        }
+        return image;
+    }
+
+    //the gaussian blur filter's large radii, which use the recursive filter, are within 2 levels of convolving
+    //with the full gaussian kernel it cuts off at three standard deviations, on noise, a checkerboard, a step
+    //and a smooth gradient
+    @Test
+    void testMatchesFullKernel() {
+        BufferedImage[] inputs = {
+            ImagePixelsTest.createRandomImage(70, 50, BufferedImage.TYPE_INT_ARGB, 50),
+            ImagePixelsTest.createRandomImage(70, 50, BufferedImage.TYPE_INT_RGB, 51),
+            createPattern("checkerboard", 70, 50, BufferedImage.TYPE_INT_ARGB),
+            createPattern("step", 70, 50, BufferedImage.TYPE_INT_ARGB),
+            createPattern("gradient", 70, 50, BufferedImage.TYPE_INT_ARGB)
+        };
+        for (int radius : new int[] { 11, 20, 33 }) {
+            float[] kernel = ConvolutionTest.gaussian(radius);
+            float[] full = ConvolutionTest.outer(kernel, kernel);
+            for (BufferedImage input : inputs) {
+                ConvolutionTest.assertWithin(
+                        ConvolutionTest.referenceConvolve(input, full, kernel.length, false, Convo2.EdgeMode.CLAMP),
+                        new GaussianBlurFilter(radius).apply(input), 2);
+            }
+        }
+    }
+
+    //a constant image comes out unchanged, however large the radius
+    @Test
+    void testConstantUnchanged() {
+        BufferedImage input = ConvolutionTest.createUniformImage(37, 23, 0xC8326496);
+        for (int radius : new int[] { 11, 60, 300 }) {
+            BufferedImage output = new BufferedImage(37, 23, BufferedImage.TYPE_INT_ARGB);
+            new RecursiveGaussian(radius / 3.0).filter(input, output);
+            ConvolutionTest.assertWithin(ConvolutionTest.toArray(input), output, 0);
+        }
+    }
+
+    //blurring the planes of an image gives exactly what blurring its packed pixels does
+    @Test
+    void testPlanarMatchesPacked() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(75, 41, type, 52);
+            for (int radius : new int[] { 11, 40 }) {
+                BufferedImage packed = new RecursiveGaussian(radius / 3.0).filter(input, new BufferedImage(75, 41, type));
+                BufferedImage planar = new RecursiveGaussian(radius / 3.0).filter(PlanarImage.of(input)).toImage();
+                assertEquals(type, planar.getType());
+                ConvolutionTest.assertWithin(ConvolutionTest.toArray(packed), planar, 0);
+            }
+        }
+    }
+}
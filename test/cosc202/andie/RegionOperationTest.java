@@ -0,0 +1,58 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class RegionOperationTest {
+
+    //regions in the middle, against each edge, covering a corner past the image, and a single pixel
+    private static final Rectangle[] REGIONS = {
+        new Rectangle(11, 8, 20, 13), new Rectangle(0, 5, 9, 30), new Rectangle(30, 0, 15, 6),
+        new Rectangle(-5, 25, 20, 20), new Rectangle(17, 17, 1, 1)
+    };
+
+    //inside the region the result is exactly what filtering the whole image gives, and outside it the
+    //image is left as it was
+    @Test
+    void testRegionMatchesWholeImage() {
+        List<NeighbourhoodOperation> operations = Arrays.asList(new MeanFilter(2), new MedianFilter(3),
+                new GaussianBlurFilter(4), new GaussianBlurFilter(15), new SharpenFilter(),
+                new EmbossFilter("SOUTH WEST", true), new SobelFilter("Horizontal", false),
+                new LaplacianFilter(true), new BrightnessAndContrast(30, -20), new ImageInversion(),
+                new SaturationFilter(1.7f), new ConvertToGrey());
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(40, 32, type, 21);
+            for (NeighbourhoodOperation operation : operations) {
+                BufferedImage whole = operation.apply(EditableImage.deepCopy(input));
+                for (Rectangle region : REGIONS) {
+                    BufferedImage image = EditableImage.deepCopy(input);
+                    assertSame(image, new RegionOperation(operation, region).apply(image));
+                    for (int y = 0; y < 32; y++) {
+                        for (int x = 0; x < 40; x++) {
+                            int expected = region.contains(x, y) ? whole.getRGB(x, y) : input.getRGB(x, y);
+                            assertEquals(expected, image.getRGB(x, y),
+                                    operation.getClass().getSimpleName() + " in " + region + " at (" + x + ", " + y + ")");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //a region entirely outside the image changes nothing
+    @Test
+    void testRegionOutsideImage() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(20, 10, BufferedImage.TYPE_INT_ARGB, 22);
+        BufferedImage image = EditableImage.deepCopy(input);
+        assertSame(image, new RegionOperation(new MeanFilter(1), new Rectangle(25, 3, 5, 5)).apply(image));
+        MedianFilterTest.assertSameImage(input, image);
+    }
+}
@@ -0,0 +1,98 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.*;
+
+
+public class ResamplerTest {
+
+    private static final int[][] SIZES = { { 40, 30 }, { 13, 7 }, { 97, 71 }, { 1, 1 }, { 3, 80 } };
+
+    //the weights for each output pixel add up to 1, so a flat colour stays exactly that colour whatever the
+    //filter and whether the image grows or shrinks, even for the filters with negative lobes
+    @Test
+    void testWeightsSumToOne() {
+        BufferedImage input = ConvolutionTest.createUniformImage(40, 30, 0xC8326496);
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            for (int[] size : SIZES) {
+                BufferedImage output = Resampler.resize(input, size[0], size[1], filter);
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        assertEquals(0xC8326496, output.getRGB(x, y), filter + " to " + size[0] + "x" + size[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    //colours are weighted by their alpha, so the colour of a clear pixel doesn't bleed into its neighbours
+    @Test
+    void testAlphaIsPremultiplied() {
+        BufferedImage input = new BufferedImage(24, 18, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 18; y++) {
+            for (int x = 0; x < 24; x++) {
+                input.setRGB(x, y, (x + y) % 2 == 0 ? 0x00FF0000 : 0xFF0000FF);
+            }
+        }
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            for (int[] size : SIZES) {
+                BufferedImage output = Resampler.resize(input, size[0], size[1], filter);
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        int argb = output.getRGB(x, y);
+                        if (argb >>> 24 != 0) {
+                            assertEquals(0x0000FF, argb & 0xFFFFFF, filter + " at (" + x + ", " + y + ")");
+                        }
+                    }
+                }
+            }
+        }
+        // halving with a box filter gives half coverage everywhere
+        BufferedImage half = Resampler.resize(input, 12, 9, Resampler.Filter.BOX);
+        assertEquals(0x800000FF, half.getRGB(5, 4));
+    }
+
+    //halving an opaque image with a box filter averages each 2x2 block, rounded to the nearest level
+    @Test
+    void testBoxHalvingAveragesBlocks() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(30, 22, type, 19);
+            BufferedImage output = Resampler.resize(input, 15, 11, Resampler.Filter.BOX);
+            for (int y = 0; y < 11; y++) {
+                for (int x = 0; x < 15; x++) {
+                    int expected = 0xFF000000;
+                    for (int shift = 16; shift >= 0; shift -= 8) {
+                        int sum = 0;
+                        for (int j = 0; j < 2; j++) {
+                            for (int i = 0; i < 2; i++) {
+                                sum += (input.getRGB(2 * x + i, 2 * y + j) >> shift) & 0xFF;
+                            }
+                        }
+                        expected |= ((sum + 2) / 4) << shift;
+                    }
+                    assertEquals(expected, output.getRGB(x, y), "Mismatch at (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+
+    //resizing to the same size leaves every visible pixel as it was, whatever its alpha
+    @Test
+    void testSameSizeIsUnchanged() {
+        BufferedImage input = ImagePixelsTest.createRandomImage(25, 16, BufferedImage.TYPE_INT_ARGB, 20);
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            BufferedImage output = Resampler.resize(input, 25, 16, filter);
+            for (int y = 0; y < 16; y++) {
+                for (int x = 0; x < 25; x++) {
+                    int argb = input.getRGB(x, y);
+                    assertTrue((argb >>> 24) > 0 ? output.getRGB(x, y) == argb : output.getRGB(x, y) == 0,
+                            filter + " at (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.*;
+import java.util.Random;
+
+
+public class SaturationFilterTest {
+
+    private static final float[] LEVELS = { -1f, 0f, 0.3f, 0.5f, 1f, 1.5f, 2f, 5f };
+
+    //the fixed point adjustment is within a level of going through HSB, for every grey and a spread of colours
+    @Test
+    void testMatchesHSB() {
+        Random random = new Random(12);
+        for (float level : LEVELS) {
+            SaturationFilter filter = new SaturationFilter(level);
+            for (int i = 0; i < 20000; i++) {
+                int argb = random.nextInt();
+                assertWithinALevel(reference(argb, level), filter.filterPixel(argb));
+            }
+            for (int grey = 0; grey < 256; grey++) {
+                int argb = 0x80000000 | grey * 0x010101;
+                assertWithinALevel(reference(argb, level), filter.filterPixel(argb));
+            }
+            // fully saturated and nearly grey colours, at the ends of the range
+            int[] edges = { 0xFF0000, 0x00FF00, 0x0000FF, 0xFFFF00, 0x010000, 0xFEFFFF, 0x7F8080, 0xFF00FF };
+            for (int argb : edges) {
+                assertWithinALevel(reference(argb, level), filter.filterPixel(argb));
+            }
+        }
+    }
+
+    //applied to a whole image, the result is opaque, of the same type, and within a level of HSB
+    @Test
+    void testApplyMatchesHSB() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage input = ImagePixelsTest.createRandomImage(21, 14, type, 13);
+            for (float level : LEVELS) {
+                BufferedImage output = new SaturationFilter(level).apply(input);
+                assertEquals(type, output.getType());
+                for (int y = 0; y < 14; y++) {
+                    for (int x = 0; x < 21; x++) {
+                        assertWithinALevel(reference(input.getRGB(x, y), level), output.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    //saturation as it was first adjusted, through HSB
+    private static int reference(int argb, float level) {
+        float[] hsb = Color.RGBtoHSB((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, null);
+        hsb[1] = Math.min(1.0f, Math.max(0.0f, hsb[1] * level));
+        return Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]);
+    }
+
+    private static void assertWithinALevel(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int difference = Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF));
+            assertTrue(difference <= 1,
+                    "expected " + Integer.toHexString(expected) + " got " + Integer.toHexString(actual));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package cosc202.andie;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+//these only test anything when the Vector API kernels are loaded, which needs Java 17, src/java17 on the
+//class path and --add-modules jdk.incubator.vector (the testVector task); otherwise they are skipped
+public class SimdKernelsTest {
+
+    //the lengths of run compared, shorter than a vector, whole vectors, and whole vectors with some left over
+    private static final int[] RUNS = { 0, 1, 3, 4, 7, 8, 15, 16, 17, 31, 33, 64, 100 };
+
+    //a row of random pixels, with the channels often at 0 or 255 so that the sums are clamped
+    private static int[] randomPixels(Random random, int count) {
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            for (int c = 0; c < 4; c++) {
+                int v = random.nextInt(4) == 0 ? 255 * random.nextInt(2) : random.nextInt(256);
+                pixels[i] = (pixels[i] << 8) | v;
+            }
+        }
+        return pixels;
+    }
+
+    //the scalar loop of Convo2's full kernels, tap by tap in the same order
+    private static void convolve(int[] src, int[] taps, float[] weights, int[] dst, int out, int from, int to,
+            float middle, boolean alpha, int storeMask) {
+        for (int x = from; x < to; x++) {
+            float sumAlpha = 0, sumRed = 0, sumGreen = 0, sumBlue = 0;
+            for (int i = 0; i < taps.length; i++) {
+                int argb = src[taps[i] + x];
+                sumAlpha += weights[i] * ((argb >> 24) & 0xFF);
+                sumRed += weights[i] * ((argb >> 16) & 0xFF);
+                sumGreen += weights[i] * ((argb >> 8) & 0xFF);
+                sumBlue += weights[i] * (argb & 0xFF);
+            }
+            int a = alpha ? (int) Math.min(Math.max(sumAlpha + middle, 0), 255) : 255;
+            int r = (int) Math.min(Math.max(sumRed + middle, 0), 255);
+            int g = (int) Math.min(Math.max(sumGreen + middle, 0), 255);
+            int b = (int) Math.min(Math.max(sumBlue + middle, 0), 255);
+            dst[out + x] = ((a << 24) | (r << 16) | (g << 8) | b) & storeMask;
+        }
+    }
+
+    //the scalar loop of Convo2's integer kernels, two channels to an int
+    private static void convolveInteger(int[] src, int[] positiveTaps, int[] positiveWeights, int[] negativeTaps,
+            int[] negativeWeights, int[] dst, int out, int from, int to, int middle, int shift, boolean alpha,
+            int storeMask) {
+        for (int x = from; x < to; x++) {
+            int positiveAG = 0, positiveRB = 0, negativeAG = 0, negativeRB = 0;
+            for (int i = 0; i < positiveTaps.length; i++) {
+                int argb = src[positiveTaps[i] + x];
+                positiveAG += positiveWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+                positiveRB += positiveWeights[i] * (argb & 0x00FF00FF);
+            }
+            for (int i = 0; i < negativeTaps.length; i++) {
+                int argb = src[negativeTaps[i] + x];
+                negativeAG += negativeWeights[i] * ((argb >>> 8) & 0x00FF00FF);
+                negativeRB += negativeWeights[i] * (argb & 0x00FF00FF);
+            }
+            int a = alpha ? channel((positiveAG >>> 16) - (negativeAG >>> 16) + middle, shift) : 255;
+            int r = channel((positiveRB >>> 16) - (negativeRB >>> 16) + middle, shift);
+            int g = channel((positiveAG & 0xFFFF) - (negativeAG & 0xFFFF) + middle, shift);
+            int b = channel((positiveRB & 0xFFFF) - (negativeRB & 0xFFFF) + middle, shift);
+            dst[out + x] = ((a << 24) | (r << 16) | (g << 8) | b) & storeMask;
+        }
+    }
+
+    private static int channel(int sum, int shift) {
+        return sum <= 0 ? 0 : Math.min(sum >> shift, 255);
+    }
+
+    //the vectorised float convolution gives exactly what the scalar loop does, for runs of every length, any
+    //number of taps, with and without alpha and the offset, and storing with or without alpha
+    @Test
+    void testConvolveMatchesScalar() {
+        SimdKernels simd = SimdKernels.INSTANCE;
+        assumeTrue(simd != null, "the Vector API kernels are not loaded");
+        Random random = new Random(80);
+        for (int run : RUNS) {
+            for (int count : new int[] { 1, 2, 9, 25 }) {
+                int[] src = randomPixels(random, run + 3 * 40 + 5);
+                int[] taps = new int[count];
+                float[] weights = new float[count];
+                for (int i = 0; i < count; i++) {
+                    taps[i] = random.nextInt(3 * 40);
+                    weights[i] = (random.nextFloat() - 0.3f) * 4 / count;
+                }
+                for (int variant = 0; variant < 4; variant++) {
+                    boolean alpha = (variant & 1) != 0;
+                    float middle = (variant & 2) != 0 ? 128 : 0;
+                    int storeMask = random.nextBoolean() ? -1 : 0x00FFFFFF;
+                    int from = random.nextInt(5);
+                    int[] expected = new int[run + 10];
+                    int[] actual = new int[run + 10];
+                    convolve(src, taps, weights, expected, 2, from, from + run, middle, alpha, storeMask);
+                    simd.convolve(src, taps, weights, actual, 2, from, from + run, middle, alpha, storeMask);
+                    assertArrayEquals(expected, actual, "run " + run + " taps " + count + " variant " + variant);
+                }
+            }
+        }
+    }
+
+    //the vectorised integer convolution gives exactly what the scalar loop does, up to the largest weights the
+    //integer path takes
+    @Test
+    void testConvolveIntegerMatchesScalar() {
+        SimdKernels simd = SimdKernels.INSTANCE;
+        assumeTrue(simd != null, "the Vector API kernels are not loaded");
+        Random random = new Random(81);
+        int[][][] kernels = {
+            { { 1, 1 }, { 2 } },
+            { { 2, 1, 1 }, { 1, 1, 2 } },
+            { { 128, 129 }, {} },
+            { {}, { 128, 129 } },
+            { { 1 }, { 256 } }
+        };
+        for (int run : RUNS) {
+            for (int[][] kernel : kernels) {
+                int[] src = randomPixels(random, run + 60);
+                int[] positiveTaps = new int[kernel[0].length];
+                int[] negativeTaps = new int[kernel[1].length];
+                for (int i = 0; i < positiveTaps.length; i++) {
+                    positiveTaps[i] = random.nextInt(60);
+                }
+                for (int i = 0; i < negativeTaps.length; i++) {
+                    negativeTaps[i] = random.nextInt(60);
+                }
+                for (int variant = 0; variant < 4; variant++) {
+                    boolean alpha = (variant & 1) != 0;
+                    int shift = random.nextInt(3);
+                    int middle = (variant & 2) != 0 ? 128 << shift : 0;
+                    int[] expected = new int[run];
+                    int[] actual = new int[run];
+                    convolveInteger(src, positiveTaps, kernel[0], negativeTaps, kernel[1], expected, 0, 0, run,
+                            middle, shift, alpha, -1);
+                    simd.convolveInteger(src, positiveTaps, kernel[0], negativeTaps, kernel[1], actual, 0, 0, run,
+                            middle, shift, alpha, -1);
+                    assertArrayEquals(expected, actual, "run " + run + " variant " + variant);
+                }
+            }
+        }
+    }
+
+    //the vectorised lookup gives exactly what looking up each pixel does, with channels moved between places,
+    //for opaque and translucent pixels, out of place and in place
+    @Test
+    void testLookupMatchesScalar() {
+        SimdKernels simd = SimdKernels.INSTANCE;
+        assumeTrue(simd != null, "the Vector API kernels are not loaded");
+        Random random = new Random(82);
+        for (int run : RUNS) {
+            int[][] tables = new int[4][256];
+            for (int c = 0; c < 4; c++) {
+                for (int v = 0; v < 256; v++) {
+                    tables[c][v] = random.nextInt(256) << (24 - 8 * c);
+                }
+            }
+            int[] shifts = { 24, 8, 0, 16 };
+            int[] src = randomPixels(random, run + 5);
+            for (int opaque : new int[] { 0, 0xFF000000 }) {
+                int[] expected = new int[run + 5];
+                for (int x = 0; x < run; x++) {
+                    int argb = src[3 + x] | opaque;
+                    expected[1 + x] = (tables[0][(argb >>> shifts[0]) & 0xFF] | tables[1][(argb >>> shifts[1]) & 0xFF]
+                            | tables[2][(argb >>> shifts[2]) & 0xFF] | tables[3][(argb >>> shifts[3]) & 0xFF])
+                            & 0x00FFFFFF;
+                }
+                int[] actual = new int[run + 5];
+                simd.lookup(src, 3, actual, 1, run, opaque, tables, shifts, 0x00FFFFFF);
+                assertArrayEquals(expected, actual, "run " + run);
+
+                int[] inPlace = src.clone();
+                simd.lookup(inPlace, 3, inPlace, 3, run, opaque, tables, shifts, 0x00FFFFFF);
+                for (int x = 0; x < run; x++) {
+                    actual[1 + x] = inPlace[3 + x];
+                }
+                assertArrayEquals(expected, actual, "in place, run " + run);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package cosc202.andie;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+
+public class SnapshotCacheTest {
+
+    private static final long MILLIS = 1000000L;
+
+    //snapshots are wanted every interval operations, and never at the start or twice at one position
+    @Test
+    void testWantsOnInterval() {
+        SnapshotCache cache = new SnapshotCache(3);
+        cache.setMinCost(1000);
+        for (int position = 1; position <= 7; position++) {
+            cache.record(position, MILLIS);
+        }
+
+        assertFalse(cache.wants(0));
+        assertFalse(cache.wants(1));
+        assertFalse(cache.wants(2));
+        assertTrue(cache.wants(3));
+        assertFalse(cache.wants(4));
+        assertTrue(cache.wants(6));
+
+        cache.put(3, createImage(4, 4));
+        assertFalse(cache.wants(3));
+    }
+
+    //with no interval only operations at least as slow as the minimum cost are wanted, once their cost is recorded
+    @Test
+    void testWantsExpensiveOperations() {
+        SnapshotCache cache = new SnapshotCache(0);
+        cache.setMinCost(100);
+        cache.record(1, 50 * MILLIS);
+        cache.record(2, 100 * MILLIS);
+        cache.record(3, 400 * MILLIS);
+
+        assertFalse(cache.wants(1));
+        assertTrue(cache.wants(2));
+        assertTrue(cache.wants(3));
+        assertFalse(cache.wants(4));
+        assertFalse(cache.wants(5));
+    }
+
+    //a snapshot bigger than the whole budget is not stored at all, while one that fits is
+    @Test
+    void testPutRejectsSnapshotOverBudget() {
+        SnapshotCache cache = new SnapshotCache(1);
+        long small = SnapshotCache.sizeOf(createImage(10, 10));
+        cache.setBudget(2 * small);
+
+        cache.put(1, createImage(20, 20));
+        assertFalse(cache.contains(1));
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(cache.nearest(1));
+
+        cache.put(1, createImage(10, 10));
+        assertTrue(cache.contains(1));
+        assertEquals(small, cache.getUsedBytes());
+    }
+
+    //when only one snapshot fits, the one after a cheap flip goes before the one after an expensive median,
+    //whichever was taken first
+    @Test
+    void testEvictsCheapOperationFirst() {
+        SnapshotCache medianFirst = new SnapshotCache(1);
+        medianFirst.setBudget(SnapshotCache.sizeOf(createImage(10, 10)));
+        medianFirst.record(1, 500 * MILLIS);
+        medianFirst.record(2, MILLIS);
+        medianFirst.put(1, createImage(10, 10));
+        medianFirst.put(2, createImage(10, 10));
+        assertTrue(medianFirst.contains(1));
+        assertFalse(medianFirst.contains(2));
+
+        SnapshotCache flipFirst = new SnapshotCache(1);
+        flipFirst.setBudget(SnapshotCache.sizeOf(createImage(10, 10)));
+        flipFirst.record(1, MILLIS);
+        flipFirst.record(2, 500 * MILLIS);
+        flipFirst.put(1, createImage(10, 10));
+        flipFirst.put(2, createImage(10, 10));
+        assertFalse(flipFirst.contains(1));
+        assertTrue(flipFirst.contains(2));
+        assertEquals(SnapshotCache.sizeOf(createImage(10, 10)), flipFirst.getUsedBytes());
+    }
+
+    //shrinking the budget evicts down to it
+    @Test
+    void testSetBudgetEvicts() {
+        SnapshotCache cache = new SnapshotCache(1);
+        long size = SnapshotCache.sizeOf(createImage(10, 10));
+        for (int position = 1; position <= 3; position++) {
+            cache.record(position, position * MILLIS);
+            cache.put(position, createImage(10, 10));
+        }
+        assertEquals(3 * size, cache.getUsedBytes());
+
+        cache.setBudget(size);
+        assertEquals(size, cache.getUsedBytes());
+        cache.setBudget(0);
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(cache.nearest(3));
+    }
+
+    //invalidating drops the snapshots and costs from a position on, and the bytes they used
+    @Test
+    void testInvalidateFromTrimsSnapshotsAndCosts() {
+        SnapshotCache cache = new SnapshotCache(0);
+        cache.setMinCost(100);
+        long size = SnapshotCache.sizeOf(createImage(10, 10));
+        for (int position = 1; position <= 4; position++) {
+            cache.record(position, 500 * MILLIS);
+        }
+        cache.put(2, createImage(10, 10));
+        cache.put(4, createImage(10, 10));
+        assertTrue(cache.wants(3));
+
+        cache.invalidateFrom(3);
+        assertTrue(cache.contains(2));
+        assertFalse(cache.contains(4));
+        assertEquals(size, cache.getUsedBytes());
+        assertEquals(2, (int) cache.nearest(5).getKey());
+        // the cost of reaching position 3 went with it
+        assertFalse(cache.wants(3));
+
+        cache.invalidateFrom(2);
+        assertFalse(cache.contains(2));
+        assertEquals(0, cache.getUsedBytes());
+        assertTrue(cache.wants(1));
+        assertFalse(cache.wants(2));
+    }
+
+    //memory reserved outside the cache evicts snapshots to make room, leaves less room for new ones, and
+    //isn't reserved at all if it is bigger than the whole budget
+    @Test
+    void testReserveCountsAgainstBudget() {
+        SnapshotCache cache = new SnapshotCache(1);
+        long size = SnapshotCache.sizeOf(createImage(10, 10));
+        cache.setBudget(3 * size);
+        for (int position = 1; position <= 3; position++) {
+            cache.record(position, position * MILLIS);
+            cache.put(position, createImage(10, 10));
+        }
+        assertEquals(3 * size, cache.getUsedBytes());
+
+        assertTrue(cache.reserve(2 * size));
+        assertEquals(size, cache.getUsedBytes());
+        cache.record(4, 4 * MILLIS);
+        cache.put(4, createImage(10, 20));
+        assertFalse(cache.contains(4));
+
+        assertFalse(cache.reserve(4 * size));
+        assertEquals(size, cache.getUsedBytes());
+        cache.put(4, createImage(10, 20));
+        assertTrue(cache.contains(4));
+
+        assertTrue(cache.reserve(0));
+        cache.put(5, createImage(10, 10));
+        assertEquals(3 * size, cache.getUsedBytes());
+    }
+
+    public static BufferedImage createImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+}
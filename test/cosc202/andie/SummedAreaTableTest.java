@@ -0,0 +1,115 @@
+package cosc202.andie;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.*;
+import java.util.Random;
+
+public class SummedAreaTableTest {
+
+    //the sum of one channel over a rectangle, one pixel at a time
+    private static long bruteSum(BufferedImage image, int channel, int x, int y, int w, int h) {
+        long sum = 0;
+        for (int j = y; j < y + h; j++) {
+            for (int i = x; i < x + w; i++) {
+                sum += (image.getRGB(i, j) >>> (24 - 8 * channel)) & 0xFF;
+            }
+        }
+        return sum;
+    }
+
+    //sums and means over random rectangles, including single pixels, whole rows and columns and the whole
+    //image, match adding up the pixels, with and without alpha
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(70);
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB }) {
+            BufferedImage image = ImagePixelsTest.createRandomImage(57, 43, type, 71);
+            SummedAreaTable tables = SummedAreaTable.build(image);
+            int[][] rectangles = new int[40][];
+            rectangles[0] = new int[] { 0, 0, 57, 43 };
+            rectangles[1] = new int[] { 56, 42, 1, 1 };
+            rectangles[2] = new int[] { 0, 17, 57, 1 };
+            rectangles[3] = new int[] { 30, 0, 1, 43 };
+            for (int i = 4; i < rectangles.length; i++) {
+                int x = random.nextInt(57);
+                int y = random.nextInt(43);
+                rectangles[i] = new int[] { x, y, 1 + random.nextInt(57 - x), 1 + random.nextInt(43 - y) };
+            }
+            for (int[] r : rectangles) {
+                int mean = 0;
+                for (int c = 0; c < 4; c++) {
+                    long sum = bruteSum(image, c, r[0], r[1], r[2], r[3]);
+                    assertEquals(sum, tables.sum(c, r[0], r[1], r[2], r[3]));
+                    mean = (mean << 8) | (int) (sum / ((long) r[2] * r[3]));
+                }
+                assertEquals(mean, tables.mean(r[0], r[1], r[2], r[3]));
+            }
+        }
+    }
+
+    //on a white image big enough that the entries overflow, rectangles larger than MAX_AREA, which are summed
+    //in strips, still give the right sums, as do ones just under it and ones past where the entries wrap
+    @Test
+    void testRectanglesLargerThanMaxArea() {
+        int width = 4200;
+        int height = 4020;
+        BufferedImage image = ConvolutionTest.createUniformImage(width, height, 0xFFFFFFFF);
+        BufferedImage opaque = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) opaque.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 0xFFFFFF;
+        }
+        int rows = SummedAreaTable.MAX_AREA / width;
+        int[][] rectangles = {
+            { 0, 0, width, height },
+            { 3, 5, width - 3, height - 5 },
+            { 0, 0, width, rows },
+            { 0, 0, width, rows + 1 },
+            { 100, height - rows - 7, width - 200, rows + 7 }
+        };
+        for (BufferedImage white : new BufferedImage[] { image, opaque }) {
+            SummedAreaTable tables = SummedAreaTable.build(white);
+            for (int[] r : rectangles) {
+                long area = (long) r[2] * r[3];
+                for (int c = 0; c < 4; c++) {
+                    assertEquals(255 * area, tables.sum(c, r[0], r[1], r[2], r[3]));
+                }
+                assertEquals(0xFFFFFFFF, tables.mean(r[0], r[1], r[2], r[3]));
+            }
+        }
+    }
+
+    //a gradient big enough that whole-image sums are split into strips gives the same sums as adding up its
+    //pixels, so the strips join up without missing or repeating rows
+    @Test
+    void testLargeGradient() {
+        int width = 4100;
+        int height = 4110;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (((x + y) & 0xFF) << 16) | ((x * 7 & 0xFF) << 8) | (255 - (y & 0xFF));
+            }
+        }
+        SummedAreaTable tables = SummedAreaTable.build(image);
+        int[][] rectangles = { { 0, 0, width, height }, { 1, 2, width - 1, height - 3 } };
+        for (int[] r : rectangles) {
+            long[] sums = new long[4];
+            for (int y = r[1]; y < r[1] + r[3]; y++) {
+                for (int x = r[0]; x < r[0] + r[2]; x++) {
+                    int rgb = data[y * width + x];
+                    sums[1] += (rgb >> 16) & 0xFF;
+                    sums[2] += (rgb >> 8) & 0xFF;
+                    sums[3] += rgb & 0xFF;
+                }
+            }
+            sums[0] = 255L * r[2] * r[3];
+            for (int c = 0; c < 4; c++) {
+                assertEquals(sums[c], tables.sum(c, r[0], r[1], r[2], r[3]));
+            }
+        }
+    }
+}